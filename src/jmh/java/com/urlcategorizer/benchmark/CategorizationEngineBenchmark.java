@@ -0,0 +1,86 @@
+package com.urlcategorizer.benchmark;
+
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.matcher.CategoryModel;
+import com.urlcategorizer.matcher.MatchingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the matching engines of {@link CategoryModel} on already extracted page text.
+ * <p>
+ * Run with {@code ./gradlew jmh}; the gc profiler reports the allocation rate of each engine. The default parameters
+ * keep a full run short; larger pages and category sets are measured by overriding them on the benchmark jar, e.g.
+ * {@code ./gradlew jmhJar && java -jar build/libs/*-jmh.jar CategorizationEngine -p pageSize=1048576,5242880}.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CategorizationEngineBenchmark {
+
+    @Param({"65536"})
+    private int pageSize;
+
+    @Param({"100", "1000"})
+    private int categoryCount;
+
+    @Param({"10"})
+    private int keywordsPerCategory;
+
+    /**
+     * One planted keyword every this many words; 0 plants none, which is the worst case for every engine.
+     */
+    @Param({"0", "500"})
+    private int wordsPerKeyword;
+
+    @Param({"SIMPLE", "REGEX", "AHO_CORASICK", "TOKENIZED"})
+    private MatchingStrategy strategy;
+
+    private CategoryModel model;
+    private Set<Category> categories;
+    private String page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        categories = corpus.categories(categoryCount, keywordsPerCategory);
+        page = corpus.page(pageSize, categories, wordsPerKeyword);
+        model = CategoryModel.compile(1, categories);
+    }
+
+    @Benchmark
+    public Set<String> findMatchingCategories() {
+        switch (strategy) {
+            case REGEX:
+                return model.findMatchingCategoriesWithRegex(page);
+            case AHO_CORASICK:
+                return model.findMatchingCategoriesWithAutomaton(page);
+            case TOKENIZED:
+                return model.findMatchingCategoriesWithTokens(page);
+            case SIMPLE:
+            default:
+                return findMatchingCategoriesWithContains();
+        }
+    }
+
+    /**
+     * The SIMPLE strategy of the service, which has no compiled model: one substring search per keyword.
+     */
+    private Set<String> findMatchingCategoriesWithContains() {
+        String lowerCaseContent = page.toLowerCase();
+        return categories.stream()
+                .filter(category -> category.getKeywords()
+                        .stream()
+                        .anyMatch(keyword -> lowerCaseContent.contains(keyword.getKeyword())))
+                .map(Category::getName)
+                .collect(Collectors.toSet());
+    }
+}
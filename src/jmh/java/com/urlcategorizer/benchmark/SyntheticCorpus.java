@@ -0,0 +1,101 @@
+package com.urlcategorizer.benchmark;
+
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic synthetic categories and pages for the benchmarks.
+ * Pages are made of random words, with keywords of random categories planted at a given density.
+ */
+final class SyntheticCorpus {
+
+    private static final int VOCABULARY_SIZE = 20_000;
+
+    private final Random random;
+    private final String[] vocabulary;
+
+    SyntheticCorpus(long seed) {
+        this.random = new Random(seed);
+        this.vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            vocabulary[i] = randomWord(3 + random.nextInt(8));
+        }
+    }
+
+    /**
+     * Creates categories whose keywords are phrases of one to three words which never occur in the vocabulary,
+     * so that only the planted keywords can match.
+     */
+    Set<Category> categories(int categoryCount, int keywordsPerCategory) {
+        Set<Category> categories = new HashSet<>();
+        for (int c = 0; c < categoryCount; c++) {
+            Set<CategoryKeyword> keywords = new HashSet<>();
+            for (int k = 0; k < keywordsPerCategory; k++) {
+                StringBuilder phrase = new StringBuilder();
+                int words = 1 + random.nextInt(3);
+                for (int w = 0; w < words; w++) {
+                    if (w > 0) {
+                        phrase.append(' ');
+                    }
+                    // Keyword words are longer than any vocabulary word
+                    phrase.append(randomWord(11 + random.nextInt(4)));
+                }
+                keywords.add(new CategoryKeyword(phrase.toString()));
+            }
+            categories.add(new Category("category-" + c, keywords));
+        }
+        return categories;
+    }
+
+    /**
+     * Creates a page of about the given size, with one keyword of a random category for every
+     * {@code wordsPerKeyword} words (or none when it is zero).
+     */
+    String page(int sizeInChars, Set<Category> categories, int wordsPerKeyword) {
+        CategoryKeyword[] keywords = categories.stream()
+                .flatMap(category -> category.getKeywords().stream())
+                .toArray(CategoryKeyword[]::new);
+        StringBuilder page = new StringBuilder(sizeInChars + 64);
+        int words = 0;
+        while (page.length() < sizeInChars) {
+            if (wordsPerKeyword > 0 && ++words % wordsPerKeyword == 0 && keywords.length > 0) {
+                page.append(keywords[random.nextInt(keywords.length)].getKeyword());
+            } else {
+                page.append(vocabulary[random.nextInt(vocabulary.length)]);
+            }
+            page.append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return page.toString();
+    }
+
+    /**
+     * Wraps the text of a page into an HTML document with inline markup, scripts and styles.
+     */
+    String html(String text) {
+        StringBuilder html = new StringBuilder(text.length() * 2);
+        html.append("<!DOCTYPE html><html><head><title>Synthetic page</title>")
+                .append("<style>body { font-family: sans-serif; }</style></head><body>");
+        String[] sentences = text.split("\\. ");
+        for (int i = 0; i < sentences.length; i++) {
+            html.append(i % 2 == 0 ? "<p>" : "<div class=\"content\"><span>")
+                    .append(sentences[i])
+                    .append(i % 2 == 0 ? "</p>" : "</span></div>");
+            if (i % 50 == 0) {
+                html.append("<script>var tracking = {id: ").append(i).append(", ok: a < b};</script>");
+            }
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private String randomWord(int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
@@ -0,0 +1,57 @@
+package com.urlcategorizer.benchmark;
+
+import com.urlcategorizer.content.StreamingHtmlTextExtractor;
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.matcher.AhoCorasickAutomaton;
+import com.urlcategorizer.matcher.CategoryModel;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares extracting and matching the text of a page through a full Jsoup DOM with the streaming extractor
+ * feeding the keyword automaton.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextExtractionBenchmark {
+
+    @Param({"65536", "1048576"})
+    private int pageSize;
+
+    @Param({"100", "1000"})
+    private int categoryCount;
+
+    private CategoryModel model;
+    private String html;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        Set<Category> categories = corpus.categories(categoryCount, 10);
+        html = corpus.html(corpus.page(pageSize, categories, 500));
+        model = CategoryModel.compile(1, categories);
+    }
+
+    @Benchmark
+    public Set<String> domExtraction() {
+        return model.findMatchingCategoriesWithAutomaton(Jsoup.parse(html).body().text());
+    }
+
+    @Benchmark
+    public Set<String> streamingExtraction() throws IOException {
+        AhoCorasickAutomaton.Session session = model.newSession();
+        new StreamingHtmlTextExtractor(Long.MAX_VALUE).extract(new StringReader(html), session::feed);
+        return session.matchedCategoryNames();
+    }
+}
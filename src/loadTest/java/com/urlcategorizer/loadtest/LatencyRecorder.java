@@ -0,0 +1,74 @@
+package com.urlcategorizer.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of the requests of one driver thread, exactly; the recorders of all threads are merged
+ * into the report of a run.
+ */
+final class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long nanos, boolean success) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+        if (!success) {
+            errors++;
+        }
+    }
+
+    /**
+     * The merged latencies of several recorders.
+     */
+    static final class Summary {
+        private final long[] sorted;
+        private final long errors;
+
+        private Summary(long[] sorted, long errors) {
+            this.sorted = sorted;
+            this.errors = errors;
+        }
+
+        static Summary merge(Iterable<LatencyRecorder> recorders) {
+            int total = 0;
+            long errors = 0;
+            for (LatencyRecorder recorder : recorders) {
+                total += recorder.count;
+                errors += recorder.errors;
+            }
+            long[] merged = new long[total];
+            int offset = 0;
+            for (LatencyRecorder recorder : recorders) {
+                System.arraycopy(recorder.latencies, 0, merged, offset, recorder.count);
+                offset += recorder.count;
+            }
+            Arrays.sort(merged);
+            return new Summary(merged, errors);
+        }
+
+        long getRequests() {
+            return sorted.length;
+        }
+
+        long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @param quantile Between 0 and 1, e.g. 0.999.
+         * @return The latency at the quantile, in milliseconds, by the nearest-rank method.
+         */
+        double percentileMillis(double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+        }
+    }
+}
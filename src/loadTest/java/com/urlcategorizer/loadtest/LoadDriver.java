@@ -0,0 +1,133 @@
+package com.urlcategorizer.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Sends requests to one endpoint of the application from a fixed number of threads, each sending its next request
+ * as soon as the previous one is answered (a closed loop), and records their latencies.
+ */
+final class LoadDriver {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(120);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String applicationUrl;
+    private final LoadTestOptions options;
+    private final IntFunction<String> pageUrls;
+
+    /**
+     * @param applicationUrl The base URL of the application, e.g. http://127.0.0.1:8080.
+     * @param options        The options of the run.
+     * @param pageUrls       The URL of the stub page of a given number.
+     */
+    LoadDriver(String applicationUrl, LoadTestOptions options, IntFunction<String> pageUrls) {
+        this.applicationUrl = applicationUrl;
+        this.options = options;
+        this.pageUrls = pageUrls;
+    }
+
+    /**
+     * Runs the endpoint at the given concurrency: the warmup first, whose requests are not recorded, then the
+     * measured duration.
+     *
+     * @return The latencies of the measured requests, and the elapsed time of the measurement.
+     */
+    Result run(String endpoint, int concurrency) throws InterruptedException {
+        long warmupEnd = System.nanoTime() + options.warmup.toNanos();
+        long measureEnd = warmupEnd + options.duration.toNanos();
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            Thread thread = new Thread(() -> loop(endpoint, recorder, warmupEnd, measureEnd), "load-" + endpoint + "-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = Math.max(System.nanoTime(), measureEnd) - warmupEnd;
+        return new Result(endpoint, concurrency, LatencyRecorder.Summary.merge(recorders), elapsedNanos);
+    }
+
+    private void loop(String endpoint, LatencyRecorder recorder, long warmupEnd, long measureEnd) {
+        long now;
+        while ((now = System.nanoTime()) < measureEnd) {
+            HttpRequest request = request(endpoint);
+            boolean success;
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                success = response.statusCode() == 200;
+            } catch (IOException e) {
+                success = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (now >= warmupEnd) {
+                recorder.record(System.nanoTime() - now, success);
+            }
+        }
+    }
+
+    private HttpRequest request(String endpoint) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (endpoint) {
+            case "categorize":
+                String url = pageUrls.apply(random.nextInt(options.pages));
+                return HttpRequest.newBuilder(URI.create(applicationUrl + "/api/url-categorization/categorize?strategy="
+                                + options.strategy + "&url=" + URLEncoder.encode(url, StandardCharsets.UTF_8)))
+                        .timeout(REQUEST_TIMEOUT)
+                        .GET()
+                        .build();
+            case "has-categories":
+                String urls = IntStream.range(0, options.batchSize)
+                        .mapToObj(i -> '"' + pageUrls.apply(random.nextInt(options.pages)) + '"')
+                        .collect(Collectors.joining(",", "[", "]"));
+                return HttpRequest.newBuilder(URI.create(applicationUrl + "/api/url-categorization/has-categories"))
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(urls))
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown endpoint " + endpoint + ", expected categorize or has-categories");
+        }
+    }
+
+    /**
+     * The outcome of running one endpoint at one concurrency level.
+     */
+    static final class Result {
+        final String endpoint;
+        final int concurrency;
+        final LatencyRecorder.Summary latencies;
+        final long elapsedNanos;
+
+        private Result(String endpoint, int concurrency, LatencyRecorder.Summary latencies, long elapsedNanos) {
+            this.endpoint = endpoint;
+            this.concurrency = concurrency;
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double getRequestsPerSecond() {
+            return latencies.getRequests() / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.urlcategorizer.loadtest;
+
+import com.urlcategorizer.UrlCategorizationApplication;
+import com.urlcategorizer.service.CategoryService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures the end-to-end throughput and latency of the categorization endpoints, offline and repeatably.
+ * <p>
+ * The run starts a stub origin serving synthetic pages on the loopback interface, and the application itself on a
+ * random port, with its category, job and result directories in a temporary directory. The categories planted in
+ * the synthetic pages are stored, and then every endpoint is driven at every concurrency level in turn; a table of
+ * requests/sec and p50/p99/p999 latencies is printed at the end. See {@link LoadTestOptions} for the options, e.g.
+ * <pre>
+ * ./gradlew loadTest -PloadTest.args="--concurrency=16,64 --duration=30s --latency-median=50ms --error-rate=0.01"
+ * </pre>
+ * All requests go to one host, so the per-host politeness limits and the circuit breaker are disabled unless
+ * enabled with their Spring properties, e.g. {@code --url-content.circuit-breaker.enabled=true}.
+ * <p>
+ * The layers which answer a repeated URL or page without fetching and matching it are disabled too: the result
+ * store, the content cache, the negative cache and the content fingerprint dedup. The driver picks its URLs among
+ * {@code --pages} pages, 10000 by default, and one application serves all the concurrency levels in turn, so with
+ * these layers enabled every level after the first would mostly measure lookups of the results of the previous
+ * ones. Each can be enabled again with its Spring property, e.g.
+ * {@code --url-categorization.result-store.enabled=true}, to measure a warm service; its hit rate then depends on
+ * {@code --pages} and on the order of the levels.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        SyntheticSite site = new SyntheticSite(options);
+        Path dataDirectory = Files.createTempDirectory("urlcategorizer-loadtest");
+        try (StubOriginServer origin = new StubOriginServer(site, options);
+             ConfigurableApplicationContext application = startApplication(options, dataDirectory)) {
+            CategoryService categoryService = application.getBean(CategoryService.class);
+            site.getCategories().forEach(categoryService::saveCategory);
+            categoryService.rebuildModel();
+
+            String applicationUrl = "http://127.0.0.1:" + application.getEnvironment().getProperty("local.server.port");
+            LoadDriver driver = new LoadDriver(applicationUrl, options, origin::pageUrl);
+            System.out.printf(Locale.ROOT, "%-16s %11s %9s %8s %10s %10s %10s %10s%n",
+                    "endpoint", "concurrency", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+            for (String endpoint : options.endpoints) {
+                for (int concurrency : options.concurrencyLevels) {
+                    print(driver.run(endpoint, concurrency));
+                }
+            }
+            System.out.printf(Locale.ROOT, "Stub origin served %d requests, %d of them errors%n",
+                    origin.getRequests(), origin.getErrors());
+        } finally {
+            deleteQuietly(dataDirectory);
+        }
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options, Path dataDirectory) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("url-content.politeness.enabled", "false");
+        properties.put("url-content.circuit-breaker.enabled", "false");
+        // Every request fetches and matches its page, see the class documentation
+        properties.put("url-categorization.result-store.enabled", "false");
+        properties.put("url-content.cache.max-bytes", "0");
+        properties.put("url-content.negative-cache.ttl", "0");
+        properties.put("url-categorization.dedup.enabled", "false");
+        properties.put("url-categorization.categories.directory", dataDirectory.resolve("categories").toString());
+        properties.put("url-categorization.jobs.directory", dataDirectory.resolve("jobs").toString());
+        properties.put("url-categorization.result-store.directory", dataDirectory.resolve("results").toString());
+        properties.putAll(options.applicationProperties);
+
+        // Passed as command line arguments, which take precedence over application.yml
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return SpringApplication.run(UrlCategorizationApplication.class, args);
+    }
+
+    private static void print(LoadDriver.Result result) {
+        LatencyRecorder.Summary latencies = result.latencies;
+        System.out.printf(Locale.ROOT, "%-16s %11d %9d %8d %10.1f %10.1f %10.1f %10.1f%n",
+                result.endpoint, result.concurrency, latencies.getRequests(), latencies.getErrors(),
+                result.getRequestsPerSecond(), latencies.percentileMillis(0.50), latencies.percentileMillis(0.99),
+                latencies.percentileMillis(0.999));
+    }
+
+    private static void deleteQuietly(Path directory) {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+}
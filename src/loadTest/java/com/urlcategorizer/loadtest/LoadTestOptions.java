@@ -0,0 +1,77 @@
+package com.urlcategorizer.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The options of a load test run, given as {@code --name=value} arguments.
+ * Arguments whose name contains a dot, e.g. {@code --url-content.cache.max-bytes=0}, are passed to the application
+ * as Spring properties.
+ */
+final class LoadTestOptions {
+
+    final List<Integer> concurrencyLevels;
+    final List<String> endpoints;
+    final Duration warmup;
+    final Duration duration;
+    final String strategy;
+    final int batchSize;
+
+    // The stub origin
+    final int pages;
+    final int minPageChars;
+    final int maxPageChars;
+    final int wordsPerKeyword;
+    final Duration latencyMedian;
+    final Duration latencyP99;
+    final double errorRate;
+
+    // The categories planted in the pages
+    final int categories;
+    final int keywordsPerCategory;
+
+    final Map<String, String> applicationProperties = new LinkedHashMap<>();
+
+    private LoadTestOptions(Map<String, String> options) {
+        concurrencyLevels = Arrays.stream(options.getOrDefault("concurrency", "1,8,32,128").split(","))
+                .map(String::trim)
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+        endpoints = List.of(options.getOrDefault("endpoints", "categorize,has-categories").split(","));
+        warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "5s"));
+        duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "20s"));
+        strategy = options.getOrDefault("strategy", "AHO_CORASICK");
+        batchSize = Integer.parseInt(options.getOrDefault("batch-size", "10"));
+        pages = Integer.parseInt(options.getOrDefault("pages", "10000"));
+        minPageChars = Integer.parseInt(options.getOrDefault("min-page-chars", "20000"));
+        maxPageChars = Integer.parseInt(options.getOrDefault("max-page-chars", "200000"));
+        wordsPerKeyword = Integer.parseInt(options.getOrDefault("words-per-keyword", "500"));
+        latencyMedian = DurationStyle.detectAndParse(options.getOrDefault("latency-median", "20ms"));
+        latencyP99 = DurationStyle.detectAndParse(options.getOrDefault("latency-p99", "200ms"));
+        errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+        categories = Integer.parseInt(options.getOrDefault("categories", "20"));
+        keywordsPerCategory = Integer.parseInt(options.getOrDefault("keywords-per-category", "10"));
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            (name.contains(".") ? properties : options).put(name, value);
+        }
+        LoadTestOptions parsed = new LoadTestOptions(options);
+        parsed.applicationProperties.putAll(properties);
+        return parsed;
+    }
+}
@@ -0,0 +1,107 @@
+package com.urlcategorizer.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local HTTP origin serving the pages of a {@link SyntheticSite} at {@code /page/<n>}.
+ * <p>
+ * Every response is delayed by a latency drawn from a log-normal distribution with the configured median and 99th
+ * percentile, and a share of the requests, the error rate, is answered with a 500 instead of the page.
+ */
+final class StubOriginServer implements AutoCloseable {
+
+    private static final double Z_99 = 2.326;
+    private static final String PAGE_PATH = "/page/";
+
+    private final SyntheticSite site;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final double latencyMedianNanos;
+    private final double latencySigma;
+    private final double errorRate;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    StubOriginServer(SyntheticSite site, LoadTestOptions options) throws IOException {
+        this.site = site;
+        this.latencyMedianNanos = options.latencyMedian.toNanos();
+        this.latencySigma = options.latencyMedian.isZero() || options.latencyP99.compareTo(options.latencyMedian) <= 0
+                ? 0
+                : Math.log((double) options.latencyP99.toNanos() / options.latencyMedian.toNanos()) / Z_99;
+        this.errorRate = options.errorRate;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        // Responses sleep for their latency, so every request needs its own thread
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-origin");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(PAGE_PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * @return The URL of page {@code n}.
+     */
+    String pageUrl(int n) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PAGE_PATH + n;
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try (exchange) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long latencyNanos = (long) (latencyMedianNanos * Math.exp(latencySigma * random.nextGaussian()));
+            if (latencyNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(latencyNanos);
+            }
+            if (random.nextDouble() < errorRate) {
+                errors.increment();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            int n;
+            try {
+                n = Integer.parseInt(exchange.getRequestURI().getPath().substring(PAGE_PATH.length()));
+            } catch (NumberFormatException e) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = site.page(n).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
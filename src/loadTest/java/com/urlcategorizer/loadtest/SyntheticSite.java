@@ -0,0 +1,92 @@
+package com.urlcategorizer.loadtest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic synthetic categories and HTML pages for the stub origin.
+ * Page {@code n} is always the same page: its size, words and planted keywords derive from {@code n} alone.
+ */
+final class SyntheticSite {
+
+    private static final int VOCABULARY_SIZE = 20_000;
+
+    private final String[] vocabulary;
+    private final Map<String, Set<String>> categories = new LinkedHashMap<>();
+    private final String[] keywords;
+    private final int minPageChars;
+    private final int maxPageChars;
+    private final int wordsPerKeyword;
+
+    SyntheticSite(LoadTestOptions options) {
+        Random random = new Random(42);
+        vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            vocabulary[i] = randomWord(random, 3 + random.nextInt(8));
+        }
+        List<String> allKeywords = new ArrayList<>();
+        for (int c = 0; c < options.categories; c++) {
+            Set<String> categoryKeywords = new HashSet<>();
+            for (int k = 0; k < options.keywordsPerCategory; k++) {
+                // Keywords are longer than any vocabulary word, so that only the planted keywords match
+                categoryKeywords.add(randomWord(random, 11 + random.nextInt(4)));
+            }
+            categories.put("loadtest-" + c, categoryKeywords);
+            allKeywords.addAll(categoryKeywords);
+        }
+        keywords = allKeywords.toArray(new String[0]);
+        minPageChars = options.minPageChars;
+        maxPageChars = Math.max(options.minPageChars, options.maxPageChars);
+        wordsPerKeyword = options.wordsPerKeyword;
+    }
+
+    /**
+     * @return The categories planted in the pages, by name.
+     */
+    Map<String, Set<String>> getCategories() {
+        return categories;
+    }
+
+    /**
+     * Builds page {@code n}: paragraphs of random words, with one keyword of a random category every
+     * words-per-keyword words, a title, a description meta tag, and a few scripts and styles.
+     */
+    String page(int n) {
+        Random random = new Random(n * 0x9e3779b97f4a7c15L);
+        int size = minPageChars + (maxPageChars > minPageChars ? random.nextInt(maxPageChars - minPageChars + 1) : 0);
+        StringBuilder html = new StringBuilder(size + 512);
+        html.append("<!DOCTYPE html><html><head><title>Synthetic page ").append(n).append("</title>")
+                .append("<meta name=\"description\" content=\"Synthetic page ").append(n).append("\">")
+                .append("<style>body { font-family: sans-serif; }</style></head><body><p>");
+        int words = 0;
+        while (html.length() < size) {
+            if (wordsPerKeyword > 0 && ++words % wordsPerKeyword == 0 && keywords.length > 0) {
+                html.append(keywords[random.nextInt(keywords.length)]);
+            } else {
+                html.append(vocabulary[random.nextInt(vocabulary.length)]);
+            }
+            int separator = random.nextInt(60);
+            if (separator == 0) {
+                html.append(".</p><p>");
+            } else if (separator == 1) {
+                html.append(". <script>var tracking = {page: ").append(n).append("};</script>");
+            } else {
+                html.append(' ');
+            }
+        }
+        return html.append("</p></body></html>").toString();
+    }
+
+    private static String randomWord(Random random, int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
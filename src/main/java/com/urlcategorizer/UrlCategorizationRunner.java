@@ -1,7 +1,11 @@
 package com.urlcategorizer;
 
-import com.urlcategorizer.dto.UrlCategorizationResultDTO;
+import com.urlcategorizer.dto.StrategyEvaluationDTO;
+import com.urlcategorizer.dto.StrategyResultDTO;
 import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.matcher.MatchingStrategy;
+import com.urlcategorizer.offline.OfflineCategorizer;
+import com.urlcategorizer.service.CategoryModelRegistry;
 import com.urlcategorizer.service.CategoryService;
 import com.urlcategorizer.service.UrlCategorizationService;
 import lombok.RequiredArgsConstructor;
@@ -9,7 +13,11 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -17,19 +25,35 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class UrlCategorizationRunner implements CommandLineRunner {
 
-    private Set<Category> predefinedCategories;
+    private static final String OFFLINE_MODE = "offline";
+    private static final List<MatchingStrategy> EVALUATED_STRATEGIES = List.of(MatchingStrategy.values());
+
     private final CategoryService categoryService;
+    private final CategoryModelRegistry categoryModelRegistry;
     private final UrlCategorizationService urlCategorizationService;
+    private final OfflineCategorizer offlineCategorizer;
 
     @PostConstruct
     public void init() {
-        predefinedCategories = initializeModel();
+        // Seed the category store on the first start; afterwards the stored categories are authoritative
+        if (categoryService.getCategories().isEmpty()) {
+            initializeModel().forEach(categoryService::saveCategory);
+            categoryService.rebuildModel();
+        }
     }
 
     @Override
-    public void run(String... args) {
+    public void run(String... commandLine) throws IOException {
+        // Options such as --server.port=8081 are Spring's
+        String[] args = Arrays.stream(commandLine).filter(arg -> !arg.startsWith("--")).toArray(String[]::new);
+        if (args.length >= 3 && OFFLINE_MODE.equals(args[0])) {
+            runOffline(args);
+            return;
+        }
         if (args.length != 2) {
             System.out.println("Please provide two arguments: list of categories and list of URLs.");
+            System.out.println("Or categorize pages on disk: " + OFFLINE_MODE
+                    + " <directory of HTML files or WARC file> <output file> [list of categories] [AHO_CORASICK|TOKENIZED]");
             return;
         }
 
@@ -39,19 +63,49 @@ public class UrlCategorizationRunner implements CommandLineRunner {
         Set<String> inputCategoriesSet = Set.copyOf(inputCategories);
 
         // Filter the categories to only include the ones in the inputCategories list
-        Set<Category> filteredCategories = predefinedCategories.stream()
+        Set<Category> filteredCategories = getPredefinedCategories().stream()
                 .filter(category -> inputCategoriesSet.contains(category.getName()))
                 .collect(Collectors.toSet());
 
+        // Every page is fetched once, and its text matched with each strategy
         inputUrls.forEach(url -> {
             System.out.println("Categorizing URL: " + url);
-            UrlCategorizationResultDTO categorizationResult = urlCategorizationService.categorizeUrl(url, filteredCategories);
-            System.out.println("Matching Categories (Simple Search): " + categorizationResult.getCategories());
-            UrlCategorizationResultDTO categorizationResultV2 = urlCategorizationService.categorizeUrlV2(url, filteredCategories);
-            System.out.println("Matching Categories (Regex-based Matching): " + categorizationResultV2.getCategories());
+            StrategyEvaluationDTO evaluation = urlCategorizationService.evaluateUrl(url, filteredCategories, EVALUATED_STRATEGIES);
+            for (StrategyResultDTO result : evaluation.getStrategies()) {
+                System.out.printf(Locale.ROOT, "Matching Categories (%s, %d us): %s%n",
+                        result.getStrategy(), result.getMatchMicros(), result.getCategories());
+            }
+            if (!evaluation.isAgreement()) {
+                evaluation.getStrategies().stream()
+                        .filter(result -> !result.getMissing().isEmpty() || !result.getExtra().isEmpty())
+                        .forEach(result -> System.out.printf(Locale.ROOT, "%s differs from %s: missing %s, extra %s%n",
+                                result.getStrategy(), evaluation.getBaseline(), result.getMissing(), result.getExtra()));
+            }
         });
     }
 
+    /**
+     * Categorizes a directory of HTML files or a WARC archive, and writes the results to a file as NDJSON.
+     */
+    private void runOffline(String[] args) throws IOException {
+        Path source = Path.of(args[1]);
+        Path output = Path.of(args[2]);
+        Set<Category> categories = getPredefinedCategories();
+        if (args.length > 3) {
+            Set<String> inputCategoriesSet = Set.of(args[3].split(","));
+            categories = categories.stream()
+                    .filter(category -> inputCategoriesSet.contains(category.getName()))
+                    .collect(Collectors.toSet());
+        }
+        MatchingStrategy strategy = args.length > 4 ? MatchingStrategy.valueOf(args[4]) : MatchingStrategy.AHO_CORASICK;
+
+        System.out.println("Categorizing pages from " + source + " into " + output);
+        OfflineCategorizer.Report report = offlineCategorizer.run(source, output, categories, strategy);
+        System.out.printf(Locale.ROOT, "Categorized %d pages (%d failed) in %.1f s: %.1f pages/sec, %.1f MB/sec%n",
+                report.getPages(), report.getFailedPages(), report.getElapsedSeconds(),
+                report.getPagesPerSecond(), report.getMegabytesPerSecond());
+    }
+
     private Set<Category> initializeModel() {
         return Set.of(
                 categoryService.createCategory("Star Wars", Set.of("star war", "starwars", "starwar", "r2d2", "may the force be with you")),
@@ -59,7 +113,10 @@ public class UrlCategorizationRunner implements CommandLineRunner {
         );
     }
 
+    /**
+     * @return The categories of the category model currently in use.
+     */
     public Set<Category> getPredefinedCategories() {
-        return predefinedCategories;
+        return categoryModelRegistry.getCurrentModel().getCategories();
     }
 }
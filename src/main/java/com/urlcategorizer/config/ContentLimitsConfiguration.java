@@ -0,0 +1,52 @@
+package com.urlcategorizer.config;
+
+import com.urlcategorizer.content.ContentLimits;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Defines the {@link ContentLimits} of the endpoints, from the url-content.limits properties: html for the HTML
+ * endpoints, text for the text and categorization endpoints, and head-only for the head-only categorization mode
+ * and the first tier of the tiered mode; the head is requested with a Range request.
+ */
+@Configuration
+public class ContentLimitsConfiguration {
+
+    public static final String HTML = "htmlContentLimits";
+    public static final String TEXT = "textContentLimits";
+    public static final String HEAD_ONLY = "headOnlyContentLimits";
+
+    @Bean(HTML)
+    public ContentLimits htmlContentLimits(@Value("${url-content.limits.html.max-body-size:5MB}") DataSize maxBodySize,
+                                           @Value("${url-content.limits.html.max-text-chars:5000000}") int maxTextChars,
+                                           @Value("${url-content.limits.html.parse-timeout:2s}") Duration parseTimeout) {
+        return limits(maxBodySize, maxTextChars, parseTimeout, false);
+    }
+
+    @Bean(TEXT)
+    public ContentLimits textContentLimits(@Value("${url-content.limits.text.max-body-size:5MB}") DataSize maxBodySize,
+                                           @Value("${url-content.limits.text.max-text-chars:1000000}") int maxTextChars,
+                                           @Value("${url-content.limits.text.parse-timeout:2s}") Duration parseTimeout) {
+        return limits(maxBodySize, maxTextChars, parseTimeout, false);
+    }
+
+    @Bean(HEAD_ONLY)
+    public ContentLimits headOnlyContentLimits(@Value("${url-content.limits.head-only.max-body-size:32KB}") DataSize maxBodySize,
+                                               @Value("${url-content.limits.head-only.max-text-chars:20000}") int maxTextChars,
+                                               @Value("${url-content.limits.head-only.parse-timeout:500ms}") Duration parseTimeout) {
+        return limits(maxBodySize, maxTextChars, parseTimeout, true);
+    }
+
+    private static ContentLimits limits(DataSize maxBodySize, int maxTextChars, Duration parseTimeout, boolean rangeRequest) {
+        return ContentLimits.builder()
+                .maxBodyBytes(maxBodySize.toBytes())
+                .maxTextChars(maxTextChars)
+                .parseTimeout(parseTimeout)
+                .rangeRequest(rangeRequest)
+                .build();
+    }
+}
@@ -0,0 +1,93 @@
+package com.urlcategorizer.config;
+
+import com.urlcategorizer.content.CircuitBreakingPageFetcher;
+import com.urlcategorizer.content.HostScheduledPageFetcher;
+import com.urlcategorizer.content.HttpClientPageFetcher;
+import com.urlcategorizer.content.JsoupPageFetcher;
+import com.urlcategorizer.content.PageFetcher;
+import com.urlcategorizer.metrics.CategorizationMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Selects the {@link PageFetcher} implementation with the url-content.fetcher.type property, and wraps it in the
+ * per-host scheduler unless url-content.politeness.enabled is false, then in the per-host circuit breaker unless
+ * url-content.circuit-breaker.enabled is false. The circuit breaker comes first, so that the requests to a failing
+ * host are rejected before they queue for it.
+ */
+@Configuration
+public class PageFetcherConfiguration {
+
+    private final boolean politenessEnabled;
+    private final double ratePerHost;
+    private final double maxRatePerHost;
+    private final int maxPerHost;
+    private final int maxRetries;
+    private final Duration maxRetryAfter;
+    private final Duration queueTimeout;
+    private final boolean circuitBreakerEnabled;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final CategorizationMetrics categorizationMetrics;
+
+    public PageFetcherConfiguration(@Value("${url-content.politeness.enabled:true}") boolean politenessEnabled,
+                                    @Value("${url-content.politeness.rate-per-host:5}") double ratePerHost,
+                                    @Value("${url-content.politeness.max-rate-per-host:20}") double maxRatePerHost,
+                                    @Value("${url-content.politeness.max-per-host:4}") int maxPerHost,
+                                    @Value("${url-content.politeness.max-retries:2}") int maxRetries,
+                                    @Value("${url-content.politeness.max-retry-after:10s}") Duration maxRetryAfter,
+                                    @Value("${url-content.politeness.queue-timeout:30s}") Duration queueTimeout,
+                                    @Value("${url-content.circuit-breaker.enabled:true}") boolean circuitBreakerEnabled,
+                                    @Value("${url-content.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                                    @Value("${url-content.circuit-breaker.open-duration:30s}") Duration openDuration,
+                                    CategorizationMetrics categorizationMetrics) {
+        this.politenessEnabled = politenessEnabled;
+        this.ratePerHost = ratePerHost;
+        this.maxRatePerHost = maxRatePerHost;
+        this.maxPerHost = maxPerHost;
+        this.maxRetries = maxRetries;
+        this.maxRetryAfter = maxRetryAfter;
+        this.queueTimeout = queueTimeout;
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.categorizationMetrics = categorizationMetrics;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "url-content.fetcher.type", havingValue = "http-client", matchIfMissing = true)
+    public PageFetcher httpClientPageFetcher(@Value("${url-content.fetcher.timeout:10s}") Duration timeout,
+                                             @Value("${url-content.fetcher.threads:8}") int threads) {
+        return circuitBroken(scheduled(new HttpClientPageFetcher(timeout, threads)));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "url-content.fetcher.type", havingValue = "jsoup")
+    public PageFetcher jsoupPageFetcher(@Value("${url-content.fetcher.timeout:10s}") Duration timeout,
+                                        @Value("${url-content.fetcher.threads:64}") int threads) {
+        return circuitBroken(scheduled(new JsoupPageFetcher(timeout, threads)));
+    }
+
+    private PageFetcher scheduled(PageFetcher fetcher) {
+        if (!politenessEnabled) {
+            return fetcher;
+        }
+        HostScheduledPageFetcher scheduled = new HostScheduledPageFetcher(fetcher, ratePerHost, maxRatePerHost,
+                maxPerHost, maxRetries, maxRetryAfter, queueTimeout);
+        categorizationMetrics.bindFetchScheduler(scheduled);
+        return scheduled;
+    }
+
+    private PageFetcher circuitBroken(PageFetcher fetcher) {
+        if (!circuitBreakerEnabled) {
+            return fetcher;
+        }
+        CircuitBreakingPageFetcher circuitBreaker = new CircuitBreakingPageFetcher(fetcher, failureThreshold, openDuration);
+        categorizationMetrics.bindCircuitBreaker(circuitBreaker);
+        return circuitBreaker;
+    }
+}
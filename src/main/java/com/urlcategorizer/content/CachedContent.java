@@ -0,0 +1,40 @@
+package com.urlcategorizer.content;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A fetched and extracted content kept in the {@link ContentCache}, together with the HTTP validators
+ * needed to revalidate it cheaply once it expires.
+ */
+@AllArgsConstructor
+@Getter
+@Builder(toBuilder = true)
+public class CachedContent {
+    private String body;
+    /**
+     * Whether the body was cut at one of the content limits.
+     */
+    private boolean truncated;
+    private String etag;
+    private String lastModified;
+    private long expiresAtMillis;
+
+    public boolean isFresh(long nowMillis) {
+        return nowMillis < expiresAtMillis;
+    }
+
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * An estimate of the heap retained by this entry, used to bound the cache size in bytes.
+     */
+    long weightInBytes() {
+        return 64L + 2L * (body.length()
+                + (etag == null ? 0 : etag.length())
+                + (lastModified == null ? 0 : lastModified.length()));
+    }
+}
@@ -0,0 +1,235 @@
+package com.urlcategorizer.content;
+
+import com.urlcategorizer.dto.FetchStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A {@link PageFetcher} which stops sending requests to hosts that keep failing.
+ * <p>
+ * Every host has a circuit. A closed circuit lets the requests through and counts the consecutive failures: errors
+ * such as timeouts and refused connections, and 5xx responses. After too many of them the circuit opens, and the
+ * requests to the host fail at once with {@link FetchStatus#CIRCUIT_OPEN} instead of waiting for the fetch timeout.
+ * Once the open duration has passed the circuit is half-open: a single trial request goes through, and closes the
+ * circuit if it succeeds or opens it again if it fails, while the other requests keep failing fast.
+ * <p>
+ * The requests of a streamed fetch count as successful once the response headers are received. Requests which
+ * never reached the host, because they were cancelled or timed out in the queue of the delegate, count neither way.
+ * <p>
+ * A circuit is forgotten once no request to its host is in flight and it has been idle for the open duration while
+ * closed with no failures, or for {@value #STALE_OPEN_DURATIONS} open durations in any other state, so that the map
+ * does not grow with every host ever fetched. Circuits are only created, acquired and removed within the atomic
+ * updates of the map, so a request always reports its outcome to the circuit its host is mapped to.
+ */
+@Slf4j
+public class CircuitBreakingPageFetcher implements PageFetcher {
+
+    private static final int HTTP_SERVER_ERROR = 500;
+    private static final int STALE_OPEN_DURATIONS = 10;
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final PageFetcher delegate;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param delegate         The fetcher sending the requests.
+     * @param failureThreshold The number of consecutive failures of a host which opens its circuit.
+     * @param openDuration     How long an open circuit rejects the requests before letting a trial request through.
+     */
+    public CircuitBreakingPageFetcher(PageFetcher delegate, int failureThreshold, Duration openDuration) {
+        this.delegate = delegate;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers, long maxBodyBytes) {
+        return guarded(url, () -> delegate.fetch(url, headers, maxBodyBytes));
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetchStream(String url, Map<String, String> headers) {
+        return guarded(url, () -> delegate.fetchStream(url, headers));
+    }
+
+    /**
+     * @return The number of hosts whose circuit is open or half-open.
+     */
+    public long getOpenCircuits() {
+        return circuits.values().stream().filter(circuit -> !circuit.isClosed()).count();
+    }
+
+    /**
+     * @return The number of requests rejected without being sent, because the circuit of their host was open.
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private CompletableFuture<FetchedPage> guarded(String url, Supplier<CompletableFuture<FetchedPage>> fetch) {
+        String host = UrlNormalizer.host(url);
+        long now = System.nanoTime();
+        forgetIdleCircuits(now);
+        boolean[] acquired = new boolean[1];
+        Circuit circuit = circuits.compute(host, (name, existing) -> {
+            Circuit current = existing == null ? new Circuit(now) : existing;
+            acquired[0] = current.tryAcquire(now);
+            return current;
+        });
+        if (!acquired[0]) {
+            rejectedRequests.increment();
+            return CompletableFuture.failedFuture(
+                    new FetchFailedException(FetchStatus.CIRCUIT_OPEN, "Circuit open for " + host));
+        }
+        CompletableFuture<FetchedPage> page = send(fetch);
+        return PageFutures.propagateCancellation(page.whenComplete((fetched, error) -> {
+            long completed = System.nanoTime();
+            if (error instanceof CancellationException || isQueueTimeout(error)) {
+                circuit.onCancelled(completed);
+            } else if (error != null || fetched.getStatusCode() >= HTTP_SERVER_ERROR) {
+                if (circuit.onFailure(completed)) {
+                    log.warn("Opened the circuit of {} after {} consecutive failures", host, failureThreshold);
+                }
+            } else {
+                circuit.onSuccess(completed);
+            }
+        }), page);
+    }
+
+    /**
+     * Removes the circuits which have been idle long enough, at most once per open duration.
+     */
+    private void forgetIdleCircuits(long now) {
+        long last = lastSweep.get();
+        if (now - last < openDurationNanos || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (String host : circuits.keySet()) {
+            circuits.computeIfPresent(host, (name, circuit) -> circuit.isIdle(now) ? null : circuit);
+        }
+    }
+
+    private static boolean isQueueTimeout(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof FetchFailedException
+                && ((FetchFailedException) cause).getStatus() == FetchStatus.QUEUE_TIMEOUT;
+    }
+
+    private static CompletableFuture<FetchedPage> send(Supplier<CompletableFuture<FetchedPage>> fetch) {
+        try {
+            return fetch.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * The state of the circuit of a host.
+     */
+    private final class Circuit {
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialInFlight;
+        private int inFlight;
+        private long lastUsed;
+
+        private Circuit(long now) {
+            this.lastUsed = now;
+        }
+
+        private synchronized boolean isClosed() {
+            return state == State.CLOSED;
+        }
+
+        /**
+         * @return Whether the circuit can be forgotten: no request is in flight, and it has been idle for the open
+         * duration while closed with no failures, or for longer in any other state.
+         */
+        private synchronized boolean isIdle(long now) {
+            if (inFlight > 0) {
+                return false;
+            }
+            long idle = now - lastUsed;
+            if (state == State.CLOSED && consecutiveFailures == 0) {
+                return idle >= openDurationNanos;
+            }
+            return idle >= STALE_OPEN_DURATIONS * openDurationNanos && now - openUntil >= 0;
+        }
+
+        /**
+         * @return Whether a request may be sent to the host.
+         */
+        private synchronized boolean tryAcquire(long now) {
+            if (state == State.OPEN && now - openUntil >= 0) {
+                state = State.HALF_OPEN;
+            }
+            boolean acquired;
+            if (state == State.HALF_OPEN) {
+                acquired = !trialInFlight;
+                trialInFlight = true;
+            } else {
+                acquired = state == State.CLOSED;
+            }
+            if (acquired) {
+                inFlight++;
+                lastUsed = now;
+            }
+            return acquired;
+        }
+
+        private synchronized void onSuccess(long now) {
+            release(now);
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+
+        /**
+         * @return Whether the failure opened a closed circuit.
+         */
+        private synchronized boolean onFailure(long now) {
+            release(now);
+            trialInFlight = false;
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                boolean opened = state == State.CLOSED;
+                state = State.OPEN;
+                openUntil = now + openDurationNanos;
+                return opened;
+            }
+            return false;
+        }
+
+        private synchronized void onCancelled(long now) {
+            release(now);
+            trialInFlight = false;
+        }
+
+        private void release(long now) {
+            inFlight--;
+            lastUsed = now;
+        }
+    }
+}
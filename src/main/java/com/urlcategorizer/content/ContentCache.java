@@ -0,0 +1,103 @@
+package com.urlcategorizer.content;
+
+import com.urlcategorizer.dto.ContentCacheStatsDTO;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded LRU cache of fetched content.
+ * <p>
+ * The cache is bounded by the estimated heap size of its entries rather than by their count, so a few huge pages
+ * cannot push the pod out of memory. Each entry carries its own expiry; expired entries are kept as long as they
+ * have HTTP validators (ETag/Last-Modified), so the caller can revalidate them with a conditional request
+ * instead of downloading the page again.
+ */
+public class ContentCache {
+
+    private final long maxBytes;
+    private final Map<String, CachedContent> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up an entry, fresh or expired. Expired entries without validators are dropped, since they
+     * cannot be revalidated.
+     *
+     * @param key The cache key.
+     * @return The cached entry, or {@code null} if there is none.
+     */
+    public synchronized CachedContent get(String key) {
+        CachedContent content = entries.get(key);
+        if (content != null && !content.isFresh(System.currentTimeMillis()) && !content.hasValidators()) {
+            remove(key);
+            return null;
+        }
+        return content;
+    }
+
+    /**
+     * Stores an entry, evicting the least recently used entries until the cache fits its size bound.
+     * Entries larger than the whole cache are not stored.
+     *
+     * @param key     The cache key.
+     * @param content The content to store.
+     */
+    public synchronized void put(String key, CachedContent content) {
+        remove(key);
+        long weight = content.weightInBytes();
+        if (weight > maxBytes) {
+            return;
+        }
+        entries.put(key, content);
+        sizeBytes += weight;
+
+        Iterator<Map.Entry<String, CachedContent>> eldest = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && eldest.hasNext()) {
+            sizeBytes -= eldest.next().getValue().weightInBytes();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized void remove(String key) {
+        CachedContent removed = entries.remove(key);
+        if (removed != null) {
+            sizeBytes -= removed.weightInBytes();
+        }
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordRevalidation() {
+        revalidations.increment();
+    }
+
+    public synchronized ContentCacheStatsDTO stats() {
+        return ContentCacheStatsDTO.builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .revalidations(revalidations.sum())
+                .evictions(evictions.sum())
+                .entries(entries.size())
+                .sizeBytes(sizeBytes)
+                .maxBytes(maxBytes)
+                .build();
+    }
+}
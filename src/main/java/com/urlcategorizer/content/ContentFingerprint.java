@@ -0,0 +1,35 @@
+package com.urlcategorizer.content;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The fingerprint of a page text: an exact hash, and a SimHash which differs in few bits between near-duplicate
+ * texts. See {@link ContentFingerprints#fingerprint(CharSequence)}.
+ */
+@AllArgsConstructor
+@Getter
+public final class ContentFingerprint {
+
+    /**
+     * The hash of the whole text; see {@link ContentFingerprints#exactHash(CharSequence)}.
+     */
+    private final long exactHash;
+
+    /**
+     * The SimHash of the three-word shingles of the text.
+     */
+    private final long simHash;
+
+    /**
+     * The number of words of the text; the SimHash of a short text says little about its similarity.
+     */
+    private final int tokens;
+
+    /**
+     * @return The number of bits in which the SimHashes of the two texts differ.
+     */
+    public int distance(ContentFingerprint other) {
+        return Long.bitCount(simHash ^ other.simHash);
+    }
+}
@@ -0,0 +1,145 @@
+package com.urlcategorizer.content;
+
+/**
+ * Utility methods for fingerprinting page contents.
+ */
+public final class ContentFingerprints {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int SIMHASH_BITS = 64;
+
+    private ContentFingerprints() {
+    }
+
+    /**
+     * Hashes the text with 64-bit FNV-1a over its UTF-16 code units.
+     * Two texts with the same hash are the same text with high probability; the hash is not cryptographic.
+     *
+     * @param text The text.
+     * @return The hash of the text.
+     */
+    public static long exactHash(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the exact hash and the SimHash of the text in a single pass.
+     * <p>
+     * The SimHash is built from the overlapping three-word shingles of the lower-cased text, so that two texts which
+     * differ in a few words, e.g. a date or a tracking snippet, get SimHashes which differ in a few bits only, while
+     * unrelated texts differ in about half of the bits.
+     *
+     * @param text The text.
+     * @return The fingerprint of the text.
+     */
+    public static ContentFingerprint fingerprint(CharSequence text) {
+        long exact = FNV_OFFSET_BASIS;
+        ShingleCounts counts = new ShingleCounts();
+        long token = FNV_OFFSET_BASIS;
+        boolean inToken = false;
+        long previous = 0;
+        long beforePrevious = 0;
+        int tokens = 0;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (i < length) {
+                exact = (exact ^ (c & 0xff)) * FNV_PRIME;
+                exact = (exact ^ (c >>> 8)) * FNV_PRIME;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                token = (token ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inToken = true;
+            } else if (inToken) {
+                tokens++;
+                if (tokens >= 3) {
+                    counts.add(mix(beforePrevious * 31 * 31 + previous * 31 + token));
+                }
+                beforePrevious = previous;
+                previous = token;
+                token = FNV_OFFSET_BASIS;
+                inToken = false;
+            }
+        }
+        if (tokens > 0 && tokens < 3) {
+            // Too short for a shingle: the words themselves make the SimHash
+            counts.add(mix(beforePrevious * 31 + previous));
+        }
+        return new ContentFingerprint(exact, counts.simHash(), tokens);
+    }
+
+    /**
+     * Spreads the bits of a hash, so that similar shingle hashes get unrelated SimHash contributions.
+     */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Counts, for every bit position, the shingle hashes with that bit set; the SimHash has the bits set which
+     * are set in more than half of the shingles.
+     * <p>
+     * The counts are kept in bytes packed eight to a long, and a whole byte of a shingle hash is added with a single
+     * table lookup and addition, rather than one addition per bit. The packed counts are flushed into the full
+     * counts before a byte can overflow.
+     */
+    private static final class ShingleCounts {
+        private static final int FLUSH_INTERVAL = 255;
+        private static final long[] SPREAD_BITS = new long[256];
+
+        static {
+            // SPREAD_BITS[b] holds bit j of b in the lowest bit of its byte j
+            for (int b = 0; b < 256; b++) {
+                long spread = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    spread |= (long) ((b >>> bit) & 1) << (8 * bit);
+                }
+                SPREAD_BITS[b] = spread;
+            }
+        }
+
+        private final long[] packed = new long[8];
+        private final int[] counts = new int[SIMHASH_BITS];
+        private int pending;
+        private int shingles;
+
+        private void add(long shingle) {
+            for (int b = 0; b < 8; b++) {
+                packed[b] += SPREAD_BITS[(int) (shingle >>> (8 * b)) & 0xff];
+            }
+            shingles++;
+            if (++pending == FLUSH_INTERVAL) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            for (int b = 0; b < 8; b++) {
+                for (int bit = 0; bit < 8; bit++) {
+                    counts[8 * b + bit] += (int) (packed[b] >>> (8 * bit)) & 0xff;
+                }
+                packed[b] = 0;
+            }
+            pending = 0;
+        }
+
+        private long simHash() {
+            flush();
+            long simHash = 0;
+            for (int bit = 0; bit < SIMHASH_BITS; bit++) {
+                if (counts[bit] * 2 > shingles) {
+                    simHash |= 1L << bit;
+                }
+            }
+            return simHash;
+        }
+    }
+}
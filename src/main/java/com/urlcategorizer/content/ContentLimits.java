@@ -0,0 +1,26 @@
+package com.urlcategorizer.content;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Bounds the work and the memory spent on one page: the bytes of the response body which are read, the time spent
+ * parsing them, and the length of the extracted content. A page exceeding any of them is cut, not failed, and its
+ * content is reported as truncated.
+ */
+@AllArgsConstructor
+@Getter
+@Builder
+public class ContentLimits {
+    private long maxBodyBytes;
+    private int maxTextChars;
+    private Duration parseTimeout;
+    /**
+     * Whether to ask the server for the first maxBodyBytes of the body only, with a Range request. Servers which
+     * ignore it send the whole body, which is then cut while it is read.
+     */
+    private boolean rangeRequest;
+}
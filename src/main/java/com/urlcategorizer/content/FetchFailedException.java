@@ -0,0 +1,22 @@
+package com.urlcategorizer.content;
+
+import com.urlcategorizer.dto.FetchStatus;
+
+import java.io.IOException;
+
+/**
+ * A failed fetch whose kind of failure is known, e.g. an HTTP error status or a host whose circuit is open.
+ */
+public class FetchFailedException extends IOException {
+
+    private final FetchStatus status;
+
+    public FetchFailedException(FetchStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public FetchStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,82 @@
+package com.urlcategorizer.content;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A response of a {@link PageFetcher}: either with the whole body, or with the body still to be read as a stream.
+ */
+@Getter
+@Builder
+public class FetchedPage {
+    /**
+     * The URL the page was finally served from, after redirects.
+     */
+    private final String url;
+    private final int statusCode;
+    /**
+     * The response headers, keyed case-insensitively.
+     */
+    private final Map<String, String> headers;
+    /**
+     * The whole body, or {@code null} for a streamed response.
+     */
+    private final byte[] body;
+    /**
+     * The unread body of a streamed response, or {@code null}.
+     */
+    private final InputStream bodyStream;
+    /**
+     * Whether the body was cut at the maximum body size of the fetch.
+     */
+    private final boolean truncated;
+
+    public String header(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Opens the body of the page; the caller must close the returned stream.
+     */
+    public InputStream openBody() {
+        return bodyStream != null ? bodyStream : new ByteArrayInputStream(body);
+    }
+
+    /**
+     * Returns the charset declared in the Content-Type header, or {@code null} if none is declared.
+     */
+    public String declaredCharset() {
+        String contentType = header("Content-Type");
+        if (contentType == null) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                return trimmed.substring("charset=".length()).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the declared charset of the page, or UTF-8 if none, or an unknown one, is declared.
+     */
+    public Charset charsetOrDefault() {
+        String charset = declaredCharset();
+        try {
+            return charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
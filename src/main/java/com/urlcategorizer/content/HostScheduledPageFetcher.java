@@ -0,0 +1,509 @@
+package com.urlcategorizer.content;
+
+import com.urlcategorizer.dto.FetchStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link PageFetcher} which spreads the fetches of a delegate fetcher politely over the hosts.
+ * <p>
+ * Every host has its own queue, a cap on the requests in flight, and a token bucket limiting the request rate.
+ * A single dispatcher thread serves the hosts round-robin, one request per host and round, so a large batch
+ * against one host waits for that host's tokens while the requests to other hosts keep flowing.
+ * <p>
+ * The rate of a host adapts to its responses: it grows by a small step with every successful response up to the
+ * maximum rate, and is halved on a 429 or 503 response, which also pauses the host for the Retry-After delay. Such
+ * a request is retried a few times when the delay is short enough; otherwise the throttling response is returned
+ * at once rather than after a long wait. A throttled host left idle recovers its rate, doubling it every second up
+ * to the initial rate, and is then forgotten like any other idle host. Capping the requests in flight per host
+ * also keeps the number of connections per host small, so that the keep-alive connections of the delegate are
+ * reused.
+ * <p>
+ * The host slot of a streamed fetch is held until its body stream is closed. Cancelling the future of a fetch
+ * drops it from its queue, or cancels it in flight and closes its body, so a caller which stopped waiting does not
+ * keep its slot.
+ */
+@Slf4j
+public class HostScheduledPageFetcher implements PageFetcher {
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+    private static final double MIN_RATE = 0.1;
+    private static final double RATE_INCREASE = 0.1;
+    private static final long DEFAULT_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long IDLE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long RATE_DOUBLING_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final PageFetcher delegate;
+    private final double initialRate;
+    private final double maxRate;
+    private final int maxPerHost;
+    private final int maxRetries;
+    private final long maxRetryAfterNanos;
+    private final long queueTimeoutNanos;
+
+    private final Object lock = new Object();
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final Deque<Host> readyHosts = new ArrayDeque<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private long queuedRequests;
+    private long throttledResponses;
+
+    /**
+     * @param delegate      The fetcher sending the requests.
+     * @param initialRate   The initial number of requests per second to a host.
+     * @param maxRate       The number of requests per second a host's rate can grow to.
+     * @param maxPerHost    The maximum number of requests in flight to a host.
+     * @param maxRetries    The number of times a throttled request is retried.
+     * @param maxRetryAfter A throttled request is only retried if the host asks to wait at most this long.
+     * @param queueTimeout  A request still queued after this long fails.
+     */
+    public HostScheduledPageFetcher(PageFetcher delegate, double initialRate, double maxRate, int maxPerHost,
+                                    int maxRetries, Duration maxRetryAfter, Duration queueTimeout) {
+        this.delegate = delegate;
+        this.initialRate = initialRate;
+        this.maxRate = Math.max(initialRate, maxRate);
+        this.maxPerHost = maxPerHost;
+        this.maxRetries = maxRetries;
+        this.maxRetryAfterNanos = maxRetryAfter.toNanos();
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.dispatcher = new Thread(this::dispatch, "fetch-scheduler");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers, long maxBodyBytes) {
+        return enqueue(url, headers, false, maxBodyBytes);
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetchStream(String url, Map<String, String> headers) {
+        return enqueue(url, headers, true, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return The number of requests waiting for their host.
+     */
+    public long getQueuedRequests() {
+        synchronized (lock) {
+            return queuedRequests;
+        }
+    }
+
+    /**
+     * @return The number of 429 and 503 responses received.
+     */
+    public long getThrottledResponses() {
+        synchronized (lock) {
+            return throttledResponses;
+        }
+    }
+
+    /**
+     * @return The number of hosts with queued or in-flight requests, or a rate which has not recovered yet.
+     */
+    public int getHosts() {
+        synchronized (lock) {
+            return hosts.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        List<Request> abandoned = new ArrayList<>();
+        synchronized (lock) {
+            hosts.values().forEach(host -> abandoned.addAll(host.pending));
+            hosts.clear();
+            readyHosts.clear();
+        }
+        abandoned.forEach(request -> request.result.completeExceptionally(new IOException("Fetcher closed")));
+        delegate.close();
+    }
+
+    private CompletableFuture<FetchedPage> enqueue(String url, Map<String, String> headers, boolean streamed,
+                                                   long maxBodyBytes) {
+        Request request = new Request(url, headers, streamed, maxBodyBytes, System.nanoTime());
+        synchronized (lock) {
+            if (!running) {
+                return CompletableFuture.failedFuture(new IOException("Fetcher closed"));
+            }
+            Host host = hosts.computeIfAbsent(UrlNormalizer.host(url), name -> new Host(name, initialRate, System.nanoTime()));
+            host.pending.addLast(request);
+            queuedRequests++;
+            markReady(host);
+            lock.notifyAll();
+        }
+        return request.result;
+    }
+
+    /**
+     * The dispatcher loop: sends the requests which their hosts allow, round after round, and sleeps until the next
+     * token is due or a request arrives or completes.
+     */
+    private void dispatch() {
+        while (running) {
+            List<Dispatch> dispatches = new ArrayList<>();
+            List<Request> expired = new ArrayList<>();
+            try {
+                synchronized (lock) {
+                    long waitNanos = nextRound(System.nanoTime(), dispatches, expired);
+                    if (dispatches.isEmpty() && expired.isEmpty()) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, waitNanos);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            expired.forEach(request -> request.result.completeExceptionally(new FetchFailedException(FetchStatus.QUEUE_TIMEOUT,
+                    "Timed out waiting for a fetch slot of " + UrlNormalizer.host(request.url))));
+            dispatches.forEach(dispatch -> send(dispatch.host, dispatch.request));
+        }
+    }
+
+    /**
+     * Visits every host with queued requests once, in round-robin order, and takes at most one request of each
+     * host which has a free slot and a token.
+     *
+     * @return How long to wait for the next token if no request could be taken.
+     */
+    private long nextRound(long now, List<Dispatch> dispatches, List<Request> expired) {
+        long waitNanos = IDLE_WAIT_NANOS;
+        for (int i = readyHosts.size(); i > 0; i--) {
+            Host host = readyHosts.pollFirst();
+            host.ready = false;
+            expireRequests(host, now, expired);
+            if (host.pending.isEmpty()) {
+                removeIfIdle(host, now);
+                if (host.ready) {
+                    waitNanos = Math.min(waitNanos, Math.max(host.untilToken(now), host.untilRecovered(initialRate)));
+                }
+                continue;
+            }
+            markReady(host);
+            if (host.inFlight >= maxPerHost) {
+                // Woken up when a request of the host completes
+                continue;
+            }
+            long untilToken = host.takeToken(now);
+            if (untilToken > 0) {
+                waitNanos = Math.min(waitNanos, untilToken);
+                continue;
+            }
+            host.inFlight++;
+            queuedRequests--;
+            dispatches.add(new Dispatch(host, host.pending.pollFirst()));
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Drops the requests at the head of the host queue which were cancelled or waited too long. The queue is in
+     * arrival order, apart from retried requests, which are older than the rest anyway.
+     */
+    private void expireRequests(Host host, long now, List<Request> expired) {
+        Request request;
+        while ((request = host.pending.peekFirst()) != null
+                && (request.result.isDone() || now - request.enqueuedAt > queueTimeoutNanos)) {
+            host.pending.pollFirst();
+            queuedRequests--;
+            expired.add(request);
+        }
+    }
+
+    private void markReady(Host host) {
+        if (!host.ready) {
+            host.ready = true;
+            readyHosts.addLast(host);
+        }
+    }
+
+    /**
+     * Forgets a host which has nothing queued or in flight once its rate is back at the initial rate. A host whose
+     * bucket is empty is only forgotten once it holds a token again, since a new one starts with a token: otherwise
+     * fetches sent one after the other would never wait. Until then the host stays ready, so that the dispatcher
+     * comes back to it while its rate recovers.
+     */
+    private void removeIfIdle(Host host, long now) {
+        if (host.inFlight == 0 && host.pending.isEmpty()) {
+            host.recoverRate(now, initialRate);
+            if (host.rate >= initialRate && host.untilToken(now) == 0) {
+                hosts.remove(host.name, host);
+            } else {
+                markReady(host);
+            }
+        }
+    }
+
+    private void send(Host host, Request request) {
+        CompletableFuture<FetchedPage> attempt;
+        try {
+            attempt = request.streamed
+                    ? delegate.fetchStream(request.url, request.headers)
+                    : delegate.fetch(request.url, request.headers, request.maxBodyBytes);
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<FetchedPage> sent = attempt;
+        // A caller which stopped waiting cancels the result; the response of the cancelled attempt, if any, is then
+        // closed by completeAndRelease, which releases the slot
+        request.result.whenComplete((page, error) -> {
+            if (request.result.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        sent.whenComplete((page, error) -> onResponse(host, request, page, error));
+    }
+
+    private void onResponse(Host host, Request request, FetchedPage page, Throwable error) {
+        if (error != null) {
+            release(host);
+            request.result.completeExceptionally(error);
+            return;
+        }
+
+        int status = page.getStatusCode();
+        if (status == HTTP_TOO_MANY_REQUESTS || status == HTTP_SERVICE_UNAVAILABLE) {
+            long retryAfterNanos = retryAfterNanos(page.header("Retry-After"));
+            boolean retry = request.attempts < maxRetries && retryAfterNanos <= maxRetryAfterNanos;
+            synchronized (lock) {
+                throttledResponses++;
+                host.throttle(System.nanoTime(), retryAfterNanos);
+                log.debug("{} answered {}, lowering its rate to {}/s", host.name, status, host.rate);
+                if (retry) {
+                    request.attempts++;
+                    host.pending.addFirst(request);
+                    queuedRequests++;
+                    markReady(host);
+                }
+            }
+            if (retry) {
+                PageFutures.closeBody(page);
+                release(host);
+                return;
+            }
+            completeAndRelease(host, request, page);
+            return;
+        }
+
+        if (status < 400) {
+            synchronized (lock) {
+                host.rate = Math.min(maxRate, host.rate + RATE_INCREASE);
+            }
+        }
+        completeAndRelease(host, request, page);
+    }
+
+    /**
+     * Completes the request; the slot of a streamed page is released when its body is closed. The page of a request
+     * which was cancelled meanwhile is closed at once.
+     */
+    private void completeAndRelease(Host host, Request request, FetchedPage page) {
+        if (!request.streamed || page.getBodyStream() == null) {
+            release(host);
+            request.result.complete(page);
+            return;
+        }
+        FetchedPage releasing = FetchedPage.builder()
+                .url(page.getUrl())
+                .statusCode(page.getStatusCode())
+                .headers(page.getHeaders())
+                .bodyStream(new ReleasingInputStream(page.getBodyStream(), () -> release(host)))
+                .build();
+        if (!request.result.complete(releasing)) {
+            PageFutures.closeBody(releasing);
+        }
+    }
+
+    private void release(Host host) {
+        synchronized (lock) {
+            host.inFlight--;
+            if (host.pending.isEmpty()) {
+                removeIfIdle(host, System.nanoTime());
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Parses a Retry-After header, either a number of seconds or an HTTP date.
+     *
+     * @return The delay in nanoseconds, or a default backoff if the header is missing or malformed.
+     */
+    static long retryAfterNanos(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return DEFAULT_BACKOFF_NANOS;
+        }
+        String value = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, try an HTTP date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+        } catch (DateTimeParseException e) {
+            return DEFAULT_BACKOFF_NANOS;
+        }
+    }
+
+    /**
+     * The queue and rate limit of a host; guarded by the lock of the fetcher.
+     */
+    private static final class Host {
+        private final String name;
+        private final Deque<Request> pending = new ArrayDeque<>();
+        private double rate;
+        private double tokens;
+        private long refilledAt;
+        private long pausedUntil;
+        private long recoveredAt;
+        private int inFlight;
+        private boolean ready;
+
+        private Host(String name, double rate, long now) {
+            this.name = name;
+            this.rate = rate;
+            this.tokens = 1;
+            this.refilledAt = now;
+            this.pausedUntil = now;
+            this.recoveredAt = now;
+        }
+
+        /**
+         * Takes a token if one is available. The bucket holds at most one second of requests, and at least one.
+         *
+         * @return 0 if a token was taken, or the time until the next token.
+         */
+        private long takeToken(long now) {
+            long untilToken = untilToken(now);
+            if (untilToken > 0) {
+                return untilToken;
+            }
+            tokens = availableTokens(now) - 1;
+            refilledAt = now;
+            return 0;
+        }
+
+        /**
+         * @return 0 if a token is available, or the time until the next token.
+         */
+        private long untilToken(long now) {
+            if (now < pausedUntil) {
+                return pausedUntil - now;
+            }
+            double available = availableTokens(now);
+            return available >= 1 ? 0 : (long) ((1 - available) / rate * 1e9) + 1;
+        }
+
+        private double availableTokens(long now) {
+            return Math.min(Math.max(1, rate), tokens + (now - refilledAt) * rate / 1e9);
+        }
+
+        private void throttle(long now, long retryAfterNanos) {
+            rate = Math.max(MIN_RATE, rate / 2);
+            tokens = 0;
+            refilledAt = now;
+            pausedUntil = Math.max(pausedUntil, now + retryAfterNanos);
+            recoveredAt = pausedUntil;
+        }
+
+        /**
+         * Doubles the rate for every second since the last throttling pause ended or the rate last recovered, up to
+         * the given rate.
+         */
+        private void recoverRate(long now, double targetRate) {
+            if (rate >= targetRate || now <= recoveredAt) {
+                return;
+            }
+            // Refill the bucket at the old rate before raising it
+            tokens = availableTokens(now);
+            refilledAt = now;
+            rate = Math.min(targetRate, rate * Math.pow(2, (double) (now - recoveredAt) / RATE_DOUBLING_NANOS));
+            recoveredAt = now;
+        }
+
+        /**
+         * @return 0 if the rate is at least the given rate, or the time until it recovered to it when idle.
+         */
+        private long untilRecovered(double targetRate) {
+            if (rate >= targetRate) {
+                return 0;
+            }
+            return (long) (Math.log(targetRate / rate) / Math.log(2) * RATE_DOUBLING_NANOS) + 1;
+        }
+    }
+
+    private static final class Request {
+        private final String url;
+        private final Map<String, String> headers;
+        private final boolean streamed;
+        private final long maxBodyBytes;
+        private final long enqueuedAt;
+        private final CompletableFuture<FetchedPage> result = new CompletableFuture<>();
+        private int attempts;
+
+        private Request(String url, Map<String, String> headers, boolean streamed, long maxBodyBytes, long enqueuedAt) {
+            this.url = url;
+            this.headers = headers;
+            this.streamed = streamed;
+            this.maxBodyBytes = maxBodyBytes;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class Dispatch {
+        private final Host host;
+        private final Request request;
+
+        private Dispatch(Host host, Request request) {
+            this.host = host;
+            this.request = request;
+        }
+    }
+
+    /**
+     * A body stream which runs an action once, when it is closed.
+     */
+    private static final class ReleasingInputStream extends FilterInputStream {
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private ReleasingInputStream(InputStream in, Runnable onClose) {
+            super(in);
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (closed.compareAndSet(false, true)) {
+                    onClose.run();
+                }
+            }
+        }
+    }
+}
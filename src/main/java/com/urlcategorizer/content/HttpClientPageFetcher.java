@@ -0,0 +1,330 @@
+package com.urlcategorizer.content;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link PageFetcher} backed by the JDK {@link HttpClient}.
+ * <p>
+ * Requests are sent asynchronously, so no thread is held while waiting for a slow site. The client keeps a pool of
+ * keep-alive connections and negotiates HTTP/2 where the server supports it. Completion stages run on a small
+ * dedicated pool, which also delivers the bodies, so callers must not run CPU-heavy work on it.
+ * <p>
+ * The timeout bounds the wait for the response headers, and the whole fetch of a buffered body; the exchange is
+ * cancelled when it expires. A read of a streamed body fails once no data arrived for the timeout, so a stalled
+ * origin cannot block its reader indefinitely.
+ */
+public class HttpClientPageFetcher implements PageFetcher {
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final Duration timeout;
+
+    public HttpClientPageFetcher(Duration timeout, int threads) {
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "page-fetcher-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .executor(executor)
+                .build();
+        this.timeout = timeout;
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers, long maxBodyBytes) {
+        CompletableFuture<HttpResponse<LimitedBody>> response = send(url, headers,
+                responseInfo -> new LimitedBodySubscriber(maxBodyBytes));
+        CompletableFuture<FetchedPage> page = response
+                .thenApply(received -> page(received)
+                        .body(received.body().bytes)
+                        .truncated(received.body().truncated)
+                        .build())
+                // The request timeout only covers the response headers, this one also covers the body
+                .orTimeout(2 * timeout.toMillis(), TimeUnit.MILLISECONDS);
+        // A fetch which timed out or was cancelled stops the exchange, instead of downloading a body nobody reads
+        page.whenComplete((received, error) -> {
+            if (error != null) {
+                response.cancel(true);
+            }
+        });
+        return page;
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetchStream(String url, Map<String, String> headers) {
+        CompletableFuture<HttpResponse<InputStream>> response = send(url, headers,
+                responseInfo -> new StreamingBodySubscriber(timeout.toNanos()));
+        return PageFutures.propagateCancellation(
+                response.thenApply(received -> page(received).bodyStream(received.body()).build()),
+                response, received -> PageFutures.closeQuietly(received.body()));
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> send(String url, Map<String, String> headers,
+                                                        HttpResponse.BodyHandler<T> bodyHandler) {
+        HttpRequest.Builder request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url.trim()))
+                    .timeout(timeout)
+                    .header("User-Agent", USER_AGENT)
+                    .GET();
+            headers.forEach(request::header);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid URL: " + url, e));
+        }
+        return client.sendAsync(request.build(), bodyHandler);
+    }
+
+    private static FetchedPage.FetchedPageBuilder page(HttpResponse<?> response) {
+        return FetchedPage.builder()
+                .url(response.uri().toString())
+                .statusCode(response.statusCode())
+                .headers(firstValues(response.headers()));
+    }
+
+    private static Map<String, String> firstValues(HttpHeaders headers) {
+        Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.map().forEach((name, list) -> {
+            if (!list.isEmpty()) {
+                values.put(name, list.get(0));
+            }
+        });
+        return values;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static final class LimitedBody {
+        private final byte[] bytes;
+        private final boolean truncated;
+
+        private LimitedBody(byte[] bytes, boolean truncated) {
+            this.bytes = bytes;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * Collects the body up to a maximum size, then cancels the rest of the response instead of reading it.
+     */
+    private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<LimitedBody> {
+        private final long maxBytes;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final CompletableFuture<LimitedBody> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        private LimitedBodySubscriber(long maxBytes) {
+            this.maxBytes = Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        }
+
+        @Override
+        public CompletionStage<LimitedBody> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                int length = (int) Math.min(buffer.remaining(), maxBytes - bytes.size());
+                byte[] chunk = new byte[length];
+                buffer.get(chunk);
+                bytes.write(chunk, 0, length);
+                if (buffer.hasRemaining()) {
+                    body.complete(new LimitedBody(bytes.toByteArray(), true));
+                    subscription.cancel();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            body.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(new LimitedBody(bytes.toByteArray(), false));
+        }
+    }
+
+    /**
+     * Hands the body over as an input stream, like {@link HttpResponse.BodySubscribers#ofInputStream()}, whose reads
+     * fail with an {@link HttpTimeoutException} once no data arrived for the idle timeout. Buffers are requested one
+     * list at a time, as the reader consumes them.
+     */
+    private static final class StreamingBodySubscriber extends InputStream implements HttpResponse.BodySubscriber<InputStream> {
+        private static final List<ByteBuffer> END = new ArrayList<>(0);
+        private static final Flow.Subscription CANCELLED = new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+
+        private final long idleTimeoutNanos;
+        private final BlockingQueue<List<ByteBuffer>> received = new LinkedBlockingQueue<>();
+        private final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        private volatile boolean closed;
+        private volatile Throwable error;
+        private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+        private ByteBuffer current;
+        private boolean ended;
+
+        private StreamingBodySubscriber(long idleTimeoutNanos) {
+            this.idleTimeoutNanos = idleTimeoutNanos;
+        }
+
+        @Override
+        public CompletionStage<InputStream> getBody() {
+            return CompletableFuture.completedFuture(this);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (!this.subscription.compareAndSet(null, subscription) || closed) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            received.add(END);
+        }
+
+        @Override
+        public void onComplete() {
+            received.add(END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextBuffer() ? current.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextBuffer()) {
+                return -1;
+            }
+            int read = Math.min(length, current.remaining());
+            current.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : current.remaining();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            received.clear();
+            Flow.Subscription active = subscription.getAndSet(CANCELLED);
+            if (active != null && active != CANCELLED) {
+                active.cancel();
+            }
+        }
+
+        /**
+         * Makes the current buffer one with remaining bytes, waiting for the next list of buffers if needed.
+         *
+         * @return {@code false} at the end of the body.
+         */
+        private boolean nextBuffer() throws IOException {
+            while (current == null || !current.hasRemaining()) {
+                if (buffers.hasNext()) {
+                    current = buffers.next();
+                    continue;
+                }
+                if (ended) {
+                    return false;
+                }
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                List<ByteBuffer> next;
+                try {
+                    next = received.poll(idleTimeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading the body");
+                }
+                if (next == null) {
+                    throw new HttpTimeoutException("No data received for " + TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) + " ms");
+                }
+                if (next == END) {
+                    ended = true;
+                    if (error != null) {
+                        throw error instanceof IOException ? (IOException) error : new IOException(error);
+                    }
+                    return false;
+                }
+                buffers = next.iterator();
+                Flow.Subscription active = subscription.get();
+                if (active != null && active != CANCELLED) {
+                    active.request(1);
+                }
+            }
+            return true;
+        }
+    }
+}
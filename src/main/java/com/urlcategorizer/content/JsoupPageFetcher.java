@@ -0,0 +1,91 @@
+package com.urlcategorizer.content;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A {@link PageFetcher} running the blocking {@code Jsoup.connect(...)} on a dedicated pool.
+ * Kept for sites which misbehave with the JDK client; every in-flight fetch holds one pool thread.
+ */
+public class JsoupPageFetcher implements PageFetcher {
+
+    private final ExecutorService executor;
+    private final int timeoutMillis;
+
+    public JsoupPageFetcher(Duration timeout, int threads) {
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "jsoup-fetcher-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeoutMillis = (int) timeout.toMillis();
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers, long maxBodyBytes) {
+        // Read one byte more than the maximum, since Jsoup cuts the body silently
+        int maxBodySize = (int) Math.min(maxBodyBytes, Integer.MAX_VALUE - 1);
+        return CompletableFuture.supplyAsync(() -> {
+            Connection.Response response = execute(url, headers, connection -> connection.maxBodySize(maxBodySize + 1));
+            byte[] body = response.bodyAsBytes();
+            boolean truncated = body.length > maxBodySize;
+            return page(response)
+                    .body(truncated ? Arrays.copyOf(body, maxBodySize) : body)
+                    .truncated(truncated)
+                    .build();
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetchStream(String url, Map<String, String> headers) {
+        return CompletableFuture.supplyAsync(() -> {
+            Connection.Response response = execute(url, headers, connection -> connection.maxBodySize(0));
+            return page(response).bodyStream(response.bodyStream()).build();
+        }, executor);
+    }
+
+    private Connection.Response execute(String url, Map<String, String> headers,
+                                        Consumer<Connection> customizer) {
+        try {
+            Connection connection = Jsoup.connect(url)
+                    .userAgent(USER_AGENT)
+                    .timeout(timeoutMillis)
+                    .followRedirects(true)
+                    .ignoreHttpErrors(true)
+                    .headers(headers);
+            customizer.accept(connection);
+            return connection.execute();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (IllegalArgumentException e) {
+            throw new UncheckedIOException(new IOException("Invalid URL: " + url, e));
+        }
+    }
+
+    private static FetchedPage.FetchedPageBuilder page(Connection.Response response) {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(response.headers());
+        return FetchedPage.builder()
+                .url(response.url().toString())
+                .statusCode(response.statusCode())
+                .headers(headers);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
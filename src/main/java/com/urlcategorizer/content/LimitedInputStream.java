@@ -0,0 +1,93 @@
+package com.urlcategorizer.content;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream which ends early, as if the underlying stream ended, once a number of bytes has been read or a
+ * deadline has passed. Parsers reading from it stop with the input read so far instead of failing.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long deadlineNanos;
+    private long remaining;
+    private boolean truncated;
+
+    /**
+     * @param in            The underlying stream.
+     * @param maxBytes      The number of bytes after which the stream ends.
+     * @param deadlineNanos The {@link System#nanoTime()} after which the stream ends.
+     */
+    public LimitedInputStream(InputStream in, long maxBytes, long deadlineNanos) {
+        super(in);
+        this.remaining = maxBytes;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (limitReached()) {
+            return -1;
+        }
+        int b = super.read();
+        if (b >= 0) {
+            remaining--;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (limitReached()) {
+            return -1;
+        }
+        int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+        if (read > 0) {
+            remaining -= read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (limitReached()) {
+            return 0;
+        }
+        long skipped = super.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(super.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return {@code true} if the stream ended because of the byte limit or the deadline, with input left unread.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    private boolean limitReached() throws IOException {
+        if (truncated) {
+            return true;
+        }
+        if (remaining <= 0 || System.nanoTime() - deadlineNanos > 0) {
+            // Only a truncation if the underlying stream had more to give
+            truncated = super.read() >= 0;
+            return true;
+        }
+        return false;
+    }
+}
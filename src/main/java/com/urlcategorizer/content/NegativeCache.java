@@ -0,0 +1,103 @@
+package com.urlcategorizer.content;
+
+import com.urlcategorizer.dto.FetchStatus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the URLs whose retrieval failed for a short time, so that requests for them fail at once instead of
+ * fetching the page again.
+ * <p>
+ * The cache is bounded by its number of entries: once full, expired entries are dropped, and new failures are not
+ * remembered until there is room again.
+ */
+public class NegativeCache {
+
+    /**
+     * A remembered failure.
+     */
+    public static final class Failure {
+        private final FetchStatus status;
+        private final String message;
+        private final long expiresAtMillis;
+
+        private Failure(FetchStatus status, String message, long expiresAtMillis) {
+            this.status = status;
+            this.message = message;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public FetchStatus getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+
+    public NegativeCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param key The normalized URL.
+     * @return The failure remembered for the URL, or {@code null} if there is none or it expired.
+     */
+    public Failure get(String key) {
+        Failure failure = failures.get(key);
+        if (failure == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= failure.expiresAtMillis) {
+            failures.remove(key, failure);
+            return null;
+        }
+        hits.increment();
+        return failure;
+    }
+
+    /**
+     * Remembers a failure of a URL for the time to live of the cache.
+     *
+     * @param key     The normalized URL.
+     * @param status  The kind of failure.
+     * @param message The description of the failure.
+     */
+    public void put(String key, FetchStatus status, String message) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (failures.size() >= maxEntries) {
+            failures.values().removeIf(failure -> now >= failure.expiresAtMillis);
+            if (failures.size() >= maxEntries) {
+                return;
+            }
+        }
+        failures.put(key, new Failure(status, message, now + ttlMillis));
+    }
+
+    public void remove(String key) {
+        failures.remove(key);
+    }
+
+    /**
+     * @return The number of requests answered with a remembered failure.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public int size() {
+        return failures.size();
+    }
+}
@@ -0,0 +1,40 @@
+package com.urlcategorizer.content;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches pages over HTTP without blocking the caller.
+ * Redirects are followed, and HTTP error statuses are returned as pages rather than failures.
+ */
+public interface PageFetcher extends AutoCloseable {
+
+    String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/58.0.3029.110 Safari/537.36";
+
+    /**
+     * Fetches a page with its whole body, or with the beginning of a body larger than the given maximum.
+     * The rest of a larger body is not read, and the page is marked as {@link FetchedPage#isTruncated() truncated}.
+     *
+     * @param url          The URL to fetch.
+     * @param headers      Additional request headers, e.g. conditional request validators.
+     * @param maxBodyBytes The maximum number of body bytes to read.
+     * @return The fetched page; fails with an {@link java.io.IOException} if the page cannot be fetched.
+     */
+    CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers, long maxBodyBytes);
+
+    /**
+     * Fetches a page and completes as soon as the response headers are received.
+     * The body is left unread in {@link FetchedPage#getBodyStream()}, so the caller can stop reading it early;
+     * the caller must close it.
+     *
+     * @param url     The URL to fetch.
+     * @param headers Additional request headers.
+     * @return The fetched page with an unread body.
+     */
+    CompletableFuture<FetchedPage> fetchStream(String url, Map<String, String> headers);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,84 @@
+package com.urlcategorizer.content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Cancellation of the futures of fetched pages.
+ * <p>
+ * A future derived from a fetch, e.g. with {@code whenComplete}, does not cancel the fetch when it is cancelled
+ * itself. For a streamed fetch this matters: its body holds a connection, and a host slot of the
+ * {@link HostScheduledPageFetcher}, until it is closed, and a caller which stopped waiting never closes it.
+ */
+public final class PageFutures {
+
+    private PageFutures() {
+    }
+
+    /**
+     * Cancels the fetch when a future derived from it is cancelled. If the fetch completed anyway, its result is
+     * discarded, since nobody is left to read it.
+     *
+     * @param derived The future handed to the caller.
+     * @param fetch   The future of the fetch it depends on.
+     * @param discard Releases the result of a fetch which completed too late, e.g. by closing its body.
+     * @return The derived future.
+     */
+    public static <T, S> CompletableFuture<T> propagateCancellation(CompletableFuture<T> derived,
+                                                                    CompletableFuture<S> fetch, Consumer<S> discard) {
+        derived.whenComplete((result, error) -> {
+            if (derived.isCancelled() && !fetch.cancel(true)) {
+                fetch.thenAccept(discard);
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * Cancels the fetch of a page when a future derived from it is cancelled, closing the body of a page which was
+     * fetched anyway.
+     *
+     * @param derived The future handed to the caller.
+     * @param fetch   The future of the fetch it depends on.
+     * @return The derived future.
+     */
+    public static <T> CompletableFuture<T> propagateCancellation(CompletableFuture<T> derived,
+                                                                 CompletableFuture<FetchedPage> fetch) {
+        return propagateCancellation(derived, fetch, PageFutures::closeBody);
+    }
+
+    /**
+     * Cancels the fetch of a page whose caller stopped waiting, or closes the body of the page if it was already
+     * fetched.
+     *
+     * @param page The future of the fetch.
+     */
+    public static void cancel(CompletableFuture<FetchedPage> page) {
+        if (!page.cancel(true)) {
+            page.thenAccept(PageFutures::closeBody);
+        }
+    }
+
+    /**
+     * Closes the body stream of a streamed page; a page with a buffered body holds nothing.
+     *
+     * @param page The page, or {@code null}.
+     */
+    public static void closeBody(FetchedPage page) {
+        if (page != null) {
+            closeQuietly(page.getBodyStream());
+        }
+    }
+
+    static void closeQuietly(InputStream body) {
+        if (body != null) {
+            try {
+                body.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.urlcategorizer.content;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent loads of the same key.
+ * <p>
+ * The first caller for a key starts the load; callers arriving while it is in progress get its result instead of
+ * loading again. Every caller gets its own copy of the shared result with its own timeout, so giving up (on timeout
+ * or cancellation) only detaches that caller: the load itself and the other callers are not affected.
+ *
+ * @param <K> The key type.
+ * @param <V> The loaded value type.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Starts the load for a key, or joins a load of the same key which is already in progress.
+     *
+     * @param key         The key to deduplicate on.
+     * @param loader      Starts the load when no load of the key is in progress.
+     * @param waitTimeout How long the caller waits for the result; the result fails with a
+     *                    {@link java.util.concurrent.TimeoutException} afterwards.
+     * @return The caller's own view of the loaded value.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader, Duration waitTimeout) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy().orTimeout(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        executions.increment();
+        created.whenComplete((value, error) -> inFlight.remove(key, created));
+        try {
+            loader.get().whenComplete((value, error) -> {
+                if (error != null) {
+                    created.completeExceptionally(error);
+                } else {
+                    created.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+        }
+        return created.copy().orTimeout(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The number of loads actually run.
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * @return The number of calls served by joining a load already in progress, i.e. the loads saved.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
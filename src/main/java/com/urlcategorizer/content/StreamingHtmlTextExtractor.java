@@ -0,0 +1,366 @@
+package com.urlcategorizer.content;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Extracts the visible text of an HTML page from a character stream without building a DOM.
+ * <p>
+ * The extractor is a small tokenizer which skips tags, comments and the content of script, style and similar
+ * elements, decodes the common character references, collapses whitespace, and hands the text to a
+ * {@link TextSink} in chunks of a fixed-size buffer. The sink can stop the extraction at any chunk, e.g. as soon as
+ * every category it looks for has matched, so peak memory depends on the buffer size and not on the page size.
+ * <p>
+ * Instances are not thread-safe; create one per extraction.
+ */
+public class StreamingHtmlTextExtractor {
+
+    /**
+     * Receives the extracted text in chunks.
+     */
+    @FunctionalInterface
+    public interface TextSink {
+        /**
+         * @return {@code true} to stop the extraction.
+         */
+        boolean accept(char[] buffer, int offset, int length);
+    }
+
+    /**
+     * The outcome of an extraction.
+     */
+    public static final class Result {
+        private final long extractedChars;
+        private final boolean truncated;
+        private final boolean stoppedBySink;
+
+        private Result(long extractedChars, boolean truncated, boolean stoppedBySink) {
+            this.extractedChars = extractedChars;
+            this.truncated = truncated;
+            this.stoppedBySink = stoppedBySink;
+        }
+
+        public long getExtractedChars() {
+            return extractedChars;
+        }
+
+        /**
+         * @return {@code true} if the extraction stopped at the maximum content size.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        /**
+         * @return {@code true} if the sink stopped the extraction before the end of the page.
+         */
+        public boolean isStoppedBySink() {
+            return stoppedBySink;
+        }
+
+        /**
+         * @return The same outcome, marked as truncated, e.g. because the input itself was cut.
+         */
+        public Result asTruncated() {
+            return new Result(extractedChars, true, stoppedBySink);
+        }
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MAX_TAG_NAME_LENGTH = 16;
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    /**
+     * Elements whose content is not visible text.
+     */
+    private static final Set<String> SKIPPED_ELEMENTS = Set.of("script", "style", "title", "noscript", "template", "textarea");
+
+    /**
+     * Elements which separate words, so their boundaries become a space in the text.
+     */
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+            "address", "article", "aside", "blockquote", "br", "dd", "div", "dl", "dt", "fieldset", "figcaption",
+            "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol",
+            "p", "pre", "section", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul", "option", "body");
+
+    private enum State {
+        TEXT, TAG_OPEN, TAG_NAME, TAG_ATTRIBUTES, MARKUP_DECLARATION, COMMENT, BOGUS_COMMENT, SKIPPED_CONTENT, ENTITY
+    }
+
+    private final char[] input;
+    private final char[] output;
+    private final long maxChars;
+
+    private State state = State.TEXT;
+    private final StringBuilder tagName = new StringBuilder(MAX_TAG_NAME_LENGTH);
+    private final StringBuilder entity = new StringBuilder(MAX_ENTITY_LENGTH);
+    private boolean closingTag;
+    private char attributeQuote;
+    private int dashes;
+    private int declarationChars;
+    private String skippedEndTag;
+    private int skippedEndTagMatched;
+
+    private int outputLength;
+    private long extractedChars;
+    private boolean pendingSpace;
+    private boolean stopped;
+    private boolean truncated;
+    private boolean stoppedBySink;
+
+    /**
+     * @param maxChars The maximum number of text characters to extract; the extraction stops once reached.
+     */
+    public StreamingHtmlTextExtractor(long maxChars) {
+        this(maxChars, DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamingHtmlTextExtractor(long maxChars, int bufferSize) {
+        this.maxChars = maxChars;
+        this.input = new char[bufferSize];
+        this.output = new char[bufferSize];
+    }
+
+    /**
+     * Reads the HTML from the reader and passes its text to the sink, until the end of the stream,
+     * the maximum content size, or the sink asks to stop. The reader is not closed.
+     *
+     * @param reader The HTML source.
+     * @param sink   The receiver of the text chunks.
+     * @return The outcome of the extraction.
+     * @throws IOException if reading fails.
+     */
+    public Result extract(Reader reader, TextSink sink) throws IOException {
+        int read;
+        while (!stopped && (read = reader.read(input, 0, input.length)) != -1) {
+            for (int i = 0; i < read && !stopped; i++) {
+                process(input[i], sink);
+            }
+        }
+        if (!stopped && state == State.ENTITY) {
+            emitRaw('&', entity, sink);
+        }
+        flush(sink);
+        return new Result(extractedChars, truncated, stoppedBySink);
+    }
+
+    private void process(char c, TextSink sink) {
+        switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    state = State.TAG_OPEN;
+                } else if (c == '&') {
+                    entity.setLength(0);
+                    state = State.ENTITY;
+                } else if (Character.isWhitespace(c)) {
+                    pendingSpace = true;
+                } else {
+                    emit(c, sink);
+                }
+                break;
+            case TAG_OPEN:
+                tagName.setLength(0);
+                closingTag = false;
+                if (c == '/') {
+                    closingTag = true;
+                    state = State.TAG_NAME;
+                } else if (c == '!') {
+                    declarationChars = 0;
+                    state = State.MARKUP_DECLARATION;
+                } else if (c == '?') {
+                    state = State.BOGUS_COMMENT;
+                } else if (Character.isLetter(c)) {
+                    appendTagName(c);
+                    state = State.TAG_NAME;
+                } else {
+                    // Not a tag, e.g. "a < b"
+                    emit('<', sink);
+                    state = State.TEXT;
+                    process(c, sink);
+                }
+                break;
+            case TAG_NAME:
+                if (c == '>') {
+                    endTag();
+                } else if (Character.isWhitespace(c) || c == '/') {
+                    attributeQuote = 0;
+                    state = State.TAG_ATTRIBUTES;
+                } else {
+                    appendTagName(c);
+                }
+                break;
+            case TAG_ATTRIBUTES:
+                if (attributeQuote != 0) {
+                    if (c == attributeQuote) {
+                        attributeQuote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    attributeQuote = c;
+                } else if (c == '>') {
+                    endTag();
+                }
+                break;
+            case MARKUP_DECLARATION:
+                if (c == '-' && declarationChars < 2) {
+                    declarationChars++;
+                    if (declarationChars == 2) {
+                        dashes = 0;
+                        state = State.COMMENT;
+                    }
+                } else {
+                    state = c == '>' ? State.TEXT : State.BOGUS_COMMENT;
+                }
+                break;
+            case COMMENT:
+                if (c == '>' && dashes >= 2) {
+                    state = State.TEXT;
+                } else {
+                    dashes = c == '-' ? dashes + 1 : 0;
+                }
+                break;
+            case BOGUS_COMMENT:
+                if (c == '>') {
+                    state = State.TEXT;
+                }
+                break;
+            case SKIPPED_CONTENT:
+                matchSkippedEndTag(c);
+                break;
+            case ENTITY:
+                if (c == ';') {
+                    String decoded = decodeEntity(entity);
+                    if (decoded == null) {
+                        emitRaw('&', entity, sink);
+                        emit(';', sink);
+                    } else {
+                        for (int i = 0; i < decoded.length(); i++) {
+                            char d = decoded.charAt(i);
+                            if (Character.isWhitespace(d)) {
+                                pendingSpace = true;
+                            } else {
+                                emit(d, sink);
+                            }
+                        }
+                    }
+                    state = State.TEXT;
+                } else if ((Character.isLetterOrDigit(c) || c == '#') && entity.length() < MAX_ENTITY_LENGTH) {
+                    entity.append(c);
+                } else {
+                    emitRaw('&', entity, sink);
+                    state = State.TEXT;
+                    process(c, sink);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void appendTagName(char c) {
+        if (tagName.length() < MAX_TAG_NAME_LENGTH) {
+            tagName.append(Character.toLowerCase(c));
+        }
+    }
+
+    private void endTag() {
+        String name = tagName.toString();
+        if (BLOCK_ELEMENTS.contains(name)) {
+            pendingSpace = true;
+        }
+        if (!closingTag && SKIPPED_ELEMENTS.contains(name)) {
+            skippedEndTag = "</" + name;
+            skippedEndTagMatched = 0;
+            state = State.SKIPPED_CONTENT;
+        } else {
+            state = State.TEXT;
+        }
+    }
+
+    /**
+     * Looks for the end tag of a skipped element, e.g. "&lt;/script", case-insensitively.
+     */
+    private void matchSkippedEndTag(char c) {
+        char lower = Character.toLowerCase(c);
+        if (lower == skippedEndTag.charAt(skippedEndTagMatched)) {
+            skippedEndTagMatched++;
+            if (skippedEndTagMatched == skippedEndTag.length()) {
+                tagName.setLength(0);
+                tagName.append(skippedEndTag, 2, skippedEndTag.length());
+                closingTag = true;
+                attributeQuote = 0;
+                state = State.TAG_ATTRIBUTES;
+            }
+        } else {
+            skippedEndTagMatched = lower == '<' ? 1 : 0;
+        }
+    }
+
+    private static String decodeEntity(CharSequence name) {
+        if (name.length() > 1 && name.charAt(0) == '#') {
+            try {
+                boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+                int codePoint = Integer.parseInt(name.subSequence(hex ? 2 : 1, name.length()).toString(), hex ? 16 : 10);
+                return Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        switch (name.toString().toLowerCase(Locale.ROOT)) {
+            case "amp":
+                return "&";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            case "nbsp":
+                return "\u00a0";
+            default:
+                return null;
+        }
+    }
+
+    private void emitRaw(char first, CharSequence rest, TextSink sink) {
+        emit(first, sink);
+        for (int i = 0; i < rest.length() && !stopped; i++) {
+            emit(rest.charAt(i), sink);
+        }
+    }
+
+    private void emit(char c, TextSink sink) {
+        if (pendingSpace) {
+            pendingSpace = false;
+            if (extractedChars > 0) {
+                emit(' ', sink);
+            }
+        }
+        if (stopped) {
+            return;
+        }
+        if (extractedChars >= maxChars) {
+            truncated = true;
+            stopped = true;
+            return;
+        }
+        output[outputLength++] = c;
+        extractedChars++;
+        if (outputLength == output.length) {
+            flush(sink);
+        }
+    }
+
+    private void flush(TextSink sink) {
+        if (outputLength > 0 && !stoppedBySink) {
+            if (sink.accept(output, 0, outputLength)) {
+                stoppedBySink = true;
+                stopped = true;
+            }
+        }
+        outputLength = 0;
+    }
+}
@@ -0,0 +1,100 @@
+package com.urlcategorizer.content;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Utility methods for deriving keys from URLs.
+ */
+public final class UrlNormalizer {
+
+    private static final String UTM_PREFIX = "utm_";
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "gclid", "gclsrc", "dclid", "fbclid", "msclkid", "yclid", "twclid", "igshid", "mc_cid", "mc_eid",
+            "_ga", "_gl", "_hsenc", "_hsmi", "mkt_tok", "oly_anon_id", "oly_enc_id", "vero_id", "wickedid");
+
+    private UrlNormalizer() {
+    }
+
+    /**
+     * Normalizes a URL so that trivially different spellings of the same page map to one key:
+     * the scheme and host are lower-cased, the default port and the fragment are dropped, and an empty path becomes "/".
+     * Tracking parameters (utm_*, gclid, fbclid and the like) are removed from the query, since they do not change
+     * the page; the order of the other parameters is kept.
+     * A URL which cannot be parsed is returned trimmed but otherwise unchanged.
+     *
+     * @param url The URL.
+     * @return The normalized URL.
+     */
+    public static String normalize(String url) {
+        String trimmed = url.trim();
+        try {
+            URI uri = new URI(trimmed);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return trimmed;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+                port = -1;
+            }
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            StringBuilder normalized = new StringBuilder()
+                    .append(scheme).append("://")
+                    .append(uri.getHost().toLowerCase(Locale.ROOT));
+            if (port != -1) {
+                normalized.append(':').append(port);
+            }
+            normalized.append(path);
+            String query = withoutTrackingParameters(uri.getRawQuery());
+            if (query != null) {
+                normalized.append('?').append(query);
+            }
+            return normalized.toString();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+    }
+
+    /**
+     * Removes the tracking parameters from a raw query.
+     *
+     * @return The query without them, or {@code null} if nothing is left.
+     */
+    private static String withoutTrackingParameters(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder kept = new StringBuilder(query.length());
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = (equals < 0 ? parameter : parameter.substring(0, equals)).toLowerCase(Locale.ROOT);
+            if (parameter.isEmpty() || name.startsWith(UTM_PREFIX) || TRACKING_PARAMETERS.contains(name)) {
+                continue;
+            }
+            if (kept.length() > 0) {
+                kept.append('&');
+            }
+            kept.append(parameter);
+        }
+        return kept.length() == 0 ? null : kept.toString();
+    }
+
+    /**
+     * Returns the lower-cased host of a URL, or the URL itself when it cannot be parsed,
+     * so that every malformed URL is treated as its own host.
+     *
+     * @param url The URL.
+     * @return The host of the URL.
+     */
+    public static String host(String url) {
+        try {
+            String host = new URI(url.trim()).getHost();
+            return host == null ? url : host.toLowerCase(Locale.ROOT);
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+}
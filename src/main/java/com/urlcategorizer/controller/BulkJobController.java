@@ -0,0 +1,104 @@
+package com.urlcategorizer.controller;
+
+import com.urlcategorizer.UrlCategorizationRunner;
+import com.urlcategorizer.dto.BulkJobDTO;
+import com.urlcategorizer.dto.BulkJobRequestDTO;
+import com.urlcategorizer.matcher.MatchingStrategy;
+import com.urlcategorizer.service.BulkJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Bulk categorization of large URL lists. A job is submitted as a JSON list, a plain-text body or an uploaded file
+ * with one URL per line; it then runs in the background, and its results can be followed as NDJSON while they are
+ * produced.
+ */
+@RestController
+@RequestMapping("/api/bulk-jobs")
+@RequiredArgsConstructor
+public class BulkJobController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final BulkJobService bulkJobService;
+    private final UrlCategorizationRunner urlCategorizationRunner;
+
+    @Value("${url-categorization.jobs.stream-timeout:6h}")
+    private Duration streamTimeout;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkJobDTO> submitJob(@RequestBody BulkJobRequestDTO request) throws IOException {
+        if (request.getUrls() == null || request.getUrls().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        MatchingStrategy strategy = request.getStrategy() == null ? MatchingStrategy.AHO_CORASICK : request.getStrategy();
+        return accepted(bulkJobService.submit(request.getUrls(), strategy, urlCategorizationRunner.getPredefinedCategories()));
+    }
+
+    @PostMapping(consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<BulkJobDTO> submitJob(InputStream urls,
+                                                @RequestParam(defaultValue = "AHO_CORASICK") MatchingStrategy strategy) throws IOException {
+        return accepted(bulkJobService.submit(urls, strategy, urlCategorizationRunner.getPredefinedCategories()));
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BulkJobDTO> uploadJob(@RequestParam("file") MultipartFile file,
+                                                @RequestParam(defaultValue = "AHO_CORASICK") MatchingStrategy strategy) throws IOException {
+        try (InputStream urls = file.getInputStream()) {
+            return accepted(bulkJobService.submit(urls, strategy, urlCategorizationRunner.getPredefinedCategories()));
+        }
+    }
+
+    /**
+     * Returns the state and progress of a job.
+     *
+     * @param id
+     * @return
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<BulkJobDTO> getJob(@PathVariable String id) {
+        return ResponseEntity.of(bulkJobService.getJob(id));
+    }
+
+    /**
+     * Streams the results of a job as NDJSON, one line per URL, from the first result until the job is finished.
+     *
+     * @param id
+     * @return
+     */
+    @GetMapping(value = "/{id}/results", produces = "application/x-ndjson")
+    public ResponseEntity<ResponseBodyEmitter> streamResults(@PathVariable String id) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeout.toMillis());
+        if (!bulkJobService.streamResults(id, emitter)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    /**
+     * Cancels a job: no further URLs are started, and the results produced so far are kept.
+     *
+     * @param id
+     * @return
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<BulkJobDTO> cancelJob(@PathVariable String id) {
+        return ResponseEntity.of(bulkJobService.cancel(id));
+    }
+
+    private static ResponseEntity<BulkJobDTO> accepted(BulkJobDTO job) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/bulk-jobs/" + job.getId()))
+                .body(job);
+    }
+}
@@ -0,0 +1,72 @@
+package com.urlcategorizer.controller;
+
+import com.urlcategorizer.dto.CategoryDTO;
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+import com.urlcategorizer.service.CategoryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Manages the predefined categories. Changes are persisted and picked up by the categorization endpoints
+ * as soon as the category model has been recompiled in the background.
+ */
+@RestController
+@RequestMapping("/api/categories")
+@RequiredArgsConstructor
+public class CategoryController {
+
+    private final CategoryService categoryService;
+
+    @GetMapping
+    public List<CategoryDTO> getCategories() {
+        return categoryService.getCategories().stream()
+                .map(CategoryController::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/{name}")
+    public ResponseEntity<CategoryDTO> getCategory(@PathVariable String name) {
+        return categoryService.getCategory(name)
+                .map(category -> ResponseEntity.ok(toDto(category)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Creates or replaces a category.
+     *
+     * @param name
+     * @param category The category; only its keywords are used.
+     * @return The stored category.
+     */
+    @PutMapping("/{name}")
+    public ResponseEntity<CategoryDTO> saveCategory(@PathVariable String name, @RequestBody CategoryDTO category) {
+        if (name.isBlank() || category.getKeywords() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(toDto(categoryService.saveCategory(name, category.getKeywords())));
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> deleteCategory(@PathVariable String name) {
+        return categoryService.deleteCategory(name)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    private static CategoryDTO toDto(Category category) {
+        Set<String> keywords = category.getKeywords().stream()
+                .map(CategoryKeyword::getKeyword)
+                .collect(Collectors.toCollection(TreeSet::new));
+        return CategoryDTO.builder()
+                .name(category.getName())
+                .keywords(keywords)
+                .build();
+    }
+}
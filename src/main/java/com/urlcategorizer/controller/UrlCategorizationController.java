@@ -1,16 +1,24 @@
 package com.urlcategorizer.controller;
 
 import com.urlcategorizer.UrlCategorizationRunner;
+import com.urlcategorizer.dto.CategorizationMode;
+import com.urlcategorizer.dto.UrlBatchResultDTO;
+import com.urlcategorizer.dto.ScoreThresholds;
+import com.urlcategorizer.dto.StrategyEvaluationDTO;
 import com.urlcategorizer.dto.UrlCategorizationResultDTO;
+import com.urlcategorizer.dto.UrlCategorizationScoredResultDTO;
 import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.matcher.MatchingStrategy;
 import com.urlcategorizer.service.UrlCategorizationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/url-categorization")
@@ -22,14 +30,113 @@ public class UrlCategorizationController {
 
     /**
      * This endpoint categorizes a given URL by returning the set of categories associated with it.
+     * An optional matching strategy selects the matching engine, the simple search is used otherwise.
+     * In streaming mode the page text is matched while it is read, and reading stops once all categories matched.
+     * In head-only mode only the title, the description and keywords meta tags and the first kilobytes of the page
+     * are matched. In tiered mode the head is matched first, and the whole page is fetched only if the head does not
+     * decide the result; the result tells which tier decided it.
      *
      * @param url
+     * @param strategy
+     * @param streaming
+     * @param headOnly
+     * @param tiered
      * @return
      */
     @GetMapping("/categorize")
-    public ResponseEntity<UrlCategorizationResultDTO> categorizeUrl(@RequestParam String url) {
+    public ResponseEntity<UrlCategorizationResultDTO> categorizeUrl(@RequestParam String url,
+                                                                    @RequestParam(required = false) MatchingStrategy strategy,
+                                                                    @RequestParam(defaultValue = "false") boolean streaming,
+                                                                    @RequestParam(defaultValue = "false") boolean headOnly,
+                                                                    @RequestParam(defaultValue = "false") boolean tiered) {
         Set<Category> categories = urlCategorizationRunner.getPredefinedCategories();
-        return ResponseEntity.ok(urlCategorizationService.categorizeUrl(url, categories));
+        if (streaming) {
+            return ResponseEntity.ok(urlCategorizationService.categorizeUrlStreaming(url, categories));
+        }
+        CategorizationMode mode = mode(headOnly, tiered);
+        if (mode != CategorizationMode.FULL) {
+            MatchingStrategy modeStrategy = strategy == null ? MatchingStrategy.SIMPLE : strategy;
+            return ResponseEntity.ok(urlCategorizationService.categorizeUrl(url, categories, modeStrategy, mode));
+        }
+        if (strategy == null) {
+            return ResponseEntity.ok(urlCategorizationService.categorizeUrl(url, categories));
+        }
+        return ResponseEntity.ok(urlCategorizationService.categorizeUrl(url, categories, strategy));
+    }
+
+    /**
+     * This endpoint categorizes a given URL with a score per category: the number of keyword hits, the number of
+     * distinct keywords hit, and the share of the page covered by the category's keywords.
+     * Categories below any of the thresholds are left out; the defaults come from the configuration.
+     *
+     * @param url
+     * @param minHits
+     * @param minDistinctKeywords
+     * @param minDensity
+     * @return
+     */
+    @GetMapping("/categorize-scored")
+    public ResponseEntity<UrlCategorizationScoredResultDTO> categorizeUrlScored(
+            @RequestParam String url,
+            @RequestParam(defaultValue = "${url-categorization.scoring.min-hits:1}") int minHits,
+            @RequestParam(defaultValue = "${url-categorization.scoring.min-distinct-keywords:1}") int minDistinctKeywords,
+            @RequestParam(defaultValue = "${url-categorization.scoring.min-density:0}") double minDensity) {
+        Set<Category> categories = urlCategorizationRunner.getPredefinedCategories();
+        ScoreThresholds thresholds = ScoreThresholds.builder()
+                .minHits(minHits)
+                .minDistinctKeywords(minDistinctKeywords)
+                .minDensity(minDensity)
+                .build();
+        return ResponseEntity.ok(urlCategorizationService.categorizeUrlScored(url, categories, thresholds));
+    }
+
+    /**
+     * This endpoint fetches a given URL once and matches its text with several strategies, reporting the categories
+     * and the matching time of each strategy, and how they differ from the first one. All strategies are evaluated
+     * when none is given.
+     *
+     * @param url
+     * @param strategies
+     * @return
+     */
+    @GetMapping("/evaluate")
+    public ResponseEntity<StrategyEvaluationDTO> evaluateUrl(@RequestParam String url,
+                                                             @RequestParam(required = false) List<MatchingStrategy> strategies) {
+        Set<Category> categories = urlCategorizationRunner.getPredefinedCategories();
+        List<MatchingStrategy> evaluated = strategies == null || strategies.isEmpty()
+                ? Arrays.asList(MatchingStrategy.values())
+                : strategies;
+        return ResponseEntity.ok(urlCategorizationService.evaluateUrl(url, categories, evaluated));
+    }
+
+    /**
+     * This endpoint categorizes a given URL asynchronously: no request thread is held while the page is fetched.
+     *
+     * @param url
+     * @param strategy
+     * @param headOnly
+     * @param tiered
+     * @return
+     */
+    @GetMapping("/categorize-async")
+    public CompletableFuture<ResponseEntity<UrlCategorizationResultDTO>> categorizeUrlAsync(
+            @RequestParam String url,
+            @RequestParam(defaultValue = "SIMPLE") MatchingStrategy strategy,
+            @RequestParam(defaultValue = "false") boolean headOnly,
+            @RequestParam(defaultValue = "false") boolean tiered) {
+        Set<Category> categories = urlCategorizationRunner.getPredefinedCategories();
+        CategorizationMode mode = mode(headOnly, tiered);
+        CompletableFuture<UrlCategorizationResultDTO> result = mode == CategorizationMode.FULL
+                ? urlCategorizationService.categorizeUrlAsync(url, categories, strategy)
+                : urlCategorizationService.categorizeUrlAsync(url, categories, strategy, mode);
+        return result.thenApply(ResponseEntity::ok);
+    }
+
+    private static CategorizationMode mode(boolean headOnly, boolean tiered) {
+        if (tiered) {
+            return CategorizationMode.TIERED;
+        }
+        return headOnly ? CategorizationMode.HEAD_ONLY : CategorizationMode.FULL;
     }
 
     /**
@@ -55,4 +162,17 @@ public class UrlCategorizationController {
         Set<Category> categories = urlCategorizationRunner.getPredefinedCategories();
         return ResponseEntity.ok(urlCategorizationService.hasCategories(urls, categories));
     }
+
+    /**
+     * This endpoint checks if any categories exist for list of URLs and returns the status of each URL,
+     * so that URLs which failed or exceeded the batch deadline can be told apart from URLs without categories.
+     *
+     * @param urls
+     * @return
+     */
+    @PostMapping("/has-categories/status")
+    public ResponseEntity<List<UrlBatchResultDTO>> checkIfCategoriesExistForUrlsWithStatus(@RequestBody List<String> urls) {
+        Set<Category> categories = urlCategorizationRunner.getPredefinedCategories();
+        return ResponseEntity.ok(urlCategorizationService.hasCategoriesWithStatus(urls, categories));
+    }
 }
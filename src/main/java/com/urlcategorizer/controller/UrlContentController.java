@@ -1,23 +1,47 @@
 package com.urlcategorizer.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlcategorizer.dto.ContentCacheStatsDTO;
+import com.urlcategorizer.dto.FetchStatsDTO;
 import com.urlcategorizer.dto.UrlContentResultDTO;
 import com.urlcategorizer.service.UrlContentService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/url-content")
 @RequiredArgsConstructor
+@Slf4j
 public class UrlContentController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final UrlContentService urlContentService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${url-content.streaming.response-timeout:5m}")
+    private Duration streamTimeout;
+
+    @Value("${url-content.streaming.max-concurrent-urls:16}")
+    private int maxConcurrentUrls;
 
     /**
      * Retrieves an HTML content from a list of URLs.
@@ -47,4 +71,184 @@ public class UrlContentController {
                         .map(urlContentService::retrieveTextFromUrl)
                         .collect(Collectors.toSet()));
     }
+
+    /**
+     * Retrieves the text of a list of URLs asynchronously: the URLs are fetched concurrently, and no request thread
+     * is held while they are fetched.
+     *
+     * @param urls List of URLs passed as query parameters.
+     * @return A future set of URLs with a text content for each.
+     */
+    @GetMapping("/retrieve-text-async")
+    public CompletableFuture<Set<UrlContentResultDTO>> retrieveTextAsync(@RequestParam Set<String> urls) {
+        List<CompletableFuture<UrlContentResultDTO>> results = urls.stream()
+                .map(urlContentService::retrieveTextFromUrlAsync)
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                .thenApply(done -> results.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toUnmodifiableSet()));
+    }
+
+    /**
+     * Retrieves the HTML content of a list of URLs as NDJSON: the URLs are fetched concurrently, and every result is
+     * written as one line as soon as its URL is done, in completion order.
+     *
+     * @param urls List of URLs passed as query parameters.
+     * @return A stream of URLs with an HTML content for each.
+     */
+    @GetMapping(value = "/retrieve-html-stream", produces = "application/x-ndjson")
+    public ResponseEntity<ResponseBodyEmitter> retrieveHtmlStream(@RequestParam Set<String> urls) {
+        return stream(urls, urlContentService::retrieveHtmlFromUrlAsync);
+    }
+
+    /**
+     * Retrieves the text of a list of URLs as NDJSON: the URLs are fetched concurrently, and every result is written
+     * as one line as soon as its URL is done, in completion order.
+     *
+     * @param urls List of URLs passed as query parameters.
+     * @return A stream of URLs with a text content for each.
+     */
+    @GetMapping(value = "/retrieve-text-stream", produces = "application/x-ndjson")
+    public ResponseEntity<ResponseBodyEmitter> retrieveTextStream(@RequestParam Set<String> urls) {
+        return stream(urls, urlContentService::retrieveTextFromUrlAsync);
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> stream(Set<String> urls,
+                                                       Function<String, CompletableFuture<UrlContentResultDTO>> retrieve) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeout.toMillis());
+        new ResultStream(List.copyOf(urls), retrieve, emitter).start(Math.max(1, maxConcurrentUrls));
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    /**
+     * Writes the results of a list of URLs to an emitter, with at most a given number of URLs in flight, so that a
+     * long list neither holds all of its pages in memory nor floods the fetcher. A URL is started whenever another
+     * one is written; no further URL is started once the client has gone away.
+     */
+    private final class ResultStream {
+        private final Iterator<String> pending;
+        private final Function<String, CompletableFuture<UrlContentResultDTO>> retrieve;
+        private final ResponseBodyEmitter emitter;
+        private int remaining;
+        private boolean closed;
+
+        private ResultStream(List<String> urls, Function<String, CompletableFuture<UrlContentResultDTO>> retrieve,
+                             ResponseBodyEmitter emitter) {
+            this.pending = urls.iterator();
+            this.retrieve = retrieve;
+            this.emitter = emitter;
+            this.remaining = urls.size();
+            emitter.onTimeout(this::close);
+            emitter.onError(error -> close());
+        }
+
+        private void start(int concurrency) {
+            if (remaining == 0) {
+                emitter.complete();
+                return;
+            }
+            for (int i = 0; i < concurrency; i++) {
+                startNext();
+            }
+        }
+
+        /**
+         * Starts the next URL. Results which are already available, e.g. from the content cache, are written in a
+         * loop rather than from their completion callbacks, so that a long run of them cannot overflow the stack.
+         */
+        private void startNext() {
+            while (true) {
+                String url;
+                synchronized (this) {
+                    if (closed || !pending.hasNext()) {
+                        return;
+                    }
+                    url = pending.next();
+                }
+                CompletableFuture<UrlContentResultDTO> result = retrieve.apply(url);
+                if (!result.isDone()) {
+                    result.whenComplete((done, error) -> {
+                        if (finish(url, done, error)) {
+                            startNext();
+                        }
+                    });
+                    return;
+                }
+                UrlContentResultDTO done = null;
+                Throwable error = null;
+                try {
+                    done = result.join();
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                if (!finish(url, done, error)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean finish(String url, UrlContentResultDTO result, Throwable error) {
+            if (error != null) {
+                // The service futures never complete exceptionally; anything else is a bug, so stop the stream
+                log.error("Cannot retrieve {} for a streamed response", url, error);
+                close();
+                emitter.completeWithError(error);
+                return false;
+            }
+            write(result);
+            return true;
+        }
+
+        private void write(UrlContentResultDTO result) {
+            boolean last;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    byte[] json = objectMapper.writeValueAsBytes(result);
+                    byte[] line = new byte[json.length + 1];
+                    System.arraycopy(json, 0, line, 0, json.length);
+                    line[json.length] = '\n';
+                    emitter.send(line);
+                } catch (IOException e) {
+                    log.debug("Streamed response closed by the client: {}", e.getMessage());
+                    closed = true;
+                    return;
+                }
+                last = --remaining == 0;
+                if (last) {
+                    closed = true;
+                }
+            }
+            if (last) {
+                emitter.complete();
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the content cache.
+     *
+     * @return The content cache statistics.
+     */
+    @GetMapping("/cache-stats")
+    public ContentCacheStatsDTO cacheStats() {
+        return urlContentService.getCacheStats();
+    }
+
+    /**
+     * Returns how many fetches were run, and how many were saved by coalescing concurrent fetches of the same URL.
+     *
+     * @return The fetch statistics.
+     */
+    @GetMapping("/fetch-stats")
+    public FetchStatsDTO fetchStats() {
+        return urlContentService.getFetchStats();
+    }
 }
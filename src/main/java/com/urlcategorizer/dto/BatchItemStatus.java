@@ -0,0 +1,10 @@
+package com.urlcategorizer.dto;
+
+/**
+ * The outcome of processing a single URL of a batch.
+ */
+public enum BatchItemStatus {
+    COMPLETED,
+    FAILED,
+    TIMED_OUT
+}
@@ -0,0 +1,23 @@
+package com.urlcategorizer.dto;
+
+import com.urlcategorizer.matcher.MatchingStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class BulkJobDTO {
+    private String id;
+    private BulkJobState state;
+    private MatchingStrategy strategy;
+    private long totalUrls;
+    private long processedUrls;
+    private long failedUrls;
+    private Instant createdAt;
+    private Instant finishedAt;  // Null while the job is running
+    private String error;
+}
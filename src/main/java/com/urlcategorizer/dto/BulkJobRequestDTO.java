@@ -0,0 +1,18 @@
+package com.urlcategorizer.dto;
+
+import com.urlcategorizer.matcher.MatchingStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Builder
+public class BulkJobRequestDTO {
+    private List<String> urls;
+    private MatchingStrategy strategy;  // AHO_CORASICK when not set
+}
@@ -0,0 +1,17 @@
+package com.urlcategorizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Set;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class BulkJobResultDTO {
+    private String url;
+    private BatchItemStatus status;
+    private Set<String> categories;  // Null unless the status is COMPLETED
+    private String error;
+}
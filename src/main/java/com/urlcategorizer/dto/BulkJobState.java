@@ -0,0 +1,11 @@
+package com.urlcategorizer.dto;
+
+/**
+ * The lifecycle of a bulk categorization job.
+ */
+public enum BulkJobState {
+    RUNNING,
+    COMPLETED,
+    CANCELLED,
+    FAILED
+}
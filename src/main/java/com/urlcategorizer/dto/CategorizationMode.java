@@ -0,0 +1,19 @@
+package com.urlcategorizer.dto;
+
+/**
+ * The part of a page which is fetched and matched to categorize it.
+ */
+public enum CategorizationMode {
+    /**
+     * The text of the whole page body.
+     */
+    FULL,
+    /**
+     * The title, the description and keywords meta tags, and the text of the first kilobytes of the page.
+     */
+    HEAD_ONLY,
+    /**
+     * The head first, then the whole page only if the head does not decide the result.
+     */
+    TIERED
+}
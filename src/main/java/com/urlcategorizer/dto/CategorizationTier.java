@@ -0,0 +1,15 @@
+package com.urlcategorizer.dto;
+
+/**
+ * The content a categorization result was decided from.
+ */
+public enum CategorizationTier {
+    /**
+     * The beginning of the page: its title, its meta tags and its first kilobytes.
+     */
+    HEAD,
+    /**
+     * The whole page body.
+     */
+    BODY
+}
@@ -0,0 +1,17 @@
+package com.urlcategorizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Builder
+public class CategoryDTO {
+    private String name;
+    private Set<String> keywords;
+}
@@ -0,0 +1,15 @@
+package com.urlcategorizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class CategoryScoreDTO {
+    private String category;
+    private int hits;
+    private int distinctKeywords;
+    private double density;
+}
@@ -0,0 +1,18 @@
+package com.urlcategorizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class ContentCacheStatsDTO {
+    private long hits;
+    private long misses;
+    private long revalidations;
+    private long evictions;
+    private int entries;
+    private long sizeBytes;
+    private long maxBytes;
+}
@@ -0,0 +1,13 @@
+package com.urlcategorizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class FetchStatsDTO {
+    private long fetches;
+    private long coalescedFetches;
+}
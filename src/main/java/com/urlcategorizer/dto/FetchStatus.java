@@ -0,0 +1,40 @@
+package com.urlcategorizer.dto;
+
+/**
+ * The outcome of retrieving the content of a URL.
+ */
+public enum FetchStatus {
+    /**
+     * The content was retrieved.
+     */
+    OK,
+    /**
+     * The page was fetched but holds no text, e.g. a page rendered by JavaScript.
+     */
+    NO_CONTENT,
+    /**
+     * The server answered with an HTTP error status.
+     */
+    HTTP_ERROR,
+    /**
+     * The server did not answer in time.
+     */
+    TIMEOUT,
+    /**
+     * The request waited too long for a slot of its host and was not sent, see
+     * {@link com.urlcategorizer.content.HostScheduledPageFetcher}.
+     */
+    QUEUE_TIMEOUT,
+    /**
+     * The server could not be reached, e.g. an unknown host or a refused or reset connection.
+     */
+    UNREACHABLE,
+    /**
+     * The host failed repeatedly and was not contacted, see {@link com.urlcategorizer.content.CircuitBreakingPageFetcher}.
+     */
+    CIRCUIT_OPEN,
+    /**
+     * The content could not be processed.
+     */
+    ERROR
+}
@@ -0,0 +1,17 @@
+package com.urlcategorizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The minimum scores a category must reach to be reported for a page.
+ */
+@AllArgsConstructor
+@Getter
+@Builder
+public class ScoreThresholds {
+    private int minHits;
+    private int minDistinctKeywords;
+    private double minDensity;
+}
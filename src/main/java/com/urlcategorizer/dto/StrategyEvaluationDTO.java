@@ -0,0 +1,36 @@
+package com.urlcategorizer.dto;
+
+import com.urlcategorizer.matcher.MatchingStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class StrategyEvaluationDTO {
+    private String url;
+    /**
+     * The strategy the others are compared with, the first one evaluated.
+     */
+    private MatchingStrategy baseline;
+    /**
+     * Whether every strategy found the same categories.
+     */
+    private boolean agreement;
+    private List<StrategyResultDTO> strategies;
+    /**
+     * Whether the strategies were evaluated against a truncated content of the page.
+     */
+    private boolean truncated;
+    /**
+     * The outcome of retrieving the page; no strategy is evaluated unless it is OK.
+     */
+    private FetchStatus status;
+    /**
+     * The description of the failure, unless the status is OK.
+     */
+    private String error;
+}
@@ -0,0 +1,28 @@
+package com.urlcategorizer.dto;
+
+import com.urlcategorizer.matcher.MatchingStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Set;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class StrategyResultDTO {
+    private MatchingStrategy strategy;
+    private Set<String> categories;
+    /**
+     * Time spent matching the page text, in microseconds.
+     */
+    private long matchMicros;
+    /**
+     * Categories found by the baseline strategy but not by this one.
+     */
+    private Set<String> missing;
+    /**
+     * Categories found by this strategy but not by the baseline.
+     */
+    private Set<String> extra;
+}
@@ -0,0 +1,16 @@
+package com.urlcategorizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class UrlBatchResultDTO {
+    private String url;
+    private BatchItemStatus status;
+    private Boolean hasCategories;  // Null unless the status is COMPLETED
+    private FetchStatus fetchStatus;  // Why the page could not be fetched, if the status is FAILED
+    private String error;
+}
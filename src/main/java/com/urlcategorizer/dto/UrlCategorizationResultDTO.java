@@ -12,4 +12,20 @@ import java.util.Set;
 public class UrlCategorizationResultDTO {
     private String url;
     private Set<String> categories;
+    /**
+     * Whether the categories were matched against a truncated content of the page.
+     */
+    private boolean truncated;
+    /**
+     * The content the categories were decided from.
+     */
+    private CategorizationTier decidedBy;
+    /**
+     * The outcome of retrieving the page; no categories are matched unless it is OK.
+     */
+    private FetchStatus status;
+    /**
+     * The description of the failure, unless the status is OK.
+     */
+    private String error;
 }
@@ -0,0 +1,28 @@
+package com.urlcategorizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+@Builder
+public class UrlCategorizationScoredResultDTO {
+    private String url;
+    private long tokenCount;
+    private List<CategoryScoreDTO> categories;
+    /**
+     * Whether the scores were computed from a truncated content of the page.
+     */
+    private boolean truncated;
+    /**
+     * The outcome of retrieving the page; no categories are scored unless it is OK.
+     */
+    private FetchStatus status;
+    /**
+     * The description of the failure, unless the status is OK.
+     */
+    private String error;
+}
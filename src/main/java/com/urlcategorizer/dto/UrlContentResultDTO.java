@@ -1,5 +1,6 @@
 package com.urlcategorizer.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -10,4 +11,29 @@ import lombok.Getter;
 public class UrlContentResultDTO {
     private String url;
     private String text;
+    /**
+     * Whether the text was cut at one of the content limits of the endpoint.
+     */
+    private boolean truncated;
+    /**
+     * The outcome of the retrieval; the text is only set when it is OK.
+     */
+    @Builder.Default
+    private FetchStatus status = FetchStatus.OK;
+    /**
+     * The description of the failure, unless the status is OK.
+     */
+    private String error;
+
+    public UrlContentResultDTO(String url, String text) {
+        this(url, text, false, FetchStatus.OK, null);
+    }
+
+    /**
+     * @return Whether the content of the page could not be retrieved, or was empty.
+     */
+    @JsonIgnore
+    public boolean isFailed() {
+        return status != FetchStatus.OK;
+    }
 }
@@ -0,0 +1,34 @@
+package com.urlcategorizer.entity;
+
+import com.urlcategorizer.dto.CategorizationTier;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * A stored categorization result of a page.
+ */
+@AllArgsConstructor
+@Getter
+@Builder
+public class CategorizationRecord {
+    private Set<String> categories;
+    /**
+     * The exact hash of the page text the categories were computed from.
+     */
+    private long contentHash;
+    /**
+     * The time the result was stored, in milliseconds since the epoch.
+     */
+    private long storedAt;
+    /**
+     * Whether the categories were matched against a truncated content of the page.
+     */
+    private boolean truncated;
+    /**
+     * The content the categories were decided from.
+     */
+    private CategorizationTier decidedBy;
+}
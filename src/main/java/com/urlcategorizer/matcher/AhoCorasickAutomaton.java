@@ -0,0 +1,496 @@
+package com.urlcategorizer.matcher;
+
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A multi-pattern keyword automaton (Aho-Corasick) compiled from the keywords of all categories.
+ * <p>
+ * Every keyword of every category is inserted into a single trie, failure links are computed once,
+ * and each state points to the nearest state of its failure chain where keywords end (its dictionary link).
+ * The page content is then scanned in one linear pass, regardless of the number of categories or keywords.
+ * <p>
+ * The automaton is stored in a handful of primitive arrays: the edges of all states are laid out contiguously,
+ * sorted by label, in breadth-first state order ({@code edgeStart[s]} to {@code edgeStart[s + 1]}), and the
+ * category ids of the keywords ending in each state likewise ({@code outputStart}). Categories are referred to by
+ * int ids, and a scan records its matches in a {@code long[]} bit mask; names are only looked up for the result.
+ * Compared to a trie of objects, this keeps the heap footprint to a few ints per keyword character and makes a
+ * scan allocation-free apart from its mask.
+ * <p>
+ * Time Complexity:
+ * - Compiling the automaton: O(L + K * log K), where L = total length of all keywords, K = number of keywords.
+ * - Matching: O(N * log A + Z), where N = length of the page content, A = alphabet size,
+ * Z = number of keyword occurrences.
+ * <p>
+ * Instances are immutable and safe to share between threads; per-scan state lives in a {@link Session}.
+ */
+public final class AhoCorasickAutomaton {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int ROOT_TABLE_SIZE = 128;
+
+    private final String[] categoryNames;
+    private final int[] edgeStart;
+    private final char[] edgeLabels;
+    private final int[] edgeTargets;
+    private final int[] rootTargets;
+    private final int[] fail;
+    private final int[] report;
+    private final int[] outputStart;
+    private final int[] outputIds;
+
+    private AhoCorasickAutomaton(String[] categoryNames, int[] edgeStart, char[] edgeLabels, int[] edgeTargets,
+                                 int[] fail, int[] report, int[] outputStart, int[] outputIds) {
+        this.categoryNames = categoryNames;
+        this.edgeStart = edgeStart;
+        this.edgeLabels = edgeLabels;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.report = report;
+        this.outputStart = outputStart;
+        this.outputIds = outputIds;
+
+        // Most characters of a page lead back to the root, so its ASCII transitions are a direct lookup
+        this.rootTargets = new int[ROOT_TABLE_SIZE];
+        Arrays.fill(rootTargets, NONE);
+        for (int i = edgeStart[ROOT]; i < edgeStart[ROOT + 1] && edgeLabels[i] < ROOT_TABLE_SIZE; i++) {
+            rootTargets[edgeLabels[i]] = edgeTargets[i];
+        }
+    }
+
+    /**
+     * Compiles the keywords of the given categories into one automaton.
+     * Category ids are assigned in iteration order of the given collection.
+     *
+     * @param categories The categories to compile.
+     * @return The compiled automaton.
+     */
+    public static AhoCorasickAutomaton compile(Collection<Category> categories) {
+        String[] names = new String[categories.size()];
+        KeywordArena arena = new KeywordArena();
+        int categoryId = 0;
+        for (Category category : categories) {
+            names[categoryId] = category.getName();
+            for (CategoryKeyword keyword : category.getKeywords()) {
+                arena.add(keyword.getKeyword(), categoryId);
+            }
+            categoryId++;
+        }
+        int[] order = arena.sortedOrder();
+
+        // Insert the keywords in sorted order: the child to follow for a shared prefix is then always the last
+        // child created under a state, and the children of every state are created in label order
+        IntList firstChild = new IntList();
+        IntList lastChild = new IntList();
+        IntList nextSibling = new IntList();
+        CharList label = new CharList();
+        firstChild.add(NONE);
+        lastChild.add(NONE);
+        nextSibling.add(NONE);
+        label.add((char) 0);
+        int[] endStates = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            int entry = order[k];
+            int state = ROOT;
+            for (int i = arena.start(entry); i < arena.end(entry); i++) {
+                char c = arena.charAt(i);
+                int child = lastChild.get(state);
+                if (child == NONE || label.get(child) != c) {
+                    int created = label.size();
+                    firstChild.add(NONE);
+                    lastChild.add(NONE);
+                    nextSibling.add(NONE);
+                    label.add(c);
+                    if (child == NONE) {
+                        firstChild.set(state, created);
+                    } else {
+                        nextSibling.set(child, created);
+                    }
+                    lastChild.set(state, created);
+                    child = created;
+                }
+                state = child;
+            }
+            endStates[k] = state;
+        }
+
+        // Renumber the states breadth-first and lay out their edges contiguously
+        int stateCount = label.size();
+        int[] newIds = new int[stateCount];
+        int[] oldIds = new int[stateCount];
+        int[] edgeStart = new int[stateCount + 1];
+        char[] edgeLabels = new char[stateCount - 1];
+        int[] edgeTargets = new int[stateCount - 1];
+        int assigned = 1;
+        int edges = 0;
+        for (int state = 0; state < stateCount; state++) {
+            edgeStart[state] = edges;
+            for (int child = firstChild.get(oldIds[state]); child != NONE; child = nextSibling.get(child)) {
+                newIds[child] = assigned;
+                oldIds[assigned] = child;
+                edgeLabels[edges] = label.get(child);
+                edgeTargets[edges] = assigned;
+                assigned++;
+                edges++;
+            }
+        }
+        edgeStart[stateCount] = edges;
+
+        // Category ids per state; entries of the same keyword are adjacent and sorted by category id
+        int[] outputStart = new int[stateCount + 1];
+        IntList ids = new IntList();
+        int[] idsPerState = new int[stateCount];
+        for (int k = 0; k < order.length; k++) {
+            if (k == 0 || endStates[k] != endStates[k - 1] || arena.categoryId(order[k]) != arena.categoryId(order[k - 1])) {
+                idsPerState[newIds[endStates[k]]]++;
+            }
+        }
+        for (int state = 0; state < stateCount; state++) {
+            outputStart[state + 1] = outputStart[state] + idsPerState[state];
+        }
+        int[] outputIds = new int[outputStart[stateCount]];
+        int[] cursor = Arrays.copyOf(outputStart, stateCount);
+        for (int k = 0; k < order.length; k++) {
+            if (k == 0 || endStates[k] != endStates[k - 1] || arena.categoryId(order[k]) != arena.categoryId(order[k - 1])) {
+                outputIds[cursor[newIds[endStates[k]]]++] = arena.categoryId(order[k]);
+            }
+        }
+
+        // Failure and dictionary links, in breadth-first order so that shallower states are always done first
+        int[] fail = new int[stateCount];
+        int[] report = new int[stateCount];
+        report[ROOT] = NONE;
+        for (int state = 0; state < stateCount; state++) {
+            for (int i = edgeStart[state]; i < edgeStart[state + 1]; i++) {
+                int child = edgeTargets[i];
+                int target = ROOT;
+                if (state != ROOT) {
+                    int fallback = fail[state];
+                    int next;
+                    while ((next = lookup(edgeStart, edgeLabels, edgeTargets, fallback, edgeLabels[i])) == NONE
+                            && fallback != ROOT) {
+                        fallback = fail[fallback];
+                    }
+                    target = next == NONE ? ROOT : next;
+                }
+                fail[child] = target;
+                report[child] = outputStart[child + 1] > outputStart[child] ? child : report[target];
+            }
+        }
+
+        return new AhoCorasickAutomaton(names, edgeStart, edgeLabels, edgeTargets, fail, report, outputStart, outputIds);
+    }
+
+    /**
+     * Finds the names of all categories that have at least one keyword in the given text.
+     * Scanning stops as soon as every category has been matched.
+     *
+     * @param text The text to scan.
+     * @return A set of matching category names.
+     */
+    public Set<String> findMatchingCategories(CharSequence text) {
+        return findMatchingCategories(text, null);
+    }
+
+    /**
+     * Finds the names of the categories within the given scope that have at least one keyword in the given text.
+     * Scanning stops as soon as every category in scope has been matched.
+     *
+     * @param text  The text to scan.
+     * @param scope The ids of the categories to look for, or {@code null} for all of them.
+     * @return A set of matching category names.
+     */
+    public Set<String> findMatchingCategories(CharSequence text, BitSet scope) {
+        Session session = newSession(scope);
+        session.feed(text);
+        return session.matchedCategoryNames();
+    }
+
+    /**
+     * Starts a new scan over this automaton.
+     *
+     * @return A session which can be fed the text in one or more chunks.
+     */
+    public Session newSession() {
+        return new Session(null, false);
+    }
+
+    /**
+     * Starts a new scan over this automaton, looking only for the categories in the given scope.
+     *
+     * @param scope The ids of the categories to look for, or {@code null} for all of them.
+     * @return A session which can be fed the text in one or more chunks.
+     */
+    public Session newSession(BitSet scope) {
+        return new Session(scope, false);
+    }
+
+    /**
+     * Starts a scan which only answers whether any category in the given scope matches:
+     * the session is complete at the first keyword hit.
+     *
+     * @param scope The ids of the categories to look for, or {@code null} for all of them.
+     * @return A session which can be fed the text in one or more chunks.
+     */
+    public Session newExistenceSession(BitSet scope) {
+        return new Session(scope, true);
+    }
+
+    public int categoryCount() {
+        return categoryNames.length;
+    }
+
+    public String categoryName(int categoryId) {
+        return categoryNames[categoryId];
+    }
+
+    /**
+     * Converts category ids back to category names.
+     *
+     * @param categoryIds The category ids, e.g. the matches of a session.
+     * @return The names of the categories.
+     */
+    public Set<String> categoryNames(BitSet categoryIds) {
+        Set<String> names = new HashSet<>();
+        for (int id = categoryIds.nextSetBit(0); id >= 0; id = categoryIds.nextSetBit(id + 1)) {
+            names.add(categoryNames[id]);
+        }
+        return names;
+    }
+
+    /**
+     * @return The number of states of the automaton, i.e. the number of distinct keyword prefixes plus one.
+     */
+    public int stateCount() {
+        return fail.length;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int next = state == ROOT && c < ROOT_TABLE_SIZE
+                    ? rootTargets[c]
+                    : lookup(edgeStart, edgeLabels, edgeTargets, state, c);
+            if (next != NONE) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    private static int lookup(int[] edgeStart, char[] edgeLabels, int[] edgeTargets, int state, char c) {
+        int index = Arrays.binarySearch(edgeLabels, edgeStart[state], edgeStart[state + 1], c);
+        return index < 0 ? NONE : edgeTargets[index];
+    }
+
+    /**
+     * The mutable state of a single scan. Not thread-safe.
+     */
+    public final class Session {
+        private final long[] matched = new long[(categoryNames.length + 63) >>> 6];
+        private final BitSet scope;
+        private final int targetCount;
+        private int matchedCount;
+        private long hitCount;
+        private int state = ROOT;
+
+        private Session(BitSet scope, boolean firstMatchOnly) {
+            this.scope = scope;
+            int scopeSize = scope == null ? categoryNames.length : scope.cardinality();
+            this.targetCount = firstMatchOnly ? Math.min(1, scopeSize) : scopeSize;
+        }
+
+        /**
+         * Feeds the next chunk of text into the automaton.
+         *
+         * @param text The next chunk of text.
+         * @return {@code true} once every category has been matched and further input is pointless.
+         */
+        public boolean feed(CharSequence text) {
+            for (int i = 0; i < text.length() && !isComplete(); i++) {
+                accept(text.charAt(i));
+            }
+            return isComplete();
+        }
+
+        /**
+         * Feeds the next chunk of text into the automaton.
+         *
+         * @return {@code true} once every category has been matched and further input is pointless.
+         */
+        public boolean feed(char[] buffer, int offset, int length) {
+            int end = offset + length;
+            for (int i = offset; i < end && !isComplete(); i++) {
+                accept(buffer[i]);
+            }
+            return isComplete();
+        }
+
+        private void accept(char c) {
+            state = step(state, Character.toLowerCase(c));
+            for (int output = report[state]; output != NONE; output = report[fail[output]]) {
+                for (int i = outputStart[output]; i < outputStart[output + 1]; i++) {
+                    int categoryId = outputIds[i];
+                    if (scope == null || scope.get(categoryId)) {
+                        hitCount++;
+                        long bit = 1L << categoryId;
+                        if ((matched[categoryId >>> 6] & bit) == 0) {
+                            matched[categoryId >>> 6] |= bit;
+                            matchedCount++;
+                        }
+                    }
+                }
+            }
+        }
+
+        public boolean isComplete() {
+            return matchedCount >= targetCount;
+        }
+
+        public boolean hasMatch() {
+            return matchedCount > 0;
+        }
+
+        public int getMatchedCount() {
+            return matchedCount;
+        }
+
+        /**
+         * @return The number of keyword occurrences found so far, counted once per category they belong to.
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * @return The ids of the categories matched so far.
+         */
+        public BitSet matchedCategoryIds() {
+            return BitSet.valueOf(matched);
+        }
+
+        public Set<String> matchedCategoryNames() {
+            return categoryNames(matchedCategoryIds());
+        }
+    }
+
+    /**
+     * The keywords of all categories, lowercased and packed into one char array, with the category id of each.
+     * Only used while compiling.
+     */
+    private static final class KeywordArena {
+        private final StringBuilder chars = new StringBuilder();
+        private final IntList starts = new IntList();
+        private final IntList categoryIds = new IntList();
+
+        void add(String keyword, int categoryId) {
+            if (keyword == null || keyword.isEmpty()) {
+                return;
+            }
+            starts.add(chars.length());
+            for (int i = 0; i < keyword.length(); i++) {
+                chars.append(Character.toLowerCase(keyword.charAt(i)));
+            }
+            categoryIds.add(categoryId);
+        }
+
+        int start(int entry) {
+            return starts.get(entry);
+        }
+
+        int end(int entry) {
+            return entry + 1 < starts.size() ? starts.get(entry + 1) : chars.length();
+        }
+
+        char charAt(int index) {
+            return chars.charAt(index);
+        }
+
+        int categoryId(int entry) {
+            return categoryIds.get(entry);
+        }
+
+        /**
+         * @return The entries sorted by keyword, then by category id.
+         */
+        int[] sortedOrder() {
+            List<Integer> entries = new ArrayList<>(starts.size());
+            for (int entry = 0; entry < starts.size(); entry++) {
+                entries.add(entry);
+            }
+            Comparator<Integer> byKeyword = this::compareKeywords;
+            entries.sort(byKeyword.thenComparingInt(this::categoryId));
+            return entries.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private int compareKeywords(int a, int b) {
+            int i = start(a);
+            int j = start(b);
+            int endA = end(a);
+            int endB = end(b);
+            while (i < endA && j < endB) {
+                int diff = chars.charAt(i++) - chars.charAt(j++);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return (endA - i) - (endB - j);
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private static final class CharList {
+        private char[] values = new char[16];
+        private int size;
+
+        void add(char value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        char get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.urlcategorizer.matcher;
+
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable, compiled form of a set of categories.
+ * <p>
+ * The model holds everything the matching engines need, compiled once per category-set version:
+ * one automaton over all keywords, one token matcher for whole-word matching, and one case-insensitive alternation
+ * pattern per category. The patterns are only compiled on the first regex match, since they take far more memory
+ * than the automaton and most requests never need them.
+ * A sub-model restricted to some of the categories shares the compiled structures of its parent
+ * and only narrows the scope of the categories it reports.
+ */
+public final class CategoryModel {
+
+    private static final int MAX_CACHED_SUB_MODELS = 256;
+    private static final int FINGERPRINT_BYTES = 12;
+
+    private final long version;
+    private final Set<Category> categories;
+    private final List<Category> categoriesById;
+    private final Map<String, Integer> idsByName;
+    private final RegexPatterns patterns;
+    private final AhoCorasickAutomaton automaton;
+    private final TokenMatcher tokenMatcher;
+    private final BitSet scope;
+    private final Map<Set<String>, CategoryModel> subModels;
+    private volatile String fingerprint;
+
+    private CategoryModel(long version, Set<Category> categories, List<Category> categoriesById,
+                          Map<String, Integer> idsByName, RegexPatterns patterns, AhoCorasickAutomaton automaton,
+                          TokenMatcher tokenMatcher, BitSet scope) {
+        this.version = version;
+        this.categories = categories;
+        this.categoriesById = categoriesById;
+        this.idsByName = idsByName;
+        this.patterns = patterns;
+        this.automaton = automaton;
+        this.tokenMatcher = tokenMatcher;
+        this.scope = scope;
+        this.subModels = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Compiles a model for the given categories.
+     *
+     * @param version    The version of the category set.
+     * @param categories The categories to compile.
+     * @return The compiled model.
+     */
+    public static CategoryModel compile(long version, Set<Category> categories) {
+        List<Category> categoriesById = List.copyOf(categories);
+        Map<String, Integer> idsByName = new HashMap<>();
+        BitSet scope = new BitSet(categoriesById.size());
+
+        for (int id = 0; id < categoriesById.size(); id++) {
+            Category category = categoriesById.get(id);
+            idsByName.put(category.getName(), id);
+            scope.set(id);
+        }
+
+        return new CategoryModel(version, Set.copyOf(categories), categoriesById, Collections.unmodifiableMap(idsByName),
+                new RegexPatterns(categoriesById), AhoCorasickAutomaton.compile(categoriesById),
+                TokenMatcher.compile(categoriesById), scope);
+    }
+
+    /**
+     * Combines the category keywords into one case-insensitive alternation pattern.
+     * Returns {@code null} for a category without keywords, since an empty pattern would match any content.
+     */
+    private static Pattern buildPattern(Category category) {
+        String regex = category.getKeywords().stream()
+                .map(CategoryKeyword::getKeyword)
+                .filter(keyword -> keyword != null && !keyword.isEmpty())
+                .map(Pattern::quote)
+                .collect(Collectors.joining("|"));
+        return regex.isEmpty() ? null : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Returns a model restricted to the given categories, reusing the compiled structures of this model.
+     *
+     * @param subset The categories to restrict to; every one of them must belong to this model.
+     * @return The restricted model, or {@code null} if some category does not belong to this model.
+     */
+    public CategoryModel subModel(Set<Category> subset) {
+        if (subset == categories || subset.equals(categories)) {
+            return this;
+        }
+        Set<String> names = new HashSet<>();
+        for (Category category : subset) {
+            Integer id = idsByName.get(category.getName());
+            if (id == null || categoriesById.get(id) != category) {
+                return null;
+            }
+            names.add(category.getName());
+        }
+
+        CategoryModel subModel = subModels.get(names);
+        if (subModel == null) {
+            subModel = createSubModel(subset, names);
+            if (subModels.size() < MAX_CACHED_SUB_MODELS) {
+                subModels.putIfAbsent(names, subModel);
+            }
+        }
+        return subModel;
+    }
+
+    private CategoryModel createSubModel(Set<Category> subset, Set<String> names) {
+        BitSet subScope = new BitSet(categoriesById.size());
+        names.forEach(name -> subScope.set(idsByName.get(name)));
+        return new CategoryModel(version, Set.copyOf(subset), categoriesById, idsByName, patterns, automaton, tokenMatcher, subScope);
+    }
+
+    /**
+     * Finds the categories whose alternation pattern is found in the content.
+     *
+     * @param pageContent The content of the web page.
+     * @return A set of matching category names.
+     */
+    public Set<String> findMatchingCategoriesWithRegex(String pageContent) {
+        Pattern[] compiled = patterns.get();
+        BitSet matchingIds = new BitSet(categoriesById.size());
+        for (int id = scope.nextSetBit(0); id >= 0; id = scope.nextSetBit(id + 1)) {
+            Pattern pattern = compiled[id];
+            if (pattern != null && pattern.matcher(pageContent).find()) {
+                matchingIds.set(id);
+            }
+        }
+        return automaton.categoryNames(matchingIds);
+    }
+
+    /**
+     * Finds the categories with at least one keyword in the content, in a single pass over the content.
+     *
+     * @param pageContent The content of the web page.
+     * @return A set of matching category names.
+     */
+    public Set<String> findMatchingCategoriesWithAutomaton(CharSequence pageContent) {
+        return automaton.categoryNames(matchCategoryIds(pageContent));
+    }
+
+    /**
+     * Finds the ids of the categories with at least one keyword in the content, in a single pass over the content.
+     * Use {@link #categoryNames(BitSet)} to convert them to names where the result leaves the model.
+     *
+     * @param pageContent The content of the web page.
+     * @return The ids of the matching categories.
+     */
+    public BitSet matchCategoryIds(CharSequence pageContent) {
+        AhoCorasickAutomaton.Session session = automaton.newSession(scope);
+        session.feed(pageContent);
+        return session.matchedCategoryIds();
+    }
+
+    /**
+     * Finds the categories with at least one keyword in the content as whole words, in a single pass over the
+     * content.
+     *
+     * @param pageContent The content of the web page.
+     * @return A set of matching category names.
+     */
+    public Set<String> findMatchingCategoriesWithTokens(CharSequence pageContent) {
+        return tokenMatcher.findMatchingCategories(pageContent, scope);
+    }
+
+    /**
+     * Scores the categories by their whole-word keyword occurrences, in a single pass over the content.
+     *
+     * @param pageContent The content of the web page.
+     * @return The finished scoring session, holding the scores and the token count.
+     */
+    public TokenMatcher.Session scoreCategories(CharSequence pageContent) {
+        TokenMatcher.Session session = tokenMatcher.newScoringSession(scope);
+        session.feed(pageContent);
+        session.finish();
+        return session;
+    }
+
+    public Set<String> categoryNames(BitSet categoryIds) {
+        return automaton.categoryNames(categoryIds);
+    }
+
+    /**
+     * Starts an incremental automaton scan over the categories of this model.
+     *
+     * @return A session which can be fed the content in one or more chunks.
+     */
+    public AhoCorasickAutomaton.Session newSession() {
+        return automaton.newSession(scope);
+    }
+
+    /**
+     * Starts an incremental whole-word scan over the categories of this model.
+     * The session must be finished once the whole content has been fed.
+     *
+     * @return A session which can be fed the content in one or more chunks.
+     */
+    public TokenMatcher.Session newTokenSession() {
+        return tokenMatcher.newSession(scope);
+    }
+
+    /**
+     * Starts an automaton scan which stops at the first keyword hit of any category of this model.
+     *
+     * @return A session which can be fed the content in one or more chunks.
+     */
+    public AhoCorasickAutomaton.Session newExistenceSession() {
+        return automaton.newExistenceSession(scope);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a hash of the names and keywords of the categories of this model.
+     * Unlike the version, it only depends on the categories themselves, so it is stable across restarts and
+     * identical for two models of the same categories. It is computed on first use.
+     *
+     * @return The fingerprint, as a hexadecimal string.
+     */
+    public String getFingerprint() {
+        String computed = fingerprint;
+        if (computed == null) {
+            computed = computeFingerprint();
+            fingerprint = computed;
+        }
+        return computed;
+    }
+
+    private String computeFingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        List<Category> sorted = new ArrayList<>(categories);
+        sorted.sort(Comparator.comparing(Category::getName));
+        for (Category category : sorted) {
+            digest.update(category.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            List<String> keywords = category.getKeywords().stream()
+                    .map(CategoryKeyword::getKeyword)
+                    .filter(keyword -> keyword != null && !keyword.isEmpty())
+                    .sorted()
+                    .collect(Collectors.toList());
+            for (String keyword : keywords) {
+                digest.update(keyword.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 1);
+            }
+            digest.update((byte) 2);
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, FINGERPRINT_BYTES);
+    }
+
+    public Set<Category> getCategories() {
+        return categories;
+    }
+
+    public List<String> getCategoryNames() {
+        List<String> names = new ArrayList<>();
+        for (int id = scope.nextSetBit(0); id >= 0; id = scope.nextSetBit(id + 1)) {
+            names.add(categoriesById.get(id).getName());
+        }
+        return names;
+    }
+
+    /**
+     * The regex patterns of all categories of a model, compiled on first use and shared with its sub-models.
+     */
+    private static final class RegexPatterns {
+        private final List<Category> categoriesById;
+        private volatile Pattern[] patterns;
+
+        private RegexPatterns(List<Category> categoriesById) {
+            this.categoriesById = categoriesById;
+        }
+
+        private Pattern[] get() {
+            Pattern[] compiled = patterns;
+            if (compiled == null) {
+                synchronized (this) {
+                    compiled = patterns;
+                    if (compiled == null) {
+                        compiled = new Pattern[categoriesById.size()];
+                        for (int id = 0; id < compiled.length; id++) {
+                            compiled[id] = buildPattern(categoriesById.get(id));
+                        }
+                        patterns = compiled;
+                    }
+                }
+            }
+            return compiled;
+        }
+    }
+}
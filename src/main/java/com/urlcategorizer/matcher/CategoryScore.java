@@ -0,0 +1,29 @@
+package com.urlcategorizer.matcher;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * How strongly a page matches a category, measured during a single scan of the page.
+ */
+@AllArgsConstructor
+@Getter
+public final class CategoryScore {
+    private final String categoryName;
+
+    /**
+     * The number of keyword occurrences of the category in the page.
+     */
+    private final int hits;
+
+    /**
+     * The number of different keywords of the category found in the page.
+     */
+    private final int distinctKeywords;
+
+    /**
+     * The share of the page tokens covered by keywords of the category, a phrase counting for all of its tokens;
+     * i.e. the term frequency of the category's keywords.
+     */
+    private final double density;
+}
@@ -0,0 +1,23 @@
+package com.urlcategorizer.matcher;
+
+/**
+ * The available engines for matching page content against category keywords.
+ */
+public enum MatchingStrategy {
+    /**
+     * Checks every keyword of every category with {@link String#contains(CharSequence)}.
+     */
+    SIMPLE,
+    /**
+     * Matches one alternation regex per category.
+     */
+    REGEX,
+    /**
+     * Scans the content once with a single automaton compiled from all keywords.
+     */
+    AHO_CORASICK,
+    /**
+     * Matches keywords as whole words and phrases: "nba" matches "NBA finals" but not "unbalanced".
+     */
+    TOKENIZED
+}
@@ -0,0 +1,518 @@
+package com.urlcategorizer.matcher;
+
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A keyword matcher working on whole words rather than on characters.
+ * <p>
+ * The page content and the keywords are split into tokens, i.e. maximal runs of letters, digits and underscores,
+ * lowercased. A keyword matches only as a complete sequence of tokens, so "nba" matches "NBA finals" but not
+ * "unbalanced", and "may the force be with you" matches regardless of the punctuation and spacing between its
+ * words.
+ * <p>
+ * The distinct keyword tokens form a vocabulary held in an open-addressing hash table over a char arena, so a
+ * token of the page is looked up straight from the scan buffer without creating a String. The keywords, as
+ * sequences of token ids, are compiled into an Aho-Corasick automaton over tokens, which finds single words and
+ * overlapping phrases in one pass. A page token outside of the vocabulary resets the automaton.
+ * <p>
+ * A scoring session additionally counts, in the same pass, the hits and distinct keywords of every category and
+ * the number of page tokens, see {@link CategoryScore}.
+ * <p>
+ * Time Complexity:
+ * - Matching: O(N + Z), where N = length of the page content and Z = number of keyword occurrences.
+ * <p>
+ * Instances are immutable and safe to share between threads; per-scan state lives in a {@link Session}.
+ */
+public final class TokenMatcher {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final long NO_EDGE = -1L;
+
+    private final String[] categoryNames;
+
+    // Vocabulary: token i is tokenChars[tokenStart[i] .. tokenStart[i + 1])
+    private final char[] tokenChars;
+    private final int[] tokenStart;
+    private final int[] tokenHashes;
+    private final int[] tokenSlots;
+    private final int maxTokenLength;
+
+    // Automaton over token ids; the edge (state, token) is stored under the key (state << 32 | token)
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    private final int[] report;
+    private final int[] depth;
+    private final int[] outputStart;
+    private final int[] outputIds;
+
+    private TokenMatcher(String[] categoryNames, char[] tokenChars, int[] tokenStart, int[] tokenHashes,
+                         int[] tokenSlots, int maxTokenLength, long[] edgeKeys, int[] edgeTargets, int[] fail,
+                         int[] report, int[] depth, int[] outputStart, int[] outputIds) {
+        this.categoryNames = categoryNames;
+        this.tokenChars = tokenChars;
+        this.tokenStart = tokenStart;
+        this.tokenHashes = tokenHashes;
+        this.tokenSlots = tokenSlots;
+        this.maxTokenLength = maxTokenLength;
+        this.edgeKeys = edgeKeys;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.report = report;
+        this.depth = depth;
+        this.outputStart = outputStart;
+        this.outputIds = outputIds;
+    }
+
+    /**
+     * Compiles the keywords of the given categories into one token matcher.
+     * Category ids are assigned in iteration order of the given collection.
+     *
+     * @param categories The categories to compile.
+     * @return The compiled matcher.
+     */
+    public static TokenMatcher compile(Collection<Category> categories) {
+        String[] names = new String[categories.size()];
+        Map<String, Integer> vocabulary = new HashMap<>();
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<Set<Integer>> stateOutputs = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        children.add(new HashMap<>());
+        stateOutputs.add(new HashSet<>());
+        depths.add(0);
+
+        int categoryId = 0;
+        for (Category category : categories) {
+            names[categoryId] = category.getName();
+            for (CategoryKeyword keyword : category.getKeywords()) {
+                List<String> tokens = tokenize(keyword.getKeyword());
+                if (tokens.isEmpty()) {
+                    continue;
+                }
+                int state = ROOT;
+                for (String token : tokens) {
+                    int tokenId = vocabulary.computeIfAbsent(token, key -> vocabulary.size());
+                    Integer next = children.get(state).get(tokenId);
+                    if (next == null) {
+                        next = children.size();
+                        children.add(new HashMap<>());
+                        stateOutputs.add(new HashSet<>());
+                        depths.add(depths.get(state) + 1);
+                        children.get(state).put(tokenId, next);
+                    }
+                    state = next;
+                }
+                stateOutputs.get(state).add(categoryId);
+            }
+            categoryId++;
+        }
+
+        // Vocabulary arena and hash table
+        String[] tokensById = new String[vocabulary.size()];
+        vocabulary.forEach((token, id) -> tokensById[id] = token);
+        int[] tokenStart = new int[tokensById.length + 1];
+        int[] tokenHashes = new int[tokensById.length];
+        StringBuilder arena = new StringBuilder();
+        int maxTokenLength = 0;
+        for (int id = 0; id < tokensById.length; id++) {
+            tokenStart[id] = arena.length();
+            arena.append(tokensById[id]);
+            tokenHashes[id] = tokensById[id].hashCode();
+            maxTokenLength = Math.max(maxTokenLength, tokensById[id].length());
+        }
+        tokenStart[tokensById.length] = arena.length();
+        int[] tokenSlots = new int[tableSize(tokensById.length)];
+        Arrays.fill(tokenSlots, NONE);
+        for (int id = 0; id < tokensById.length; id++) {
+            int slot = mix(tokenHashes[id]) & (tokenSlots.length - 1);
+            while (tokenSlots[slot] != NONE) {
+                slot = (slot + 1) & (tokenSlots.length - 1);
+            }
+            tokenSlots[slot] = id;
+        }
+
+        // Edge hash table
+        int stateCount = children.size();
+        long[] edgeKeys = new long[tableSize(stateCount - 1)];
+        int[] edgeTargets = new int[edgeKeys.length];
+        Arrays.fill(edgeKeys, NO_EDGE);
+        for (int state = 0; state < stateCount; state++) {
+            for (Map.Entry<Integer, Integer> edge : children.get(state).entrySet()) {
+                long key = edgeKey(state, edge.getKey());
+                int slot = mix(Long.hashCode(key)) & (edgeKeys.length - 1);
+                while (edgeKeys[slot] != NO_EDGE) {
+                    slot = (slot + 1) & (edgeKeys.length - 1);
+                }
+                edgeKeys[slot] = key;
+                edgeTargets[slot] = edge.getValue();
+            }
+        }
+
+        // Breadth-first pass computing failure and dictionary links
+        int[] fail = new int[stateCount];
+        int[] report = new int[stateCount];
+        report[ROOT] = NONE;
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : children.get(ROOT).values()) {
+            fail[child] = ROOT;
+            report[child] = stateOutputs.get(child).isEmpty() ? NONE : child;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Integer, Integer> edge : children.get(state).entrySet()) {
+                int child = edge.getValue();
+                int fallback = fail[state];
+                int next;
+                while ((next = lookupEdge(edgeKeys, edgeTargets, fallback, edge.getKey())) == NONE && fallback != ROOT) {
+                    fallback = fail[fallback];
+                }
+                fail[child] = next == NONE ? ROOT : next;
+                report[child] = stateOutputs.get(child).isEmpty() ? report[fail[child]] : child;
+                queue.add(child);
+            }
+        }
+
+        int[] outputStart = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            outputStart[state + 1] = outputStart[state] + stateOutputs.get(state).size();
+        }
+        int[] outputIds = new int[outputStart[stateCount]];
+        for (int state = 0; state < stateCount; state++) {
+            int i = outputStart[state];
+            for (int id : new TreeSet<>(stateOutputs.get(state))) {
+                outputIds[i++] = id;
+            }
+        }
+
+        return new TokenMatcher(names, arena.toString().toCharArray(), tokenStart, tokenHashes, tokenSlots,
+                maxTokenLength, edgeKeys, edgeTargets, fail, report,
+                depths.stream().mapToInt(Integer::intValue).toArray(), outputStart, outputIds);
+    }
+
+    /**
+     * Finds the names of the categories within the given scope that have at least one keyword in the given text.
+     *
+     * @param text  The text to scan.
+     * @param scope The ids of the categories to look for, or {@code null} for all of them.
+     * @return A set of matching category names.
+     */
+    public Set<String> findMatchingCategories(CharSequence text, BitSet scope) {
+        Session session = newSession(scope);
+        session.feed(text);
+        session.finish();
+        return categoryNames(session.matchedCategoryIds());
+    }
+
+    /**
+     * Starts a new scan, looking only for the categories in the given scope.
+     *
+     * @param scope The ids of the categories to look for, or {@code null} for all of them.
+     * @return A session which can be fed the text in one or more chunks.
+     */
+    public Session newSession(BitSet scope) {
+        return new Session(scope, false);
+    }
+
+    /**
+     * Starts a scan which scores every category in the given scope. A scoring session never completes early,
+     * since every occurrence of every keyword counts.
+     *
+     * @param scope The ids of the categories to score, or {@code null} for all of them.
+     * @return A session which can be fed the text in one or more chunks.
+     */
+    public Session newScoringSession(BitSet scope) {
+        return new Session(scope, true);
+    }
+
+    /**
+     * Converts category ids back to category names.
+     *
+     * @param categoryIds The category ids, e.g. the matches of a session.
+     * @return The names of the categories.
+     */
+    public Set<String> categoryNames(BitSet categoryIds) {
+        Set<String> names = new HashSet<>();
+        for (int id = categoryIds.nextSetBit(0); id >= 0; id = categoryIds.nextSetBit(id + 1)) {
+            names.add(categoryNames[id]);
+        }
+        return names;
+    }
+
+    /**
+     * @return The number of distinct keyword tokens.
+     */
+    public int vocabularySize() {
+        return tokenHashes.length;
+    }
+
+    /**
+     * Splits a keyword into lowercased tokens, the same way the page content is split while scanning.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (isTokenChar(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private int lookupToken(char[] buffer, int length, int hash) {
+        int slot = mix(hash) & (tokenSlots.length - 1);
+        int id;
+        while ((id = tokenSlots[slot]) != NONE) {
+            if (tokenHashes[id] == hash && tokenStart[id + 1] - tokenStart[id] == length
+                    && Arrays.equals(tokenChars, tokenStart[id], tokenStart[id + 1], buffer, 0, length)) {
+                return id;
+            }
+            slot = (slot + 1) & (tokenSlots.length - 1);
+        }
+        return NONE;
+    }
+
+    private int step(int state, int tokenId) {
+        if (tokenId == NONE) {
+            return ROOT;
+        }
+        int next;
+        while ((next = lookupEdge(edgeKeys, edgeTargets, state, tokenId)) == NONE && state != ROOT) {
+            state = fail[state];
+        }
+        return next == NONE ? ROOT : next;
+    }
+
+    private static int lookupEdge(long[] edgeKeys, int[] edgeTargets, int state, int tokenId) {
+        long key = edgeKey(state, tokenId);
+        int slot = mix(Long.hashCode(key)) & (edgeKeys.length - 1);
+        long candidate;
+        while ((candidate = edgeKeys[slot]) != NO_EDGE) {
+            if (candidate == key) {
+                return edgeTargets[slot];
+            }
+            slot = (slot + 1) & (edgeKeys.length - 1);
+        }
+        return NONE;
+    }
+
+    private static long edgeKey(int state, int tokenId) {
+        return ((long) state << 32) | tokenId;
+    }
+
+    /**
+     * A power of two at least twice the number of entries, so that probe sequences stay short.
+     */
+    private static int tableSize(int entries) {
+        return Integer.highestOneBit(Math.max(2, entries) * 2 - 1) << 1;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The mutable state of a single scan. Not thread-safe.
+     * <p>
+     * A token may span two chunks, so the last token is only complete once {@link #finish()} is called.
+     */
+    public final class Session {
+        private final long[] matched = new long[(categoryNames.length + 63) >>> 6];
+        private final BitSet scope;
+        private final int targetCount;
+        private final int[] hits;
+        private final int[] distinctKeywords;
+        private final long[] matchedTokens;
+        private final BitSet outputsHit;
+        private final char[] token = new char[maxTokenLength + 1];
+        private int tokenLength;
+        private int tokenHash;
+        private int matchedCount;
+        private long hitCount;
+        private long tokenCount;
+        private int state = ROOT;
+
+        private Session(BitSet scope, boolean scoring) {
+            this.scope = scope;
+            if (scoring) {
+                this.targetCount = Integer.MAX_VALUE;
+                this.hits = new int[categoryNames.length];
+                this.distinctKeywords = new int[categoryNames.length];
+                this.matchedTokens = new long[categoryNames.length];
+                this.outputsHit = new BitSet(outputIds.length);
+            } else {
+                this.targetCount = scope == null ? categoryNames.length : scope.cardinality();
+                this.hits = null;
+                this.distinctKeywords = null;
+                this.matchedTokens = null;
+                this.outputsHit = null;
+            }
+        }
+
+        /**
+         * Feeds the next chunk of text into the matcher.
+         *
+         * @param text The next chunk of text.
+         * @return {@code true} once every category has been matched and further input is pointless.
+         */
+        public boolean feed(CharSequence text) {
+            for (int i = 0; i < text.length() && !isComplete(); i++) {
+                accept(text.charAt(i));
+            }
+            return isComplete();
+        }
+
+        /**
+         * Feeds the next chunk of text into the matcher.
+         *
+         * @return {@code true} once every category has been matched and further input is pointless.
+         */
+        public boolean feed(char[] buffer, int offset, int length) {
+            int end = offset + length;
+            for (int i = offset; i < end && !isComplete(); i++) {
+                accept(buffer[i]);
+            }
+            return isComplete();
+        }
+
+        /**
+         * Completes the last token of the text.
+         *
+         * @return {@code true} if every category has been matched.
+         */
+        public boolean finish() {
+            endToken();
+            return isComplete();
+        }
+
+        private void accept(char c) {
+            if (!isTokenChar(c)) {
+                endToken();
+                return;
+            }
+            char lower = Character.toLowerCase(c);
+            // Tokens longer than any keyword token cannot match; only their length is tracked
+            if (tokenLength < token.length) {
+                token[tokenLength] = lower;
+                tokenHash = 31 * tokenHash + lower;
+            }
+            tokenLength++;
+        }
+
+        private void endToken() {
+            if (tokenLength == 0) {
+                return;
+            }
+            int tokenId = tokenLength <= maxTokenLength ? lookupToken(token, tokenLength, tokenHash) : NONE;
+            tokenLength = 0;
+            tokenHash = 0;
+            tokenCount++;
+            state = step(state, tokenId);
+            for (int output = report[state]; output != NONE; output = report[fail[output]]) {
+                for (int i = outputStart[output]; i < outputStart[output + 1]; i++) {
+                    int categoryId = outputIds[i];
+                    if (scope == null || scope.get(categoryId)) {
+                        hitCount++;
+                        long bit = 1L << categoryId;
+                        if ((matched[categoryId >>> 6] & bit) == 0) {
+                            matched[categoryId >>> 6] |= bit;
+                            matchedCount++;
+                        }
+                        if (hits != null) {
+                            score(categoryId, output, i);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void score(int categoryId, int output, int outputIndex) {
+            hits[categoryId]++;
+            matchedTokens[categoryId] += depth[output];
+            // Every output entry is a distinct (keyword, category) pair
+            if (!outputsHit.get(outputIndex)) {
+                outputsHit.set(outputIndex);
+                distinctKeywords[categoryId]++;
+            }
+        }
+
+        public boolean isComplete() {
+            return matchedCount >= targetCount;
+        }
+
+        public int getMatchedCount() {
+            return matchedCount;
+        }
+
+        /**
+         * @return The number of keyword occurrences found so far, counted once per category they belong to.
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * @return The number of page tokens scanned so far.
+         */
+        public long getTokenCount() {
+            return tokenCount;
+        }
+
+        /**
+         * @return The ids of the categories matched so far.
+         */
+        public BitSet matchedCategoryIds() {
+            return BitSet.valueOf(matched);
+        }
+
+        /**
+         * Returns the scores of the matched categories; only available for a scoring session.
+         *
+         * @return One score per matched category, highest density first.
+         */
+        public List<CategoryScore> scores() {
+            if (hits == null) {
+                throw new IllegalStateException("Not a scoring session");
+            }
+            List<CategoryScore> scores = new ArrayList<>(matchedCount);
+            for (int id = 0; id < hits.length; id++) {
+                if (hits[id] > 0) {
+                    double density = tokenCount == 0 ? 0 : (double) matchedTokens[id] / tokenCount;
+                    scores.add(new CategoryScore(categoryNames[id], hits[id], distinctKeywords[id], density));
+                }
+            }
+            scores.sort(Comparator.comparingDouble(CategoryScore::getDensity).reversed()
+                    .thenComparing(CategoryScore::getCategoryName));
+            return scores;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.urlcategorizer.metrics;
+
+import com.urlcategorizer.content.CircuitBreakingPageFetcher;
+import com.urlcategorizer.content.ContentCache;
+import com.urlcategorizer.content.HostScheduledPageFetcher;
+import com.urlcategorizer.content.NegativeCache;
+import com.urlcategorizer.content.SingleFlight;
+import com.urlcategorizer.repository.CategorizationResultRepository;
+import com.urlcategorizer.repository.ContentFingerprintRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Records the metrics of the fetch, extract and match stages of the categorization pipeline.
+ * <p>
+ * Stage metrics are tagged with the endpoint of the request being served (the URI template of the handler),
+ * or "none" outside of a request, e.g. in the CLI runner. Work done for a request on other threads is tagged with
+ * the endpoint read on the request thread and handed over with {@link #runWithEndpoint(String, Runnable)}.
+ * They are exposed on /actuator/prometheus.
+ */
+@Component
+public class CategorizationMetrics {
+
+    public static final String STAGE_FETCH = "fetch";
+    public static final String STAGE_EXTRACT = "extract";
+    public static final String STAGE_MATCH = "match";
+
+    /**
+     * Strategy tag of the scored categorization, which matches with the tokenized engine but keeps only the
+     * categories above the score thresholds.
+     */
+    public static final String STRATEGY_SCORED = "SCORED";
+
+    private static final String NO_ENDPOINT = "none";
+    private static final ThreadLocal<String> ENDPOINT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final AtomicInteger inFlightFetches = new AtomicInteger();
+
+    public CategorizationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("urlcategorizer.fetch.in.flight", inFlightFetches, AtomicInteger::get)
+                .description("Number of page fetches in progress")
+                .register(registry);
+    }
+
+    /**
+     * Records the duration of a pipeline stage, tagged with the endpoint of the current thread.
+     *
+     * @param stage     One of the STAGE_ constants.
+     * @param qualifier The matching strategy of a match stage, or the extraction mode of an extract stage.
+     * @param nanos     The duration of the stage.
+     * @param outcome   "success" or "error".
+     */
+    public void recordStage(String stage, String qualifier, long nanos, String outcome) {
+        recordStage(currentEndpoint(), stage, qualifier, nanos, outcome);
+    }
+
+    /**
+     * Records the duration of a pipeline stage which ran on a thread other than the one serving the request, e.g. in
+     * the completion of a fetch.
+     *
+     * @param endpoint The endpoint, read with {@link #currentEndpoint()} on the request thread.
+     */
+    public void recordStage(String endpoint, String stage, String qualifier, long nanos, String outcome) {
+        Timer.builder("urlcategorizer.stage")
+                .description("Duration of the fetch, extract and match stages of the categorization pipeline")
+                .tag("stage", stage)
+                .tag("qualifier", qualifier)
+                .tag("outcome", outcome)
+                .tag("endpoint", endpoint)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPageSize(long bytes) {
+        recordPageSize(currentEndpoint(), bytes);
+    }
+
+    /**
+     * @param endpoint The endpoint, read with {@link #currentEndpoint()} on the request thread.
+     */
+    public void recordPageSize(String endpoint, long bytes) {
+        DistributionSummary.builder("urlcategorizer.page.size")
+                .description("Size of the fetched pages")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .register(registry)
+                .record(bytes);
+    }
+
+    /**
+     * Records the number of categories that matched a page, and the number of keyword hits when the
+     * matching strategy counts them (a negative count is ignored).
+     */
+    public void recordMatches(String strategy, int matchedCategories, long keywordHits) {
+        DistributionSummary.builder("urlcategorizer.matched.categories")
+                .description("Number of categories matched per page")
+                .tag("strategy", strategy)
+                .tag("endpoint", currentEndpoint())
+                .register(registry)
+                .record(matchedCategories);
+        if (keywordHits >= 0) {
+            DistributionSummary.builder("urlcategorizer.keyword.hits")
+                    .description("Number of keyword hits per page")
+                    .tag("strategy", strategy)
+                    .tag("endpoint", currentEndpoint())
+                    .register(registry)
+                    .record(keywordHits);
+        }
+    }
+
+    /**
+     * Marks the start of a network fetch; the returned value must be passed to
+     * {@link #fetchFinished(String, long, boolean)}.
+     */
+    public long fetchStarted() {
+        inFlightFetches.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a network fetch, usually on a thread of the page fetcher.
+     *
+     * @param endpoint The endpoint, read with {@link #currentEndpoint()} on the thread which started the fetch.
+     */
+    public void fetchFinished(String endpoint, long startNanos, boolean success) {
+        inFlightFetches.decrementAndGet();
+        recordStage(endpoint, STAGE_FETCH, "http", System.nanoTime() - startNanos, success ? "success" : "error");
+    }
+
+    /**
+     * Exposes the counters of a content cache; the hit ratio is hits / (hits + misses + revalidations).
+     */
+    public void bindContentCache(ContentCache cache) {
+        FunctionCounter.builder("urlcategorizer.content.cache.requests", cache, c -> c.stats().getHits())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("urlcategorizer.content.cache.requests", cache, c -> c.stats().getMisses())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("urlcategorizer.content.cache.requests", cache, c -> c.stats().getRevalidations())
+                .tag("result", "revalidated")
+                .register(registry);
+        FunctionCounter.builder("urlcategorizer.content.cache.evictions", cache, c -> c.stats().getEvictions())
+                .register(registry);
+        Gauge.builder("urlcategorizer.content.cache.size", cache, c -> c.stats().getSizeBytes())
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Counts a categorization result by the tier of the page which decided it, HEAD or BODY.
+     */
+    public void recordDecision(String tier) {
+        Counter.builder("urlcategorizer.decisions")
+                .description("Categorization results by the tier of the page which decided them")
+                .tag("tier", tier)
+                .tag("endpoint", currentEndpoint())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Counts a shadow match by whether the shadow strategy found the same categories as the primary one.
+     */
+    public void recordShadowComparison(String primary, String shadow, boolean agreed) {
+        Counter.builder("urlcategorizer.shadow.comparisons")
+                .description("Shadow matches by their agreement with the strategy serving the request")
+                .tag("primary", primary)
+                .tag("shadow", shadow)
+                .tag("outcome", agreed ? "agree" : "disagree")
+                .register(registry)
+                .increment();
+    }
+
+    public void bindResultRepository(CategorizationResultRepository repository) {
+        FunctionCounter.builder("urlcategorizer.result.store.requests", repository, CategorizationResultRepository::getHits)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("urlcategorizer.result.store.requests", repository, CategorizationResultRepository::getMisses)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("urlcategorizer.result.store.entries", repository, CategorizationResultRepository::getEntries)
+                .register(registry);
+        Gauge.builder("urlcategorizer.result.store.size", repository, CategorizationResultRepository::getSizeBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public void bindFingerprintRepository(ContentFingerprintRepository repository) {
+        FunctionCounter.builder("urlcategorizer.dedup.requests", repository, ContentFingerprintRepository::getExactHits)
+                .description("Page texts looked up by fingerprint before being matched")
+                .tag("result", "exact")
+                .register(registry);
+        FunctionCounter.builder("urlcategorizer.dedup.requests", repository, ContentFingerprintRepository::getNearHits)
+                .tag("result", "near")
+                .register(registry);
+        FunctionCounter.builder("urlcategorizer.dedup.requests", repository, ContentFingerprintRepository::getMisses)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("urlcategorizer.dedup.entries", repository, ContentFingerprintRepository::getEntries)
+                .register(registry);
+    }
+
+    public void bindFetchScheduler(HostScheduledPageFetcher scheduler) {
+        Gauge.builder("urlcategorizer.fetch.queued", scheduler, HostScheduledPageFetcher::getQueuedRequests)
+                .description("Number of fetches waiting for the rate limit or a free slot of their host")
+                .register(registry);
+        FunctionCounter.builder("urlcategorizer.fetch.throttled", scheduler, HostScheduledPageFetcher::getThrottledResponses)
+                .description("Number of 429 and 503 responses, each of which lowered the request rate of its host")
+                .register(registry);
+        Gauge.builder("urlcategorizer.fetch.hosts", scheduler, HostScheduledPageFetcher::getHosts)
+                .description("Number of hosts the fetch scheduler keeps a queue and request rate for")
+                .register(registry);
+    }
+
+    public void bindCircuitBreaker(CircuitBreakingPageFetcher circuitBreaker) {
+        Gauge.builder("urlcategorizer.fetch.circuits.open", circuitBreaker, CircuitBreakingPageFetcher::getOpenCircuits)
+                .description("Number of hosts whose circuit is open or half-open after repeated failures")
+                .register(registry);
+        FunctionCounter.builder("urlcategorizer.fetch.rejected", circuitBreaker, CircuitBreakingPageFetcher::getRejectedRequests)
+                .description("Fetches failed at once because the circuit of their host was open")
+                .register(registry);
+    }
+
+    public void bindNegativeCache(NegativeCache negativeCache) {
+        FunctionCounter.builder("urlcategorizer.fetch.negative.cache.hits", negativeCache, NegativeCache::getHits)
+                .description("Requests failed at once because their URL failed recently")
+                .register(registry);
+        Gauge.builder("urlcategorizer.fetch.negative.cache.size", negativeCache, NegativeCache::size)
+                .register(registry);
+    }
+
+    public void bindSingleFlight(SingleFlight<?, ?> singleFlight) {
+        FunctionCounter.builder("urlcategorizer.fetch.coalesced", singleFlight, SingleFlight::getCoalesced)
+                .description("Fetches saved by joining a concurrent fetch of the same URL")
+                .register(registry);
+    }
+
+    /**
+     * Returns the endpoint tag of the current thread: the one handed over with
+     * {@link #runWithEndpoint(String, Runnable)}, or else the URI template of the request handled by the thread.
+     *
+     * @return The endpoint, or "none" outside of a request.
+     */
+    public static String currentEndpoint() {
+        String endpoint = ENDPOINT.get();
+        if (endpoint != null) {
+            return endpoint;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return NO_ENDPOINT;
+        }
+        Object pattern = attributes.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return pattern == null ? NO_ENDPOINT : pattern.toString();
+    }
+
+    /**
+     * Runs work done on behalf of a request on the current thread, e.g. a worker thread, with its metrics tagged
+     * with the endpoint of that request.
+     *
+     * @param endpoint The endpoint, read with {@link #currentEndpoint()} on the request thread.
+     * @param task     The work to run.
+     */
+    public static void runWithEndpoint(String endpoint, Runnable task) {
+        callWithEndpoint(endpoint, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Computes a result on behalf of a request, like {@link #runWithEndpoint(String, Runnable)}.
+     *
+     * @param endpoint The endpoint, read with {@link #currentEndpoint()} on the request thread.
+     * @param task     The work to run.
+     * @return The result of the task.
+     */
+    public static <T> T callWithEndpoint(String endpoint, Supplier<T> task) {
+        String previous = ENDPOINT.get();
+        ENDPOINT.set(endpoint);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                ENDPOINT.remove();
+            } else {
+                ENDPOINT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.urlcategorizer.offline;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlcategorizer.content.StreamingHtmlTextExtractor;
+import com.urlcategorizer.dto.BatchItemStatus;
+import com.urlcategorizer.dto.BulkJobResultDTO;
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.matcher.AhoCorasickAutomaton;
+import com.urlcategorizer.matcher.CategoryModel;
+import com.urlcategorizer.matcher.MatchingStrategy;
+import com.urlcategorizer.matcher.TokenMatcher;
+import com.urlcategorizer.service.CategoryModelRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Categorizes pages which are already on disk, e.g. crawl dumps: a directory tree of HTML files, or a WARC archive.
+ * <p>
+ * Pages are streamed through the HTML text extractor straight into the keyword matcher, without building a DOM or
+ * holding the page text, on a work-stealing pool with one worker per core. HTML files are read by the workers
+ * themselves, so reading is parallel too; a WARC archive is read sequentially by the calling thread, which hands
+ * the pages to the workers and waits whenever a few pages per worker are pending. Every page produces one NDJSON
+ * line in the output file.
+ */
+@Component
+@Slf4j
+public class OfflineCategorizer {
+
+    private static final Set<String> HTML_EXTENSIONS = Set.of(".html", ".htm", ".xhtml");
+    private static final int PENDING_PAGES_PER_WORKER = 4;
+    private static final long MAX_WARC_RECORD_BYTES = 32L * 1024 * 1024;
+
+    private final CategoryModelRegistry categoryModelRegistry;
+    private final ObjectMapper objectMapper;
+    private final long maxChars;
+
+    public OfflineCategorizer(CategoryModelRegistry categoryModelRegistry,
+                              ObjectMapper objectMapper,
+                              @Value("${url-content.streaming.max-chars:5000000}") long maxChars) {
+        this.categoryModelRegistry = categoryModelRegistry;
+        this.objectMapper = objectMapper;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * The totals of an offline run.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static final class Report {
+
+        /**
+         * The number of pages categorized, including the failed ones.
+         */
+        private final long pages;
+
+        /**
+         * The number of pages which could not be read.
+         */
+        private final long failedPages;
+
+        /**
+         * The size of the pages categorized successfully.
+         */
+        private final long bytes;
+
+        /**
+         * The duration of the run.
+         */
+        private final long elapsedNanos;
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double getPagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : pages / getElapsedSeconds();
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes / 1048576.0 / getElapsedSeconds();
+        }
+    }
+
+    /**
+     * Categorizes every page of the source and writes one result line per page to the output file.
+     *
+     * @param source     A directory of HTML files (searched recursively), or a WARC file, optionally gzipped.
+     * @param output     The NDJSON result file; replaced if it exists.
+     * @param categories The categories to match against.
+     * @param strategy   {@link MatchingStrategy#AHO_CORASICK} or {@link MatchingStrategy#TOKENIZED}, the strategies
+     *                   which can match a page while it is being read.
+     * @return The totals of the run.
+     * @throws IOException if the source cannot be read or the output cannot be written.
+     */
+    public Report run(Path source, Path output, Set<Category> categories, MatchingStrategy strategy) throws IOException {
+        if (strategy != MatchingStrategy.AHO_CORASICK && strategy != MatchingStrategy.TOKENIZED) {
+            throw new IllegalArgumentException("Offline categorization supports AHO_CORASICK and TOKENIZED, not " + strategy);
+        }
+        CategoryModel model = categoryModelRegistry.getModel(categories);
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Semaphore pending = new Semaphore(parallelism * PENDING_PAGES_PER_WORKER);
+        AtomicLong pages = new AtomicLong();
+        AtomicLong failedPages = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            PageTask task = (uri, size, reader) -> {
+                BulkJobResultDTO result;
+                try (Reader page = reader.open()) {
+                    long pageBytes = size.get();
+                    result = BulkJobResultDTO.builder()
+                            .url(uri)
+                            .status(BatchItemStatus.COMPLETED)
+                            .categories(categorize(page, model, strategy))
+                            .build();
+                    bytes.addAndGet(pageBytes);
+                } catch (IOException | UncheckedIOException e) {
+                    failedPages.incrementAndGet();
+                    result = BulkJobResultDTO.builder()
+                            .url(uri)
+                            .status(BatchItemStatus.FAILED)
+                            .error(String.valueOf(e.getMessage()))
+                            .build();
+                }
+                pages.incrementAndGet();
+                write(out, result);
+            };
+
+            try {
+                if (Files.isDirectory(source)) {
+                    submitHtmlFiles(source, pool, pending, failure, task);
+                } else {
+                    submitWarcPages(source, pool, pending, failure, task);
+                }
+            } finally {
+                // The pages already submitted still write to the output
+                pool.shutdown();
+                awaitTermination(pool);
+            }
+            rethrow(failure);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Report report = new Report(pages.get(), failedPages.get(), bytes.get(), System.nanoTime() - start);
+        log.info("Categorized {} pages ({} failed) from {} in {} s: {} pages/s, {} MB/s", report.getPages(),
+                report.getFailedPages(), source, String.format(Locale.ROOT, "%.1f", report.getElapsedSeconds()),
+                String.format(Locale.ROOT, "%.1f", report.getPagesPerSecond()),
+                String.format(Locale.ROOT, "%.1f", report.getMegabytesPerSecond()));
+        return report;
+    }
+
+    private void submitHtmlFiles(Path directory, ForkJoinPool pool, Semaphore pending, AtomicReference<Throwable> failure,
+                                 PageTask task) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            Iterator<Path> htmlFiles = files.filter(Files::isRegularFile).filter(OfflineCategorizer::isHtmlFile).iterator();
+            while (htmlFiles.hasNext()) {
+                Path file = htmlFiles.next();
+                submit(pool, pending, failure, () -> task.run(directory.relativize(file).toString(),
+                        () -> Files.size(file), () -> openFile(file)));
+            }
+        }
+    }
+
+    private void submitWarcPages(Path archive, ForkJoinPool pool, Semaphore pending, AtomicReference<Throwable> failure,
+                                 PageTask task) throws IOException {
+        try (WarcReader warc = new WarcReader(Files.newInputStream(archive), MAX_WARC_RECORD_BYTES)) {
+            WarcReader.Page page;
+            while ((page = warc.next()) != null) {
+                WarcReader.Page current = page;
+                submit(pool, pending, failure, () -> task.run(current.getTargetUri(), () -> current.getBody().length,
+                        () -> new InputStreamReader(new ByteArrayInputStream(current.getBody()), current.getCharset())));
+            }
+            if (warc.getSkippedRecords() > 0) {
+                log.warn("Skipped {} WARC records larger than {} bytes", warc.getSkippedRecords(), MAX_WARC_RECORD_BYTES);
+            }
+        }
+    }
+
+    /**
+     * Runs the page on the pool, waiting first while too many pages are pending, so that a fast reader cannot
+     * queue up the whole archive in memory.
+     * <p>
+     * A task of the pool has nobody to throw to, so the first failure of a page, e.g. a failed write of its result
+     * line, is recorded; no more pages are submitted after it, and the run rethrows it once the pool has finished.
+     */
+    private static void submit(ForkJoinPool pool, Semaphore pending, AtomicReference<Throwable> failure,
+                               IoRunnable page) throws IOException {
+        rethrow(failure);
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        pool.execute(() -> {
+            try {
+                page.run();
+            } catch (IOException | RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                pending.release();
+            }
+        });
+    }
+
+    private static void rethrow(AtomicReference<Throwable> failure) throws IOException {
+        Throwable error = failure.get();
+        if (error instanceof UncheckedIOException) {
+            throw new IOException(error.getCause().getMessage(), error);
+        } else if (error instanceof IOException) {
+            throw new IOException(error.getMessage(), error);
+        } else if (error instanceof RuntimeException) {
+            throw new IllegalStateException("Offline categorization failed", error);
+        } else if (error != null) {
+            throw (Error) error;
+        }
+    }
+
+    private Set<String> categorize(Reader page, CategoryModel model, MatchingStrategy strategy) throws IOException {
+        StreamingHtmlTextExtractor extractor = new StreamingHtmlTextExtractor(maxChars);
+        if (strategy == MatchingStrategy.TOKENIZED) {
+            TokenMatcher.Session session = model.newTokenSession();
+            extractor.extract(page, session::feed);
+            session.finish();
+            return model.categoryNames(session.matchedCategoryIds());
+        }
+        AhoCorasickAutomaton.Session session = model.newSession();
+        extractor.extract(page, session::feed);
+        return session.matchedCategoryNames();
+    }
+
+    private static Reader openFile(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1);
+    }
+
+    private void write(BufferedWriter out, BulkJobResultDTO result) {
+        try {
+            String line = objectMapper.writeValueAsString(result);
+            synchronized (out) {
+                out.write(line);
+                out.write('\n');
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize an offline result", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isHtmlFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && HTML_EXTENSIONS.contains(name.substring(dot));
+    }
+
+    private static void awaitTermination(ForkJoinPool pool) throws IOException {
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Still categorizing offline pages...");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoRunnable {
+        void run() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ReaderSupplier {
+        Reader open() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface SizeSupplier {
+        long get() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface PageTask {
+        void run(String uri, SizeSupplier size, ReaderSupplier reader) throws IOException;
+    }
+}
@@ -0,0 +1,253 @@
+package com.urlcategorizer.offline;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the HTML pages of a WARC archive (ISO 28500), plain or gzip-compressed, one record at a time.
+ * <p>
+ * Only response records holding an HTML page are returned; every other record is skipped without being buffered.
+ * The HTTP envelope of the response is removed, including chunked transfer and gzip content encodings.
+ * Memory use is bounded by the largest page accepted, see the {@code maxRecordBytes} constructor argument.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class WarcReader implements Closeable {
+
+    /**
+     * An HTML page of the archive.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static final class Page {
+
+        /**
+         * The URI the page was fetched from, the WARC-Target-URI of its record.
+         */
+        private final String targetUri;
+
+        /**
+         * The charset of the Content-Type header of the response, or UTF-8.
+         */
+        private final Charset charset;
+
+        /**
+         * The body of the response, with its transfer and content encodings removed.
+         */
+        private final byte[] body;
+    }
+
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final InputStream in;
+    private final long maxRecordBytes;
+    private long skippedRecords;
+
+    /**
+     * @param in             The archive; gzip compression, including one gzip member per record, is detected.
+     * @param maxRecordBytes Records larger than this are skipped.
+     * @throws IOException if the archive cannot be read.
+     */
+    public WarcReader(InputStream in, long maxRecordBytes) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        buffered.mark(2);
+        boolean gzip = buffered.read() == GZIP_MAGIC_1 && buffered.read() == GZIP_MAGIC_2;
+        buffered.reset();
+        this.in = gzip ? new BufferedInputStream(new GZIPInputStream(buffered, 64 * 1024), 64 * 1024) : buffered;
+        this.maxRecordBytes = maxRecordBytes;
+    }
+
+    /**
+     * @return The next HTML page of the archive, or {@code null} at the end of the archive.
+     * @throws IOException if the archive cannot be read or is malformed.
+     */
+    public Page next() throws IOException {
+        while (true) {
+            String versionLine = readLine();
+            while (versionLine != null && versionLine.isEmpty()) {
+                versionLine = readLine();
+            }
+            if (versionLine == null) {
+                return null;
+            }
+            if (!versionLine.startsWith("WARC/")) {
+                throw new IOException("Not a WARC record: " + versionLine);
+            }
+
+            Map<String, String> headers = readHeaders();
+            long contentLength = contentLength(headers);
+            boolean response = "response".equalsIgnoreCase(headers.get("warc-type"))
+                    && headers.getOrDefault("content-type", "").startsWith("application/http");
+            if (!response || contentLength > maxRecordBytes) {
+                if (response) {
+                    skippedRecords++;
+                }
+                skipFully(contentLength);
+                continue;
+            }
+
+            byte[] block = in.readNBytes((int) contentLength);
+            if (block.length < contentLength) {
+                throw new EOFException("Truncated WARC record " + headers.get("warc-record-id"));
+            }
+            Page page = parseHttpResponse(headers.get("warc-target-uri"), block);
+            if (page != null) {
+                return page;
+            }
+        }
+    }
+
+    /**
+     * @return The number of response records skipped because they exceeded the maximum record size.
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static long contentLength(Map<String, String> headers) throws IOException {
+        String value = headers.getOrDefault("content-length", "0").trim();
+        try {
+            long length = Long.parseLong(value);
+            if (length < 0) {
+                throw new NumberFormatException("Negative length");
+            }
+            return length;
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed Content-Length of WARC record " + headers.get("warc-record-id") + ": "
+                    + value, e);
+        }
+    }
+
+    private Page parseHttpResponse(String targetUri, byte[] block) throws IOException {
+        InputStream http = new ByteArrayInputStream(block);
+        String statusLine = readLine(http);
+        if (statusLine == null || !statusLine.startsWith("HTTP/")) {
+            return null;
+        }
+        Map<String, String> headers = readHeaders(http);
+        String contentType = headers.getOrDefault("content-type", "text/html").toLowerCase(Locale.ROOT);
+        if (!contentType.contains("html")) {
+            return null;
+        }
+
+        InputStream body = http;
+        if ("chunked".equalsIgnoreCase(headers.getOrDefault("transfer-encoding", "").trim())) {
+            body = new ByteArrayInputStream(dechunk(body));
+        }
+        if ("gzip".equalsIgnoreCase(headers.getOrDefault("content-encoding", "").trim())) {
+            body = new GZIPInputStream(body);
+        }
+        return new Page(targetUri, charset(contentType), body.readNBytes((int) maxRecordBytes));
+    }
+
+    private static Charset charset(String contentType) {
+        int index = contentType.indexOf("charset=");
+        if (index >= 0) {
+            String name = contentType.substring(index + "charset=".length()).replace("\"", "").split("[;\\s]")[0];
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                // Unknown or malformed charset
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static byte[] dechunk(InputStream chunked) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String sizeLine;
+        while ((sizeLine = readLine(chunked)) != null) {
+            String size = sizeLine.split(";")[0].trim();
+            if (size.isEmpty()) {
+                continue;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(size, 16);
+            } catch (NumberFormatException e) {
+                // Not chunked after all, or a broken capture: keep what was decoded
+                break;
+            }
+            if (length == 0) {
+                break;
+            }
+            out.write(chunked.readNBytes(length));
+        }
+        return out.toByteArray();
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        return readHeaders(in);
+    }
+
+    private static Map<String, String> readHeaders(InputStream in) throws IOException {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    private String readLine() throws IOException {
+        return readLine(in);
+    }
+
+    /**
+     * Reads a CRLF- or LF-terminated line of ISO-8859-1 text, without the terminator.
+     *
+     * @return The line, or {@code null} at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int end = line.length();
+                return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+            }
+            if (line.length() < MAX_LINE_LENGTH) {
+                line.append((char) b);
+            }
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private void skipFully(long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("Truncated WARC record");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package com.urlcategorizer.repository;
+
+import com.urlcategorizer.content.UrlNormalizer;
+import com.urlcategorizer.dto.CategorizationMode;
+import com.urlcategorizer.dto.CategorizationTier;
+import com.urlcategorizer.entity.CategorizationRecord;
+import com.urlcategorizer.matcher.MatchingStrategy;
+import com.urlcategorizer.metrics.CategorizationMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Stores categorization results on disk, keyed by the normalized URL, the matching strategy and the fingerprint of
+ * the category model (see {@link #key(String, MatchingStrategy, CategorizationMode, String)}), so that a repeated request is answered
+ * without fetching the page again, including after a restart.
+ * <p>
+ * Results are appended to a single log file, and an in-memory index maps every key to the position of its latest
+ * record; a lookup is a positional read of that record, which the page cache serves in microseconds. Since the
+ * model fingerprint is part of the key, a result computed with other categories is never returned: it is simply
+ * no longer read, and is dropped along with expired and overwritten results when the log is compacted.
+ * <p>
+ * The index is rebuilt from the log on startup. Every record carries a checksum, so a record torn by a crash is
+ * detected and cut off together with anything after it. Records stay in the order they were appended, compacted or
+ * not, so when the index is full the results with the lowest positions, the oldest, are evicted to make room.
+ * <p>
+ * Compaction runs on a background thread, alongside lookups and appends; they only wait while the results appended
+ * during the rewrite are copied and the compacted log replaces the old one.
+ */
+@Repository
+@Slf4j
+public class CategorizationResultRepository {
+
+    private static final String LOG_FILE = "results.log";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+    private static final long MIN_COMPACTION_BYTES = 16L * 1024 * 1024;
+    private static final int MAX_COMPACTION_ROUNDS = 8;
+    private static final long MAX_LOCKED_COMPACTION_BYTES = 64 * 1024;
+    /**
+     * A full index evicts this share of its entries at once, so that the scan for the oldest ones is amortized.
+     */
+    private static final int EVICTION_DIVISOR = 100;
+
+    private final Path directory;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final CategorizationMetrics categorizationMetrics;
+
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+    /**
+     * Lookups, appends and the rewrite of a compaction share the lock; replacing the log file holds it exclusively.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object appendLock = new Object();
+    private final Object evictionLock = new Object();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "result-log-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final AtomicLong garbageRecords = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private FileChannel channel;
+    private long size;
+
+    public CategorizationResultRepository(@Value("${url-categorization.result-store.enabled:true}") boolean enabled,
+                                          @Value("${url-categorization.result-store.directory:data/results}") Path directory,
+                                          @Value("${url-categorization.result-store.ttl:7d}") Duration ttl,
+                                          @Value("${url-categorization.result-store.max-entries:1000000}") int maxEntries,
+                                          CategorizationMetrics categorizationMetrics) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.categorizationMetrics = categorizationMetrics;
+    }
+
+    /**
+     * Opens the log and rebuilds the index from it.
+     *
+     * @throws IOException if the log cannot be opened.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Path logFile = directory.resolve(LOG_FILE);
+        size = replay(logFile);
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (size < channel.size()) {
+            log.warn("Discarding {} bytes after the last intact record of {}", channel.size() - size, logFile);
+            channel.truncate(size);
+        }
+        log.info("Loaded {} stored categorization results from {}", index.size(), logFile);
+        if (garbageRecords.get() > index.size()) {
+            compact();
+        }
+        categorizationMetrics.bindResultRepository(this);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Closing the categorization result log during its compaction");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the key of a result.
+     *
+     * @param url              The URL of the page; it is normalized.
+     * @param strategy         The matching strategy the result was computed with.
+     * @param mode             The part of the page the result was computed from.
+     * @param modelFingerprint The fingerprint of the category model the result was computed with.
+     * @return The key.
+     */
+    public static String key(String url, MatchingStrategy strategy, CategorizationMode mode, String modelFingerprint) {
+        String variant = mode == CategorizationMode.FULL ? strategy.name() : strategy.name() + '/' + mode.name();
+        return variant + ' ' + modelFingerprint + ' ' + UrlNormalizer.normalize(url);
+    }
+
+    /**
+     * Finds the latest result stored under the key, unless it has expired.
+     *
+     * @param key The key, see {@link #key(String, MatchingStrategy, CategorizationMode, String)}.
+     * @return The result, or an empty optional.
+     */
+    public Optional<CategorizationRecord> find(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            Long offset = index.get(key);
+            if (offset != null) {
+                StoredEntry entry = read(offset);
+                if (entry != null && entry.key.equals(key)) {
+                    if (!isExpired(entry.record, System.currentTimeMillis())) {
+                        hits.increment();
+                        return Optional.of(entry.record);
+                    }
+                    if (index.remove(key, offset)) {
+                        garbageRecords.incrementAndGet();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read a stored categorization result", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Appends the result to the log and makes it the latest result of the key.
+     * When the index is full, the oldest results are evicted first; their records are dropped by the next compaction.
+     *
+     * @param key    The key, see {@link #key(String, MatchingStrategy, CategorizationMode, String)}.
+     * @param record The result.
+     */
+    public void save(String key, CategorizationRecord record) {
+        if (!enabled) {
+            return;
+        }
+        ByteBuffer buffer;
+        try {
+            buffer = encode(key, record);
+        } catch (UTFDataFormatException e) {
+            log.debug("Not storing the categorization result of an oversized key");
+            return;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode a categorization result", e);
+        }
+        if (buffer.remaining() > MAX_RECORD_BYTES) {
+            return;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (index.size() >= maxEntries && !index.containsKey(key)) {
+                evictOldest();
+            }
+            long offset;
+            synchronized (appendLock) {
+                offset = size;
+                size += buffer.remaining();
+            }
+            writeFully(channel, buffer, offset);
+            if (index.put(key, offset) != null) {
+                garbageRecords.incrementAndGet();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to store a categorization result", e);
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (needsCompaction() && compactionScheduled.compareAndSet(false, true)) {
+            try {
+                compactor.execute(() -> {
+                    try {
+                        if (needsCompaction()) {
+                            compact();
+                        }
+                    } finally {
+                        compactionScheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                compactionScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest entries from a full index, i.e. those with the lowest positions in the log; the caller holds
+     * the lock shared, so the positions are not replaced by a compaction meanwhile. An entry replaced concurrently
+     * points after the evicted ones and is kept.
+     */
+    private void evictOldest() {
+        synchronized (evictionLock) {
+            if (index.size() < maxEntries) {
+                return;
+            }
+            long[] offsets = index.values().stream().mapToLong(Long::longValue).sorted().toArray();
+            int evicted = Math.max(1, Math.min(offsets.length, maxEntries / EVICTION_DIVISOR));
+            long threshold = offsets[evicted - 1];
+            index.entrySet().removeIf(indexed -> {
+                if (indexed.getValue() > threshold) {
+                    return false;
+                }
+                garbageRecords.incrementAndGet();
+                return true;
+            });
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getEntries() {
+        return index.size();
+    }
+
+    public long getSizeBytes() {
+        synchronized (appendLock) {
+            return size;
+        }
+    }
+
+    /**
+     * Rewrites the log with only the latest unexpired result of every key.
+     * <p>
+     * The results present when compaction starts are copied while lookups and appends go on, then the results
+     * appended meanwhile, for a few rounds until only a few are left. Only those are copied holding the lock
+     * exclusively, right before the compacted log replaces the old one. Compaction runs only once the log holds more
+     * replaced, expired or evicted results than live ones, so its cost is spread over at least as many appends. If it
+     * fails, the old log is kept, and reopened if it was already closed.
+     */
+    private void compact() {
+        long start = System.nanoTime();
+        Path logFile = directory.resolve(LOG_FILE);
+        Path compacted = directory.resolve(LOG_FILE + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CompactedLog copy = new CompactedLog(out);
+            lock.readLock().lock();
+            try {
+                for (int round = 0; round < MAX_COMPACTION_ROUNDS; round++) {
+                    copy.copyAppended(getSizeBytes());
+                    if (getSizeBytes() - copy.end <= MAX_LOCKED_COMPACTION_BYTES) {
+                        break;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            lock.writeLock().lock();
+            try {
+                copy.copyAppended(getSizeBytes());
+                out.force(false);
+                out.close();
+                replaceLog(compacted, logFile, copy.liveOffsets(), copy, start);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            log.error("Failed to compact the categorization result log", e);
+            deleteQuietly(compacted);
+            reopenIfClosed(logFile);
+        }
+    }
+
+    /**
+     * A compacted log being written: the latest records of the keys, copied in the order they were appended.
+     */
+    private final class CompactedLog {
+        private final FileChannel out;
+        /**
+         * The record each key pointed to when it was copied, and the position of its copy.
+         */
+        private final Map<String, Long> copiedFrom = new HashMap<>();
+        private final Map<String, Long> offsets = new HashMap<>();
+        private long end;
+        private long length;
+        private long copies;
+
+        private CompactedLog(FileChannel out) {
+            this.out = out;
+        }
+
+        /**
+         * Copies the unexpired records of the keys whose latest record was appended to the log after the part
+         * copied so far, up to the given end of the log, in the order they were appended.
+         */
+        private void copyAppended(long upTo) throws IOException {
+            long now = System.currentTimeMillis();
+            List<Map.Entry<String, Long>> appended = new ArrayList<>();
+            for (Map.Entry<String, Long> indexed : index.entrySet()) {
+                long from = indexed.getValue();
+                if (from >= end && from < upTo) {
+                    appended.add(Map.entry(indexed.getKey(), from));
+                }
+            }
+            appended.sort(Map.Entry.comparingByValue());
+            for (Map.Entry<String, Long> indexed : appended) {
+                long from = indexed.getValue();
+                StoredEntry entry = read(from);
+                if (entry == null || !entry.key.equals(indexed.getKey()) || isExpired(entry.record, now)) {
+                    continue;
+                }
+                ByteBuffer buffer = encode(entry.key, entry.record);
+                int recordLength = buffer.remaining();
+                writeFully(out, buffer, length);
+                copiedFrom.put(entry.key, from);
+                offsets.put(entry.key, length);
+                length += recordLength;
+                copies++;
+            }
+            end = upTo;
+        }
+
+        /**
+         * Returns the positions of the copies which are still the latest record of their key; the caller holds the
+         * lock exclusively. Appends only go to the end of the log, so a key replaced since its copy points after the
+         * copied part, and has been copied again; the earlier copy is left as garbage, like the copy of a key removed
+         * since.
+         */
+        private Map<String, Long> liveOffsets() {
+            Map<String, Long> live = new HashMap<>();
+            index.forEach((key, at) -> {
+                Long from = copiedFrom.get(key);
+                if (from != null && from.longValue() == at) {
+                    live.put(key, offsets.get(key));
+                }
+            });
+            return live;
+        }
+    }
+
+    /**
+     * Replaces the log with the compacted one; the caller holds the lock exclusively.
+     */
+    private void replaceLog(Path compacted, Path logFile, Map<String, Long> offsets, CompactedLog copy, long start)
+            throws IOException {
+        channel.close();
+        Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // From here on the log is the compacted one, whether or not it can be reopened
+        index.clear();
+        index.putAll(offsets);
+        garbageRecords.set(copy.copies - offsets.size());
+        long previousSize;
+        synchronized (appendLock) {
+            previousSize = size;
+            size = copy.length;
+        }
+        channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log.info("Compacted the categorization result log from {} to {} bytes ({} results) in {} ms",
+                previousSize, copy.length, offsets.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Truncated by the next compaction
+        }
+    }
+
+    private void reopenIfClosed(Path logFile) {
+        lock.writeLock().lock();
+        try {
+            if (channel != null && !channel.isOpen()) {
+                channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        } catch (IOException e) {
+            log.error("Cannot reopen the categorization result log {}; results are neither stored nor found", logFile, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean needsCompaction() {
+        return garbageRecords.get() > index.size() && getSizeBytes() >= MIN_COMPACTION_BYTES;
+    }
+
+    private boolean isExpired(CategorizationRecord record, long now) {
+        return now - record.getStoredAt() > ttlMillis;
+    }
+
+    /**
+     * Indexes the records of the log, in order, up to the first record which is truncated or fails its checksum.
+     *
+     * @return The length of the intact part of the log.
+     */
+    private long replay(Path logFile) throws IOException {
+        if (!Files.exists(logFile)) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), 64 * 1024))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                if (payload.length < length || checksum(payload, 0, length) != checksum) {
+                    break;
+                }
+                StoredEntry entry = decode(payload);
+                if (isExpired(entry.record, now)) {
+                    garbageRecords.incrementAndGet();
+                } else if (index.put(entry.key, offset) != null) {
+                    garbageRecords.incrementAndGet();
+                }
+                offset += HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // Torn record at the end of the log
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the record at the offset.
+     *
+     * @return The record, or {@code null} if the log holds no intact record there.
+     */
+    private StoredEntry read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, offset);
+        int length = header.getInt(0);
+        if (length <= 0 || length > MAX_RECORD_BYTES) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + HEADER_BYTES);
+        if (checksum(payload.array(), 0, length) != header.getInt(4)) {
+            return null;
+        }
+        return decode(payload.array());
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("Truncated categorization result at " + position);
+            }
+            current += read;
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += target.write(buffer, current);
+        }
+    }
+
+    /**
+     * Encodes a record as its payload length, the CRC-32 of the payload, and the payload: the key, the storage time,
+     * the content hash, the category names, the truncated flag and the tier which decided the categories.
+     */
+    private static ByteBuffer encode(String key, CategorizationRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeUTF(key);
+        out.writeLong(record.getStoredAt());
+        out.writeLong(record.getContentHash());
+        out.writeInt(record.getCategories().size());
+        for (String category : record.getCategories()) {
+            out.writeUTF(category);
+        }
+        out.writeBoolean(record.isTruncated());
+        out.writeByte(record.getDecidedBy() == null ? -1 : record.getDecidedBy().ordinal());
+        out.flush();
+
+        byte[] array = bytes.toByteArray();
+        int length = array.length - HEADER_BYTES;
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        buffer.putInt(0, length);
+        buffer.putInt(4, checksum(array, HEADER_BYTES, length));
+        return buffer;
+    }
+
+    private static StoredEntry decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String key = in.readUTF();
+        long storedAt = in.readLong();
+        long contentHash = in.readLong();
+        int count = in.readInt();
+        Set<String> categories = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            categories.add(in.readUTF());
+        }
+        // Records written before the truncated flag and the tier existed end early
+        boolean truncated = in.available() > 0 && in.readBoolean();
+        int tier = in.available() > 0 ? in.readByte() : CategorizationTier.BODY.ordinal();
+        return new StoredEntry(key, CategorizationRecord.builder()
+                .categories(Set.copyOf(categories))
+                .contentHash(contentHash)
+                .storedAt(storedAt)
+                .truncated(truncated)
+                .decidedBy(tier >= 0 ? CategorizationTier.values()[tier] : null)
+                .build());
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static final class StoredEntry {
+        private final String key;
+        private final CategorizationRecord record;
+
+        private StoredEntry(String key, CategorizationRecord record) {
+            this.key = key;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.urlcategorizer.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlcategorizer.dto.CategoryDTO;
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the predefined categories as one JSON file per category in a directory.
+ * <p>
+ * The categories are held in memory as an immutable snapshot which is replaced on every change, so readers never
+ * see a partial update. Files are written to a temporary file first and then moved into place, and the directory
+ * can be watched for changes made outside of the application, e.g. by a deployment tool or an editor.
+ */
+@Repository
+@Slf4j
+public class CategoryRepository {
+
+    private static final String FILE_EXTENSION = ".json";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    private volatile Map<String, Category> categories = Map.of();
+    private Map<String, String> namesByFile = Map.of();
+    private WatchService watchService;
+
+    public CategoryRepository(@Value("${url-categorization.categories.directory:data/categories}") Path directory,
+                              ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+    }
+
+    public Collection<Category> findAll() {
+        return categories.values();
+    }
+
+    public Optional<Category> findByName(String name) {
+        return Optional.ofNullable(categories.get(name));
+    }
+
+    /**
+     * Writes the category to its file and replaces any previous category of the same name.
+     *
+     * @param category The category to store.
+     */
+    public synchronized void save(Category category) {
+        String fileName = fileName(category.getName());
+        CategoryDTO stored = CategoryDTO.builder()
+                .name(category.getName())
+                .keywords(category.getKeywords().stream()
+                        .map(CategoryKeyword::getKeyword)
+                        .collect(Collectors.toCollection(TreeSet::new)))
+                .build();
+        try {
+            Files.createDirectories(directory);
+            Path temporary = directory.resolve("." + fileName + ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temporary.toFile(), stored);
+            Files.move(temporary, directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store category " + category.getName(), e);
+        }
+
+        Map<String, Category> updated = new HashMap<>(categories);
+        updated.put(category.getName(), category);
+        categories = Map.copyOf(updated);
+        Map<String, String> updatedNames = new HashMap<>(namesByFile);
+        updatedNames.put(fileName, category.getName());
+        namesByFile = updatedNames;
+    }
+
+    /**
+     * Deletes the category and its file.
+     *
+     * @param name The name of the category.
+     * @return {@code true} if the category existed.
+     */
+    public synchronized boolean delete(String name) {
+        if (!categories.containsKey(name)) {
+            return false;
+        }
+        String fileName = fileName(name);
+        try {
+            Files.deleteIfExists(directory.resolve(fileName));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete category " + name, e);
+        }
+
+        Map<String, Category> updated = new HashMap<>(categories);
+        updated.remove(name);
+        categories = Map.copyOf(updated);
+        Map<String, String> updatedNames = new HashMap<>(namesByFile);
+        updatedNames.remove(fileName);
+        namesByFile = updatedNames;
+        return true;
+    }
+
+    /**
+     * Reads all category files of the directory and replaces the categories in memory.
+     * Categories whose file did not change keep their instance, so the compiled models built from them stay valid.
+     * A file which cannot be read, e.g. because it is being written, keeps the category last read from it.
+     */
+    public synchronized void reload() {
+        Map<String, Category> previous = categories;
+        Map<String, Category> loaded = new HashMap<>();
+        Map<String, String> loadedNames = new HashMap<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    Category category = read(file);
+                    if (category == null) {
+                        String previousName = namesByFile.get(fileName);
+                        category = previousName == null ? null : previous.get(previousName);
+                    } else {
+                        Category unchanged = previous.get(category.getName());
+                        if (unchanged != null && sameKeywords(unchanged, category)) {
+                            category = unchanged;
+                        }
+                    }
+                    if (category != null) {
+                        loaded.put(category.getName(), category);
+                        loadedNames.put(fileName, category.getName());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read categories from " + directory, e);
+        }
+        categories = Map.copyOf(loaded);
+        namesByFile = loadedNames;
+        log.info("Loaded {} categories from {}", loaded.size(), directory.toAbsolutePath());
+    }
+
+    /**
+     * Watches the directory on a background thread and runs the given callback whenever a category file is
+     * created, modified or deleted. The callback is expected to call {@link #reload()}, typically debounced.
+     *
+     * @param onChange The callback.
+     */
+    public synchronized void watch(Runnable onChange) {
+        try {
+            Files.createDirectories(directory);
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("Cannot watch {} for category changes: {}", directory, e.getMessage());
+            return;
+        }
+
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || event.context().toString().endsWith(FILE_EXTENSION);
+                    }
+                    if (changed) {
+                        onChange.run();
+                    }
+                    if (!key.reset()) {
+                        log.warn("Stopped watching {} for category changes", directory);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ClosedWatchServiceException e) {
+                // Shutting down
+            }
+        }, "category-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private Category read(Path file) {
+        try {
+            CategoryDTO stored = objectMapper.readValue(file.toFile(), CategoryDTO.class);
+            if (stored.getName() == null || stored.getName().isBlank()) {
+                log.warn("Ignoring category file without a name: {}", file);
+                return null;
+            }
+            Set<String> keywords = stored.getKeywords() == null ? Set.of() : stored.getKeywords();
+            return Category.builder()
+                    .name(stored.getName())
+                    .keywords(keywords.stream()
+                            .map(keyword -> CategoryKeyword.builder()
+                                    .keyword(keyword.toLowerCase(Locale.ROOT))
+                                    .build())
+                            .collect(Collectors.toSet()))
+                    .build();
+        } catch (IOException e) {
+            log.warn("Failed to read category file {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean sameKeywords(Category a, Category b) {
+        return keywords(a).equals(keywords(b));
+    }
+
+    private static Set<String> keywords(Category category) {
+        return category.getKeywords().stream().map(CategoryKeyword::getKeyword).collect(Collectors.toSet());
+    }
+
+    private static String fileName(String categoryName) {
+        return URLEncoder.encode(categoryName, StandardCharsets.UTF_8) + FILE_EXTENSION;
+    }
+}
@@ -0,0 +1,204 @@
+package com.urlcategorizer.repository;
+
+import com.urlcategorizer.content.ContentFingerprint;
+import com.urlcategorizer.metrics.CategorizationMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Remembers the categories matched in recent page texts by the fingerprint of the text, so that duplicate pages,
+ * e.g. mirrors, syndicated articles and URL variants, reuse an earlier result instead of being matched again.
+ * <p>
+ * A text is found by its exact hash, or, failing that, by its SimHash: a text whose SimHash differs from a stored
+ * one in at most max-distance bits is a near duplicate. Near duplicates are found without comparing every stored
+ * SimHash: each SimHash is split into four 16-bit bands and indexed by each band, and two SimHashes differing in at
+ * most three bits share at least one band, so only the entries of four buckets are compared. Texts of fewer than
+ * min-tokens words are only found by their exact hash, since their SimHashes are too coarse.
+ * <p>
+ * Results are only shared within a scope, the matching strategy and the category model fingerprint. The store is
+ * held in memory, and the oldest entries are dropped once it holds max-entries.
+ */
+@Repository
+public class ContentFingerprintRepository {
+
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final int MAX_BAND_DISTANCE = BANDS - 1;
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final int maxDistance;
+    private final int minTokens;
+
+    private final Map<String, Entry> exact = new HashMap<>();
+    private final Map<String, List<Entry>> bands = new HashMap<>();
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ContentFingerprintRepository(@Value("${url-categorization.dedup.enabled:true}") boolean enabled,
+                                        @Value("${url-categorization.dedup.max-entries:200000}") int maxEntries,
+                                        @Value("${url-categorization.dedup.max-distance:3}") int maxDistance,
+                                        @Value("${url-categorization.dedup.min-tokens:50}") int minTokens,
+                                        CategorizationMetrics categorizationMetrics) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        // The band index only finds SimHashes differing in fewer bits than there are bands
+        this.maxDistance = Math.min(maxDistance, MAX_BAND_DISTANCE);
+        this.minTokens = minTokens;
+        categorizationMetrics.bindFingerprintRepository(this);
+    }
+
+    private static final class Entry {
+        private final String scope;
+        private final ContentFingerprint fingerprint;
+        private final Set<String> categories;
+        private final boolean indexed;
+
+        private Entry(String scope, ContentFingerprint fingerprint, Set<String> categories, boolean indexed) {
+            this.scope = scope;
+            this.fingerprint = fingerprint;
+            this.categories = categories;
+            this.indexed = indexed;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Finds the categories stored for the same or a nearly identical text.
+     *
+     * @param scope       The matching strategy and category model fingerprint the categories were matched with.
+     * @param fingerprint The fingerprint of the text.
+     * @return The stored categories, if any.
+     */
+    public Optional<Set<String>> find(String scope, ContentFingerprint fingerprint) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            Entry entry = exact.get(exactKey(scope, fingerprint));
+            if (entry != null) {
+                exactHits.increment();
+                return Optional.of(entry.categories);
+            }
+            if (maxDistance > 0 && fingerprint.getTokens() >= minTokens) {
+                for (int band = 0; band < BANDS; band++) {
+                    List<Entry> bucket = bands.get(bandKey(scope, fingerprint, band));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (Entry candidate : bucket) {
+                        if (candidate.fingerprint.distance(fingerprint) <= maxDistance) {
+                            nearHits.increment();
+                            return Optional.of(candidate.categories);
+                        }
+                    }
+                }
+            }
+            misses.increment();
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the categories matched in a text, unless the same text is already stored, dropping the oldest entry if
+     * the store is full.
+     *
+     * @param scope       The matching strategy and category model fingerprint the categories were matched with.
+     * @param fingerprint The fingerprint of the text.
+     * @param categories  The matched categories.
+     */
+    public void save(String scope, ContentFingerprint fingerprint, Set<String> categories) {
+        if (!enabled || maxEntries <= 0) {
+            return;
+        }
+        Entry entry = new Entry(scope, fingerprint, Set.copyOf(categories),
+                maxDistance > 0 && fingerprint.getTokens() >= minTokens);
+        lock.writeLock().lock();
+        try {
+            // The same text matched concurrently by two requests is stored once
+            if (exact.putIfAbsent(exactKey(scope, fingerprint), entry) != null) {
+                return;
+            }
+            entries.addLast(entry);
+            if (entry.indexed) {
+                for (int band = 0; band < BANDS; band++) {
+                    bands.computeIfAbsent(bandKey(scope, fingerprint, band), key -> new ArrayList<>(1)).add(entry);
+                }
+            }
+            while (entries.size() > maxEntries) {
+                Entry eldest = entries.pollFirst();
+                exact.remove(exactKey(eldest.scope, eldest.fingerprint), eldest);
+                unindex(eldest);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(Entry entry) {
+        if (!entry.indexed) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            String key = bandKey(entry.scope, entry.fingerprint, band);
+            List<Entry> bucket = bands.get(key);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    bands.remove(key);
+                }
+            }
+        }
+    }
+
+    private static String exactKey(String scope, ContentFingerprint fingerprint) {
+        return scope + ' ' + fingerprint.getExactHash();
+    }
+
+    private static String bandKey(String scope, ContentFingerprint fingerprint, int band) {
+        long bits = (fingerprint.getSimHash() >>> (band * BAND_BITS)) & 0xffff;
+        return scope + ' ' + band + ':' + bits;
+    }
+
+    public long getExactHits() {
+        return exactHits.sum();
+    }
+
+    public long getNearHits() {
+        return nearHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getEntries() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
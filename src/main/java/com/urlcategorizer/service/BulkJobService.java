@@ -0,0 +1,458 @@
+package com.urlcategorizer.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlcategorizer.dto.BatchItemStatus;
+import com.urlcategorizer.dto.BulkJobDTO;
+import com.urlcategorizer.dto.BulkJobResultDTO;
+import com.urlcategorizer.dto.BulkJobState;
+import com.urlcategorizer.dto.FetchStatus;
+import com.urlcategorizer.dto.UrlCategorizationResultDTO;
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.matcher.MatchingStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs bulk categorization jobs over URL lists of any size, e.g. nightly crawls.
+ * <p>
+ * A job never holds its URLs or its results in memory. The submitted URLs are spooled to a file and read one at a
+ * time; at most {@code max-in-flight} URLs of a job are being categorized at once, and every result goes through a
+ * bounded queue to a single writer which appends it to the job's NDJSON result file. A slow disk therefore slows
+ * the workers down, which in turn slows down reading the URLs. Clients poll the job's progress, or follow the
+ * result file as it grows.
+ * <p>
+ * Jobs are kept in memory, so they do not survive a restart; their files are deleted once the retention has passed.
+ */
+@Service
+@Slf4j
+public class BulkJobService {
+
+    private static final String END_OF_RESULTS = "";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final long STREAM_POLL_MILLIS = 500;
+
+    private final UrlCategorizationService urlCategorizationService;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int maxInFlight;
+    private final int resultQueueCapacity;
+    private final Duration retention;
+    private final ExecutorService workers;
+    private final ExecutorService jobThreads;
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+
+    public BulkJobService(UrlCategorizationService urlCategorizationService,
+                          ObjectMapper objectMapper,
+                          @Value("${url-categorization.jobs.directory:data/jobs}") Path directory,
+                          @Value("${url-categorization.jobs.concurrency:32}") int concurrency,
+                          @Value("${url-categorization.jobs.max-in-flight:64}") int maxInFlight,
+                          @Value("${url-categorization.jobs.result-queue-capacity:1024}") int resultQueueCapacity,
+                          @Value("${url-categorization.jobs.retention:24h}") Duration retention) {
+        this.urlCategorizationService = urlCategorizationService;
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.maxInFlight = maxInFlight;
+        this.resultQueueCapacity = resultQueueCapacity;
+        this.retention = retention;
+        this.workers = Executors.newFixedThreadPool(concurrency, daemonThreads("bulk-job-worker-"));
+        this.jobThreads = Executors.newCachedThreadPool(daemonThreads("bulk-job-"));
+    }
+
+    /**
+     * Starts a job over the URLs of the given stream, one URL per line; blank lines are ignored.
+     * The stream is copied to disk before this method returns, and is not closed.
+     *
+     * @param urls       The URL list.
+     * @param strategy   The matching strategy.
+     * @param categories The categories to match against.
+     * @return The started job.
+     * @throws IOException if the URL list cannot be stored.
+     */
+    public BulkJobDTO submit(InputStream urls, MatchingStrategy strategy, Set<Category> categories) throws IOException {
+        removeExpiredJobs();
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), directory, strategy, categories);
+        Files.createDirectories(job.directory);
+        Files.copy(urls, job.urlsFile());
+        Files.createFile(job.resultsFile());
+        job.totalUrls = countUrls(job.urlsFile());
+        jobs.put(job.id, job);
+        jobThreads.execute(() -> run(job));
+        log.info("Started bulk job {} with {} URLs", job.id, job.totalUrls);
+        return job.toDto();
+    }
+
+    /**
+     * Starts a job over the given URLs.
+     *
+     * @param urls       The URLs.
+     * @param strategy   The matching strategy.
+     * @param categories The categories to match against.
+     * @return The started job.
+     * @throws IOException if the URL list cannot be stored.
+     */
+    public BulkJobDTO submit(Collection<String> urls, MatchingStrategy strategy, Set<Category> categories) throws IOException {
+        String lines = String.join("\n", urls);
+        return submit(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)), strategy, categories);
+    }
+
+    public Optional<BulkJobDTO> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(BulkJob::toDto);
+    }
+
+    /**
+     * Stops reading further URLs of a job; the URLs already in flight are still written to the results.
+     *
+     * @param id The job id.
+     * @return The job, if it exists.
+     */
+    public Optional<BulkJobDTO> cancel(String id) {
+        BulkJob job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        job.cancelled = true;
+        return Optional.of(job.toDto());
+    }
+
+    /**
+     * Sends the results of a job to the emitter as NDJSON, following the result file until the job is finished.
+     * Only complete lines are sent, so every chunk the client receives ends at a result boundary.
+     *
+     * @param id      The job id.
+     * @param emitter The emitter of the response.
+     * @return {@code false} if the job does not exist.
+     */
+    public boolean streamResults(String id, ResponseBodyEmitter emitter) {
+        BulkJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        jobThreads.execute(() -> {
+            try (InputStream results = Files.newInputStream(job.resultsFile())) {
+                byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                int buffered = 0;
+                while (true) {
+                    boolean finished = job.isFinished();
+                    int read = results.read(buffer, buffered, buffer.length - buffered);
+                    if (read > 0) {
+                        buffered += read;
+                        int end = buffered == buffer.length ? buffered : lastLineEnd(buffer, buffered);
+                        if (end > 0) {
+                            emitter.send(Arrays.copyOf(buffer, end));
+                            System.arraycopy(buffer, end, buffer, 0, buffered - end);
+                            buffered -= end;
+                        }
+                    } else if (finished) {
+                        if (buffered > 0) {
+                            emitter.send(Arrays.copyOf(buffer, buffered));
+                        }
+                        emitter.complete();
+                        return;
+                    } else {
+                        job.awaitResults(STREAM_POLL_MILLIS);
+                    }
+                }
+            } catch (IOException e) {
+                // Most likely the client went away
+                log.debug("Stopped streaming the results of bulk job {}: {}", id, e.getMessage());
+                emitter.completeWithError(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.completeWithError(e);
+            }
+        });
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.cancelled = true);
+        jobThreads.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void run(BulkJob job) {
+        BlockingQueue<String> results = new ArrayBlockingQueue<>(resultQueueCapacity);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Thread writer = new Thread(() -> writeResults(job, results), "bulk-job-writer-" + job.id);
+        writer.setDaemon(true);
+        writer.start();
+
+        String readError = null;
+        try {
+            readError = submitUrls(job, results, inFlight);
+            // Wait for the URLs in flight, then let the writer finish
+            inFlight.acquire(maxInFlight);
+            results.put(END_OF_RESULTS);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+            job.finish(BulkJobState.CANCELLED, "Interrupted");
+            return;
+        }
+        if (readError != null) {
+            job.finish(BulkJobState.FAILED, readError);
+        } else {
+            job.finish(job.cancelled ? BulkJobState.CANCELLED : BulkJobState.COMPLETED, job.error);
+        }
+        log.info("Bulk job {} {}: {} URLs processed, {} failed", job.id, job.state, job.processedUrls.get(), job.failedUrls.get());
+    }
+
+    /**
+     * Reads the URLs of the job and hands them to the workers, at most max-in-flight at a time.
+     *
+     * @return The error which stopped reading the URLs, or {@code null}.
+     */
+    private String submitUrls(BulkJob job, BlockingQueue<String> results, Semaphore inFlight) throws InterruptedException {
+        try (BufferedReader urls = Files.newBufferedReader(job.urlsFile(), StandardCharsets.UTF_8)) {
+            String line;
+            while (!job.cancelled && (line = urls.readLine()) != null) {
+                String url = line.trim();
+                if (url.isEmpty()) {
+                    continue;
+                }
+                inFlight.acquire();
+                workers.execute(() -> {
+                    try {
+                        results.put(categorize(job, url));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            return null;
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to read the URLs of bulk job {}", job.id, e);
+            return "Failed to read URLs: " + e.getMessage();
+        }
+    }
+
+    private String categorize(BulkJob job, String url) {
+        BulkJobResultDTO result;
+        try {
+            UrlCategorizationResultDTO categorization = urlCategorizationService.categorizeUrl(url, job.categories, job.strategy);
+            if (categorization.getStatus() == FetchStatus.OK) {
+                result = BulkJobResultDTO.builder()
+                        .url(url)
+                        .status(BatchItemStatus.COMPLETED)
+                        .categories(categorization.getCategories())
+                        .build();
+            } else {
+                job.failedUrls.incrementAndGet();
+                result = BulkJobResultDTO.builder()
+                        .url(url)
+                        .status(BatchItemStatus.FAILED)
+                        .error(categorization.getStatus() + ": " + categorization.getError())
+                        .build();
+            }
+        } catch (RuntimeException e) {
+            job.failedUrls.incrementAndGet();
+            result = BulkJobResultDTO.builder()
+                    .url(url)
+                    .status(BatchItemStatus.FAILED)
+                    .error(String.valueOf(e.getMessage()))
+                    .build();
+        }
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize a bulk job result", e);
+        }
+    }
+
+    /**
+     * Appends the results to the result file in batches, until the end marker.
+     */
+    private void writeResults(BulkJob job, BlockingQueue<String> results) {
+        List<String> batch = new ArrayList<>();
+        try (BufferedWriter out = Files.newBufferedWriter(job.resultsFile(), StandardCharsets.UTF_8)) {
+            while (true) {
+                batch.add(results.take());
+                results.drainTo(batch, resultQueueCapacity);
+                boolean end = false;
+                int written = 0;
+                for (String result : batch) {
+                    if (result.isEmpty()) {
+                        end = true;
+                        break;
+                    }
+                    out.write(result);
+                    out.write('\n');
+                    written++;
+                }
+                out.flush();
+                job.processedUrls.addAndGet(written);
+                job.signalResults();
+                if (end) {
+                    return;
+                }
+                batch.clear();
+            }
+        } catch (IOException e) {
+            log.error("Failed to write the results of bulk job {}", job.id, e);
+            job.error = "Failed to write results: " + e.getMessage();
+            job.cancelled = true;
+            // Keep draining, so that the workers are not blocked forever
+            drainUntilEnd(results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void drainUntilEnd(BlockingQueue<String> results) {
+        try {
+            while (!results.take().isEmpty()) {
+                // Discard
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void removeExpiredJobs() {
+        Instant expiry = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (!job.isFinished() || job.finishedAt.isAfter(expiry)) {
+                return false;
+            }
+            try {
+                FileSystemUtils.deleteRecursively(job.directory);
+            } catch (IOException e) {
+                log.warn("Failed to delete the files of bulk job {}: {}", job.id, e.getMessage());
+            }
+            return true;
+        });
+    }
+
+    private static long countUrls(Path urlsFile) throws IOException {
+        try (BufferedReader urls = Files.newBufferedReader(urlsFile, StandardCharsets.UTF_8)) {
+            return urls.lines().filter(line -> !line.isBlank()).count();
+        }
+    }
+
+    private static int lastLineEnd(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadIds = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The state of a single job. Counters are updated by the job's threads and read by the pollers.
+     */
+    private static final class BulkJob {
+        private final String id;
+        private final Path directory;
+        private final MatchingStrategy strategy;
+        private final Set<Category> categories;
+        private final Instant createdAt = Instant.now();
+        private final AtomicLong processedUrls = new AtomicLong();
+        private final AtomicLong failedUrls = new AtomicLong();
+        private final Object resultsMonitor = new Object();
+        private volatile long totalUrls;
+        private volatile boolean cancelled;
+        private volatile BulkJobState state = BulkJobState.RUNNING;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        private BulkJob(String id, Path jobsDirectory, MatchingStrategy strategy, Set<Category> categories) {
+            this.id = id;
+            this.directory = jobsDirectory.resolve(id);
+            this.strategy = strategy;
+            this.categories = categories;
+        }
+
+        private Path urlsFile() {
+            return directory.resolve("urls.txt");
+        }
+
+        private Path resultsFile() {
+            return directory.resolve("results.ndjson");
+        }
+
+        private boolean isFinished() {
+            return state != BulkJobState.RUNNING;
+        }
+
+        private void finish(BulkJobState finalState, String finalError) {
+            error = finalError;
+            finishedAt = Instant.now();
+            state = finalState;
+            signalResults();
+        }
+
+        private void signalResults() {
+            synchronized (resultsMonitor) {
+                resultsMonitor.notifyAll();
+            }
+        }
+
+        private void awaitResults(long timeoutMillis) throws InterruptedException {
+            synchronized (resultsMonitor) {
+                resultsMonitor.wait(timeoutMillis);
+            }
+        }
+
+        private BulkJobDTO toDto() {
+            return BulkJobDTO.builder()
+                    .id(id)
+                    .state(state)
+                    .strategy(strategy)
+                    .totalUrls(totalUrls)
+                    .processedUrls(processedUrls.get())
+                    .failedUrls(failedUrls.get())
+                    .createdAt(createdAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.urlcategorizer.service;
+
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.matcher.CategoryModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This service holds the compiled category model of the predefined categories.
+ * A new model is compiled only when the predefined categories change, and is then shared by all requests.
+ */
+@Service
+@Slf4j
+public class CategoryModelRegistry {
+
+    private final AtomicLong versions = new AtomicLong();
+    private volatile CategoryModel currentModel = CategoryModel.compile(0, Set.of());
+    private volatile CategoryModel previousModel;
+    private volatile CategoryModel lastAdHocModel;
+
+    /**
+     * Compiles the given categories into a new model version and makes it the current one.
+     *
+     * @param categories The new predefined categories.
+     * @return The newly published model.
+     */
+    public CategoryModel publish(Set<Category> categories) {
+        long start = System.nanoTime();
+        CategoryModel model = CategoryModel.compile(versions.incrementAndGet(), categories);
+        previousModel = currentModel;
+        currentModel = model;
+        log.info("Published category model version {} with {} categories in {} ms",
+                model.getVersion(), categories.size(), (System.nanoTime() - start) / 1_000_000);
+        return model;
+    }
+
+    public CategoryModel getCurrentModel() {
+        return currentModel;
+    }
+
+    /**
+     * Returns the compiled model for the given categories.
+     * The current model, or a cached sub-model of it, is returned whenever the categories belong to it.
+     * Categories read just before a new model was published still resolve against the previous model.
+     * Other categories are compiled on demand, and the last such model is kept for the next call.
+     *
+     * @param categories The categories to match against.
+     * @return The compiled model.
+     */
+    public CategoryModel getModel(Set<Category> categories) {
+        CategoryModel subModel = currentModel.subModel(categories);
+        if (subModel != null) {
+            return subModel;
+        }
+        CategoryModel previous = previousModel;
+        subModel = previous == null ? null : previous.subModel(categories);
+        if (subModel != null) {
+            return subModel;
+        }
+
+        CategoryModel adHocModel = lastAdHocModel;
+        if (adHocModel == null || !adHocModel.getCategories().equals(categories)) {
+            log.debug("Compiling a category model for {} categories outside of the predefined model", categories.size());
+            adHocModel = CategoryModel.compile(-1, categories);
+            lastAdHocModel = adHocModel;
+        }
+        return adHocModel;
+    }
+}
@@ -2,19 +2,71 @@ package com.urlcategorizer.service;
 
 import com.urlcategorizer.entity.Category;
 import com.urlcategorizer.entity.CategoryKeyword;
+import com.urlcategorizer.repository.CategoryRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
  * This service is responsible for managing the predefined categories and their associated keywords.
+ * <p>
+ * The categories are persisted by the {@link CategoryRepository}. After every change, made through this service or
+ * directly in the category directory, the category model is recompiled on a background thread and then published
+ * by the {@link CategoryModelRegistry} in a single swap: requests keep using the previous model until the new one
+ * is complete. Changes arriving within the rebuild delay are compiled together.
  */
 @Service
 @Slf4j
 public class CategoryService {
 
+    private final CategoryRepository categoryRepository;
+    private final CategoryModelRegistry categoryModelRegistry;
+    private final Duration rebuildDelay;
+    private final ScheduledExecutorService rebuilder;
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+
+    public CategoryService(CategoryRepository categoryRepository,
+                           CategoryModelRegistry categoryModelRegistry,
+                           @Value("${url-categorization.categories.rebuild-delay:500ms}") Duration rebuildDelay) {
+        this.categoryRepository = categoryRepository;
+        this.categoryModelRegistry = categoryModelRegistry;
+        this.rebuildDelay = rebuildDelay;
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "category-model-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        categoryRepository.reload();
+        rebuildModel();
+        categoryRepository.watch(() -> {
+            reloadPending.set(true);
+            scheduleRebuild();
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
     /**
      * Create a Category instance
      * @param name
@@ -33,4 +85,79 @@ public class CategoryService {
                 .keywords(categoryKeywords)
                 .build();
     }
+
+    /**
+     * @return The stored categories, sorted by name.
+     */
+    public List<Category> getCategories() {
+        return categoryRepository.findAll().stream()
+                .sorted(Comparator.comparing(Category::getName))
+                .collect(Collectors.toList());
+    }
+
+    public Optional<Category> getCategory(String name) {
+        return categoryRepository.findByName(name);
+    }
+
+    /**
+     * Creates or replaces a category, and schedules the recompilation of the category model.
+     *
+     * @param name
+     * @param keywords
+     * @return The stored category.
+     */
+    public Category saveCategory(String name, Set<String> keywords) {
+        return saveCategory(createCategory(name, keywords));
+    }
+
+    /**
+     * Creates or replaces a category, and schedules the recompilation of the category model.
+     *
+     * @param category
+     * @return The stored category.
+     */
+    public Category saveCategory(Category category) {
+        categoryRepository.save(category);
+        scheduleRebuild();
+        return category;
+    }
+
+    /**
+     * Deletes a category, and schedules the recompilation of the category model.
+     *
+     * @param name
+     * @return {@code true} if the category existed.
+     */
+    public boolean deleteCategory(String name) {
+        boolean deleted = categoryRepository.delete(name);
+        if (deleted) {
+            scheduleRebuild();
+        }
+        return deleted;
+    }
+
+    /**
+     * Compiles the stored categories into a new model and publishes it, on the calling thread.
+     */
+    public void rebuildModel() {
+        categoryModelRegistry.publish(Set.copyOf(categoryRepository.findAll()));
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuilder.schedule(this::rebuildInBackground, rebuildDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rebuildInBackground() {
+        rebuildPending.set(false);
+        try {
+            if (reloadPending.getAndSet(false)) {
+                categoryRepository.reload();
+            }
+            rebuildModel();
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild the category model, the previous model stays in use", e);
+        }
+    }
 }
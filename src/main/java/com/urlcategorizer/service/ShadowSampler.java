@@ -0,0 +1,65 @@
+package com.urlcategorizer.service;
+
+import com.urlcategorizer.matcher.MatchingStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the requests on which a shadow matching strategy runs next to the strategy which serves the request, and
+ * runs the shadow matches.
+ * <p>
+ * The shadow strategy matches the text the request already fetched, so a new matching engine can be tried on live
+ * traffic without any extra fetch; only its agreement with the serving strategy and its matching time are recorded.
+ * Shadow matches run on a single thread of their own with a bounded queue; when it is full, they are dropped rather
+ * than competing with the requests for CPU.
+ */
+@Component
+public class ShadowSampler {
+
+    private final MatchingStrategy strategy;
+    private final double sampleRate;
+    private final ThreadPoolExecutor executor;
+
+    public ShadowSampler(@Value("${url-categorization.shadow.strategy:#{null}}") MatchingStrategy strategy,
+                         @Value("${url-categorization.shadow.sample-rate:0.01}") double sampleRate,
+                         @Value("${url-categorization.shadow.max-queued:64}") int maxQueued) {
+        this.strategy = strategy;
+        this.sampleRate = sampleRate;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueued),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shadow-match");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param primary The strategy serving the request.
+     * @return The strategy to run in the shadow of the primary one on this request, or {@code null} if the request
+     * is not sampled, or the shadow strategy is not configured or is the primary one.
+     */
+    public MatchingStrategy sample(MatchingStrategy primary) {
+        if (strategy == null || strategy == primary) {
+            return null;
+        }
+        return ThreadLocalRandom.current().nextDouble() < sampleRate ? strategy : null;
+    }
+
+    /**
+     * Runs a shadow match off the request path, or drops it if too many are already waiting.
+     */
+    public void execute(Runnable shadowMatch) {
+        executor.execute(shadowMatch);
+    }
+}
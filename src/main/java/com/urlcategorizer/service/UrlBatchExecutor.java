@@ -0,0 +1,207 @@
+package com.urlcategorizer.service;
+
+import com.urlcategorizer.content.UrlNormalizer;
+import com.urlcategorizer.dto.BatchItemStatus;
+import com.urlcategorizer.metrics.CategorizationMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs a task for every URL of a batch in parallel, on a dedicated pool.
+ * <p>
+ * The pool size caps the number of URLs in flight across all batches, and a per-host semaphore caps the number of
+ * concurrent requests to a single host. The semaphore of a host only exists while lanes work on it, so batches
+ * over ever new hosts do not accumulate them. Every batch has a deadline: URLs which are not done by then are
+ * reported as timed out, and the results of the other URLs are returned anyway.
+ */
+@Component
+@Slf4j
+public class UrlBatchExecutor {
+
+    private final ExecutorService pool;
+    private final int maxPerHost;
+    private final Duration deadline;
+    private final Map<String, HostPermits> hostPermits = new ConcurrentHashMap<>();
+
+    public UrlBatchExecutor(@Value("${url-categorization.batch.max-in-flight:64}") int maxInFlight,
+                            @Value("${url-categorization.batch.max-per-host:4}") int maxPerHost,
+                            @Value("${url-categorization.batch.deadline:30s}") Duration deadline) {
+        AtomicInteger threadIds = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "url-batch-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxPerHost = maxPerHost;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Runs the task for every distinct URL and waits for the results until the batch deadline.
+     *
+     * @param urls The URLs of the batch.
+     * @param task The task to run for each URL.
+     * @return One outcome per distinct URL, in the order of the given URLs.
+     */
+    public <T> List<Outcome<T>> execute(Collection<String> urls, Function<String, T> task) {
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        // Group the URLs by host, so that at most maxPerHost lanes of the batch work on the same host
+        Map<String, CompletableFuture<T>> results = new LinkedHashMap<>();
+        Map<String, Queue<String>> urlsByHost = new LinkedHashMap<>();
+        for (String url : new LinkedHashSet<>(urls)) {
+            results.put(url, new CompletableFuture<>());
+            urlsByHost.computeIfAbsent(UrlNormalizer.host(url), host -> new ConcurrentLinkedQueue<>()).add(url);
+        }
+
+        // The lanes run on behalf of the current request, and may outlive it, so only its endpoint is handed over
+        String endpoint = CategorizationMetrics.currentEndpoint();
+        List<Future<?>> lanes = new ArrayList<>();
+        urlsByHost.forEach((host, hostUrls) -> {
+            int laneCount = Math.min(maxPerHost, hostUrls.size());
+            for (int i = 0; i < laneCount; i++) {
+                lanes.add(pool.submit(() -> CategorizationMetrics.runWithEndpoint(endpoint,
+                        () -> runLane(host, hostUrls, results, task, deadlineNanos))));
+            }
+        });
+
+        List<Outcome<T>> outcomes = new ArrayList<>(results.size());
+        results.forEach((url, result) -> outcomes.add(awaitOutcome(url, result, deadlineNanos)));
+        lanes.forEach(lane -> lane.cancel(true));
+        return outcomes;
+    }
+
+    private <T> void runLane(String host, Queue<String> hostUrls, Map<String, CompletableFuture<T>> results,
+                             Function<String, T> task, long deadlineNanos) {
+        Semaphore permits = joinHost(host);
+        try {
+            runLane(permits, hostUrls, results, task, deadlineNanos);
+        } finally {
+            leaveHost(host);
+        }
+    }
+
+    private <T> void runLane(Semaphore permits, Queue<String> hostUrls, Map<String, CompletableFuture<T>> results,
+                             Function<String, T> task, long deadlineNanos) {
+        String url;
+        while ((url = hostUrls.poll()) != null) {
+            try {
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0 || !permits.tryAcquire(remainingNanos, TimeUnit.NANOSECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            CompletableFuture<T> result = results.get(url);
+            try {
+                result.complete(task.apply(url));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Registers a lane working on the host, creating the semaphore of the host for the first one.
+     */
+    private Semaphore joinHost(String host) {
+        return hostPermits.compute(host, (key, permits) -> {
+            HostPermits joined = permits != null ? permits : new HostPermits(maxPerHost);
+            joined.lanes++;
+            return joined;
+        }).semaphore;
+    }
+
+    /**
+     * Unregisters a lane, which released its permits already; the semaphore of the host is dropped with the last
+     * lane, when all of its permits are free.
+     */
+    private void leaveHost(String host) {
+        hostPermits.computeIfPresent(host, (key, permits) -> --permits.lanes == 0 ? null : permits);
+    }
+
+    private <T> Outcome<T> awaitOutcome(String url, CompletableFuture<T> result, long deadlineNanos) {
+        try {
+            long remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+            return new Outcome<>(url, BatchItemStatus.COMPLETED, result.get(remainingNanos, TimeUnit.NANOSECONDS), null, null);
+        } catch (TimeoutException e) {
+            return new Outcome<>(url, BatchItemStatus.TIMED_OUT, null, "Batch deadline exceeded", null);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                // I/O failures are expected, and reported by the task itself
+                cause = cause.getCause();
+            } else {
+                log.error("Failed to process URL in batch: {}", url, cause);
+            }
+            return new Outcome<>(url, BatchItemStatus.FAILED, null, String.valueOf(cause.getMessage()), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Outcome<>(url, BatchItemStatus.TIMED_OUT, null, "Batch interrupted", null);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The semaphore of a host and the number of lanes using it; the count is only changed within the atomic
+     * updates of the map.
+     */
+    private static final class HostPermits {
+        private final Semaphore semaphore;
+        private int lanes;
+
+        private HostPermits(int maxPerHost) {
+            this.semaphore = new Semaphore(maxPerHost);
+        }
+    }
+
+    /**
+     * The outcome of the task for a single URL of a batch.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static class Outcome<T> {
+        private final String url;
+        private final BatchItemStatus status;
+        private final T value;
+        private final String error;
+        /**
+         * The exception of a FAILED task, or {@code null}.
+         */
+        private final Throwable failure;
+    }
+}
@@ -1,15 +1,35 @@
 package com.urlcategorizer.service;
 
+import com.urlcategorizer.content.ContentFingerprint;
+import com.urlcategorizer.content.ContentFingerprints;
+import com.urlcategorizer.dto.BatchItemStatus;
+import com.urlcategorizer.dto.CategorizationMode;
+import com.urlcategorizer.dto.CategorizationTier;
+import com.urlcategorizer.dto.CategoryScoreDTO;
+import com.urlcategorizer.dto.FetchStatus;
+import com.urlcategorizer.dto.ScoreThresholds;
+import com.urlcategorizer.dto.StrategyEvaluationDTO;
+import com.urlcategorizer.dto.StrategyResultDTO;
+import com.urlcategorizer.dto.UrlBatchResultDTO;
 import com.urlcategorizer.dto.UrlCategorizationResultDTO;
+import com.urlcategorizer.dto.UrlCategorizationScoredResultDTO;
+import com.urlcategorizer.dto.UrlContentResultDTO;
+import com.urlcategorizer.entity.CategorizationRecord;
 import com.urlcategorizer.entity.Category;
-import com.urlcategorizer.entity.CategoryKeyword;
+import com.urlcategorizer.matcher.AhoCorasickAutomaton;
+import com.urlcategorizer.matcher.MatchingStrategy;
+import com.urlcategorizer.matcher.TokenMatcher;
+import com.urlcategorizer.metrics.CategorizationMetrics;
+import com.urlcategorizer.repository.CategorizationResultRepository;
+import com.urlcategorizer.repository.ContentFingerprintRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -20,8 +40,13 @@ import java.util.stream.Collectors;
 @Slf4j
 @RequiredArgsConstructor
 public class UrlCategorizationService {
-    private static final String WORD_SPLIT_REGEX = "\\W+";
     private final UrlContentService urlContentService;
+    private final CategoryModelRegistry categoryModelRegistry;
+    private final UrlBatchExecutor urlBatchExecutor;
+    private final CategorizationMetrics categorizationMetrics;
+    private final CategorizationResultRepository categorizationResultRepository;
+    private final ShadowSampler shadowSampler;
+    private final ContentFingerprintRepository contentFingerprintRepository;
 
     /**
      * Method which responsible for classifying URL for matching categories.
@@ -31,103 +56,527 @@ public class UrlCategorizationService {
      * @return
      */
     public UrlCategorizationResultDTO categorizeUrl(String url, Set<Category> categories) {
-        String pageContent = urlContentService.retrieveTextFromUrl(url).getText();
-        Set<String> matchingCategories = findMatchingCategories(pageContent, categories);
+        return categorizeUrl(url, categories, MatchingStrategy.SIMPLE);
+    }
+
+    public UrlCategorizationResultDTO categorizeUrlV2(String url, Set<Category> categories) {
+        return categorizeUrl(url, categories, MatchingStrategy.REGEX);
+    }
+
+    /**
+     * Classifies a URL for matching categories using the given matching strategy.
+     * A result stored for the same page, strategy and categories is returned without fetching the page again
+     * (see {@link CategorizationResultRepository}).
+     *
+     * @param url
+     * @param categories
+     * @param strategy
+     * @return
+     */
+    public UrlCategorizationResultDTO categorizeUrl(String url, Set<Category> categories, MatchingStrategy strategy) {
+        return categorizeUrl(url, categories, strategy, CategorizationMode.FULL);
+    }
+
+    /**
+     * Classifies a URL for matching categories using the given matching strategy, from the part of the page selected
+     * by the mode (see {@link CategorizationMode}). The result tells whether the content was truncated, and which
+     * tier of the page decided it.
+     *
+     * @param url
+     * @param categories
+     * @param strategy
+     * @param mode
+     * @return
+     */
+    public UrlCategorizationResultDTO categorizeUrl(String url, Set<Category> categories, MatchingStrategy strategy,
+                                                    CategorizationMode mode) {
+        if (mode == CategorizationMode.TIERED) {
+            return categorizeUrlAsync(url, categories, strategy, mode).join();
+        }
+        String key = resultKey(url, categories, strategy, mode);
+        Optional<CategorizationRecord> stored = categorizationResultRepository.find(key);
+        if (stored.isPresent()) {
+            return storedResult(url, stored.get());
+        }
+        UrlContentResultDTO content = retrieveText(url, mode).join();
+        return categorize(url, content, categories, strategy, key, tier(mode));
+    }
+
+    /**
+     * Classifies a URL for matching categories using the given matching strategy, without blocking the caller
+     * while the page is fetched. A stored result is returned as an already completed future.
+     *
+     * @param url
+     * @param categories
+     * @param strategy
+     * @return
+     */
+    public CompletableFuture<UrlCategorizationResultDTO> categorizeUrlAsync(String url, Set<Category> categories, MatchingStrategy strategy) {
+        return categorizeUrlAsync(url, categories, strategy, CategorizationMode.FULL);
+    }
+
+    /**
+     * Classifies a URL for matching categories using the given matching strategy, from the part of the page selected
+     * by the mode, without blocking the caller while the page is fetched. The text is matched where its retrieval
+     * completes, on the processing pool of {@link UrlContentService} rather than on a fetcher thread.
+     *
+     * @param url
+     * @param categories
+     * @param strategy
+     * @param mode
+     * @return
+     */
+    public CompletableFuture<UrlCategorizationResultDTO> categorizeUrlAsync(String url, Set<Category> categories,
+                                                                            MatchingStrategy strategy, CategorizationMode mode) {
+        String key = resultKey(url, categories, strategy, mode);
+        Optional<CategorizationRecord> stored = categorizationResultRepository.find(key);
+        if (stored.isPresent()) {
+            return CompletableFuture.completedFuture(storedResult(url, stored.get()));
+        }
+        if (mode == CategorizationMode.TIERED) {
+            return categorizeTiered(url, categories, strategy, key);
+        }
+        String endpoint = CategorizationMetrics.currentEndpoint();
+        return retrieveText(url, mode).thenApply(content -> CategorizationMetrics.callWithEndpoint(endpoint,
+                () -> categorize(url, content, categories, strategy, key, tier(mode))));
+    }
+
+    /**
+     * Matches the head of the page first, and fetches the whole page only if the head does not decide the result.
+     * The head decides when it matched at least one category, or when it held the whole page. Otherwise the
+     * categories of the head and of the body are reported together, since the title and the meta tags are not part
+     * of the body text.
+     */
+    private CompletableFuture<UrlCategorizationResultDTO> categorizeTiered(String url, Set<Category> categories,
+                                                                           MatchingStrategy strategy, String key) {
+        // Both tiers complete on the processing pool, so the request's endpoint is handed over to them
+        String endpoint = CategorizationMetrics.currentEndpoint();
+        return urlContentService.retrieveHeadOnlyTextFromUrlAsync(url).thenCompose(head ->
+                CategorizationMetrics.callWithEndpoint(endpoint, () -> {
+                    Set<String> headCategories = head.isFailed()
+                            ? Set.of()
+                            : match(head.getText(), categories, strategy);
+                    if (!head.isFailed() && (!headCategories.isEmpty() || !head.isTruncated())) {
+                        return CompletableFuture.completedFuture(
+                                result(url, head, headCategories, key, CategorizationTier.HEAD));
+                    }
+                    return urlContentService.retrieveTextFromUrlAsync(url).thenApply(body ->
+                            CategorizationMetrics.callWithEndpoint(endpoint, () -> {
+                                Set<String> matchingCategories = new HashSet<>(headCategories);
+                                if (!body.isFailed()) {
+                                    matchingCategories.addAll(match(body.getText(), categories, strategy));
+                                }
+                                return result(url, body, matchingCategories, key, CategorizationTier.BODY);
+                            }));
+                }));
+    }
+
+    private CompletableFuture<UrlContentResultDTO> retrieveText(String url, CategorizationMode mode) {
+        return mode == CategorizationMode.HEAD_ONLY
+                ? urlContentService.retrieveHeadOnlyTextFromUrlAsync(url)
+                : urlContentService.retrieveTextFromUrlAsync(url);
+    }
+
+    private static CategorizationTier tier(CategorizationMode mode) {
+        return mode == CategorizationMode.HEAD_ONLY ? CategorizationTier.HEAD : CategorizationTier.BODY;
+    }
+
+    /**
+     * Fetches and extracts the page once, and matches the same text with every given strategy, timing each of them.
+     * The categories of every strategy are compared with those of the first one, the baseline. Nothing is stored,
+     * and stored results are not used, so that every strategy really runs.
+     *
+     * @param url
+     * @param categories
+     * @param strategies
+     * @return
+     */
+    public StrategyEvaluationDTO evaluateUrl(String url, Set<Category> categories, List<MatchingStrategy> strategies) {
+        UrlContentResultDTO content = urlContentService.retrieveTextFromUrl(url);
+        MatchingStrategy baseline = strategies.get(0);
+        if (content.isFailed()) {
+            return StrategyEvaluationDTO.builder()
+                    .url(url)
+                    .baseline(baseline)
+                    .agreement(true)
+                    .strategies(List.of())
+                    .status(content.getStatus())
+                    .error(content.getError())
+                    .build();
+        }
+        Set<String> baselineCategories = null;
+        boolean agreement = true;
+        List<StrategyResultDTO> results = new ArrayList<>();
+        for (MatchingStrategy strategy : strategies) {
+            long start = System.nanoTime();
+            Set<String> matchingCategories = findMatchingCategories(content.getText(), categories, strategy);
+            long nanos = System.nanoTime() - start;
+            categorizationMetrics.recordStage(CategorizationMetrics.STAGE_MATCH, strategy.name(), nanos, "success");
+            if (baselineCategories == null) {
+                baselineCategories = matchingCategories;
+            }
+            agreement &= matchingCategories.equals(baselineCategories);
+            results.add(StrategyResultDTO.builder()
+                    .strategy(strategy)
+                    .categories(matchingCategories)
+                    .matchMicros(nanos / 1000)
+                    .missing(difference(baselineCategories, matchingCategories))
+                    .extra(difference(matchingCategories, baselineCategories))
+                    .build());
+        }
+        return StrategyEvaluationDTO.builder()
+                .url(url)
+                .baseline(baseline)
+                .agreement(agreement)
+                .strategies(results)
+                .truncated(content.isTruncated())
+                .status(FetchStatus.OK)
+                .build();
+    }
+
+    private static Set<String> difference(Set<String> categories, Set<String> excluded) {
+        Set<String> difference = new TreeSet<>(categories);
+        difference.removeAll(excluded);
+        return difference;
+    }
+
+    /**
+     * Classifies a URL with a score per category, and drops the categories below the thresholds.
+     * Categories are matched as whole words (see {@link MatchingStrategy#TOKENIZED}), and the scores are computed
+     * in the same pass over the content.
+     *
+     * @param url
+     * @param categories
+     * @param thresholds
+     * @return
+     */
+    public UrlCategorizationScoredResultDTO categorizeUrlScored(String url, Set<Category> categories, ScoreThresholds thresholds) {
+        UrlContentResultDTO content = urlContentService.retrieveTextFromUrl(url);
+        if (content.isFailed()) {
+            return UrlCategorizationScoredResultDTO.builder()
+                    .url(url)
+                    .categories(List.of())
+                    .status(content.getStatus())
+                    .error(content.getError())
+                    .build();
+        }
+        long start = System.nanoTime();
+        TokenMatcher.Session session = categoryModelRegistry.getModel(categories).scoreCategories(content.getText());
+        List<CategoryScoreDTO> scores = session.scores().stream()
+                .filter(score -> score.getHits() >= thresholds.getMinHits()
+                        && score.getDistinctKeywords() >= thresholds.getMinDistinctKeywords()
+                        && score.getDensity() >= thresholds.getMinDensity())
+                .map(score -> CategoryScoreDTO.builder()
+                        .category(score.getCategoryName())
+                        .hits(score.getHits())
+                        .distinctKeywords(score.getDistinctKeywords())
+                        .density(score.getDensity())
+                        .build())
+                .collect(Collectors.toList());
+        categorizationMetrics.recordStage(CategorizationMetrics.STAGE_MATCH, CategorizationMetrics.STRATEGY_SCORED,
+                System.nanoTime() - start, "success");
+        categorizationMetrics.recordMatches(CategorizationMetrics.STRATEGY_SCORED, scores.size(), session.getHitCount());
+        return UrlCategorizationScoredResultDTO.builder()
+                .url(url)
+                .tokenCount(session.getTokenCount())
+                .categories(scores)
+                .truncated(content.isTruncated())
+                .status(FetchStatus.OK)
+                .build();
+    }
+
+    private UrlCategorizationResultDTO categorize(String url, UrlContentResultDTO content, Set<Category> categories,
+                                                  MatchingStrategy strategy, String key, CategorizationTier tier) {
+        Set<String> matchingCategories = content.isFailed() ? Set.of() : match(content.getText(), categories, strategy);
+        return result(url, content, matchingCategories, key, tier);
+    }
+
+    /**
+     * Matches a page text, or reuses the categories matched earlier in the same or a nearly identical text with the
+     * same strategy and categories (see {@link ContentFingerprintRepository}).
+     */
+    private Set<String> match(String pageContent, Set<Category> categories, MatchingStrategy strategy) {
+        if (!contentFingerprintRepository.isEnabled()) {
+            return matchText(pageContent, categories, strategy);
+        }
+        ContentFingerprint fingerprint = ContentFingerprints.fingerprint(pageContent);
+        String scope = strategy.name() + ' ' + categoryModelRegistry.getModel(categories).getFingerprint();
+        Optional<Set<String>> duplicate = contentFingerprintRepository.find(scope, fingerprint);
+        if (duplicate.isPresent()) {
+            return new HashSet<>(duplicate.get());
+        }
+        Set<String> matchingCategories = matchText(pageContent, categories, strategy);
+        contentFingerprintRepository.save(scope, fingerprint, matchingCategories);
+        return matchingCategories;
+    }
+
+    private Set<String> matchText(String pageContent, Set<Category> categories, MatchingStrategy strategy) {
+        long start = System.nanoTime();
+        Set<String> matchingCategories = findMatchingCategories(pageContent, categories, strategy);
+        categorizationMetrics.recordStage(CategorizationMetrics.STAGE_MATCH, strategy.name(), System.nanoTime() - start, "success");
+        categorizationMetrics.recordMatches(strategy.name(), matchingCategories.size(), -1);
+        MatchingStrategy shadow = shadowSampler.sample(strategy);
+        if (shadow != null) {
+            String endpoint = CategorizationMetrics.currentEndpoint();
+            shadowSampler.execute(() -> CategorizationMetrics.runWithEndpoint(endpoint,
+                    () -> matchShadow(pageContent, categories, strategy, matchingCategories, shadow)));
+        }
+        return matchingCategories;
+    }
+
+    /**
+     * Matches the text of a sampled request with the shadow strategy, off the request path, and records whether it
+     * agrees with the strategy which served the request.
+     */
+    private void matchShadow(String pageContent, Set<Category> categories, MatchingStrategy primary,
+                             Set<String> primaryCategories, MatchingStrategy shadow) {
+        try {
+            long start = System.nanoTime();
+            Set<String> shadowCategories = findMatchingCategories(pageContent, categories, shadow);
+            categorizationMetrics.recordStage(CategorizationMetrics.STAGE_MATCH, shadow.name(), System.nanoTime() - start, "shadow");
+            boolean agreed = shadowCategories.equals(primaryCategories);
+            categorizationMetrics.recordShadowComparison(primary.name(), shadow.name(), agreed);
+            if (!agreed) {
+                log.debug("Shadow strategy {} disagrees with {}: missing {}, extra {}", shadow, primary,
+                        difference(primaryCategories, shadowCategories), difference(shadowCategories, primaryCategories));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Shadow strategy {} failed", shadow, e);
+        }
+    }
+
+    /**
+     * Builds the result of a categorization, and stores it unless the content could not be retrieved. The status of a
+     * failed retrieval is reported in the result, with no categories.
+     */
+    private UrlCategorizationResultDTO result(String url, UrlContentResultDTO content, Set<String> matchingCategories,
+                                              String key, CategorizationTier tier) {
+        categorizationMetrics.recordDecision(tier.name());
+        if (!content.isFailed()) {
+            categorizationResultRepository.save(key, CategorizationRecord.builder()
+                    .categories(matchingCategories)
+                    .contentHash(ContentFingerprints.exactHash(content.getText()))
+                    .storedAt(System.currentTimeMillis())
+                    .truncated(content.isTruncated())
+                    .decidedBy(tier)
+                    .build());
+        }
         return UrlCategorizationResultDTO.builder()
                 .url(url)
                 .categories(matchingCategories)  // Set of matching categories
+                .truncated(content.isTruncated())
+                .decidedBy(tier)
+                .status(content.getStatus())
+                .error(content.getError())
                 .build();
     }
 
-    public UrlCategorizationResultDTO categorizeUrlV2(String url, Set<Category> categories) {
-        String pageContent = urlContentService.retrieveTextFromUrl(url).getText();
-        Set<String> matchingCategories = findMatchingCategoriesWithRegex(pageContent, categories);
+    private String resultKey(String url, Set<Category> categories, MatchingStrategy strategy, CategorizationMode mode) {
+        String modelFingerprint = categoryModelRegistry.getModel(categories).getFingerprint();
+        return CategorizationResultRepository.key(url, strategy, mode, modelFingerprint);
+    }
+
+    private static UrlCategorizationResultDTO storedResult(String url, CategorizationRecord record) {
         return UrlCategorizationResultDTO.builder()
                 .url(url)
-                .categories(matchingCategories)  // Set of matching categories
+                .categories(new HashSet<>(record.getCategories()))
+                .truncated(record.isTruncated())
+                .decidedBy(record.getDecidedBy())
+                .status(FetchStatus.OK)
                 .build();
     }
 
-    public boolean hasCategories(String url, Set<Category> categories) {
-        return !categorizeUrl(url, categories).getCategories().isEmpty();
+    /**
+     * Classifies a URL for matching categories while its content is streamed, without building a DOM or holding the
+     * whole page text. The text chunks go straight into the keyword automaton, and reading the page stops as soon as
+     * every requested category has matched.
+     *
+     * @param url
+     * @param categories
+     * @return
+     */
+    public UrlCategorizationResultDTO categorizeUrlStreaming(String url, Set<Category> categories) {
+        AhoCorasickAutomaton.Session session = categoryModelRegistry.getModel(categories).newSession();
+        boolean truncated = false;
+        FetchStatus status = FetchStatus.OK;
+        String error = null;
+        try {
+            truncated = urlContentService.streamTextFromUrl(url, session::feed).isTruncated();
+        } catch (IOException e) {
+            log.warn("Failed to stream content from URL {}: {}", url, e.getMessage());
+            status = UrlContentService.failureStatus(e);
+            error = e.getMessage();
+        }
+        recordStreamingMatches(session);
+        return UrlCategorizationResultDTO.builder()
+                .url(url)
+                .categories(session.matchedCategoryNames())  // Set of matching categories
+                .truncated(truncated)
+                .decidedBy(CategorizationTier.BODY)
+                .status(status)
+                .error(error)
+                .build();
     }
 
-    public Map<String, Boolean> hasCategories(List<String> urls, Set<Category> categories) {
-        return urls.stream()
-                .collect(Collectors.toMap(
-                        url -> url,
-                        url -> hasCategories(url, categories)
-                ));
+    /**
+     * Finds matching categories with the given matching strategy.
+     *
+     * @param pageContent The content of the web page (text extracted from the URL).
+     * @param categories  The set of predefined categories, each containing multiple keywords.
+     * @param strategy    The matching engine to use.
+     * @return A set of category names that match any of the keywords or phrases in the page content.
+     */
+    public Set<String> findMatchingCategories(String pageContent, Set<Category> categories, MatchingStrategy strategy) {
+        switch (strategy) {
+            case REGEX:
+                return findMatchingCategoriesWithRegex(pageContent, categories);
+            case AHO_CORASICK:
+                return findMatchingCategoriesWithAhoCorasick(pageContent, categories);
+            case TOKENIZED:
+                return findMatchingCategoriesWithTokens(pageContent, categories);
+            case SIMPLE:
+            default:
+                return findMatchingCategories(pageContent, categories);
+        }
     }
 
     /**
-     * Finds matching categories based on keywords or phrases using regular expressions.
-     * <p>
-     * This method uses regular expressions to match multiple keywords or phrases within the page content.
-     * It first compiles a regex pattern for each category based on its keywords and then checks if any of these patterns
-     * match the content of the URL page.
+     * Finds matching categories with a single Aho-Corasick automaton compiled from the keywords of all categories.
      * <p>
-     * Time Complexity:
-     * - Compiling the regex pattern for each category: O(M * K), where:
-     * - M = number of categories
-     * - K = number of keywords per category
-     * - Matching the content against the regex pattern: O(N * P), where:
-     * - N = length of the page content (in terms of the number of characters)
-     * - P = number of regex patterns (one per category)
+     * The page content is scanned once, character by character, and the scan stops early when every
+     * category has been matched.
      * <p>
-     * The overall time complexity is therefore approximately O(M * K + N * P), where:
-     * - M is the number of categories
-     * - K is the number of keywords per category
-     * - N is the length of the page content
-     * - P is the number of categories (each having a compiled regex pattern)
+     * Time Complexity: O(N + Z), where:
+     * - N = length of the page content
+     * - Z = number of keyword occurrences found in the content
+     * The automaton itself is compiled once per version of the category model.
      *
      * @param pageContent The content of the web page (text extracted from the URL).
      * @param categories  The set of predefined categories, each containing multiple keywords.
      * @return A set of category names that match any of the keywords or phrases in the page content.
      */
-    public Set<String> findMatchingCategoriesWithRegex(String pageContent, Set<Category> categories) {
-        Set<String> matchingCategories = new HashSet<>();
+    public Set<String> findMatchingCategoriesWithAhoCorasick(String pageContent, Set<Category> categories) {
+        return categoryModelRegistry.getModel(categories).findMatchingCategoriesWithAutomaton(pageContent);
+    }
 
-        // Compile regex patterns for each category based on its keywords
-        Map<String, Pattern> categoryPatterns = buildCategoryPatterns(categories);
+    /**
+     * Finds matching categories by whole words and phrases rather than substrings.
+     * <p>
+     * The page content is split into lowercased tokens in a single pass, without creating a String per token;
+     * single words are looked up in a hash table of the keyword tokens, and phrases are followed through an
+     * automaton over token ids. A keyword therefore matches only where it appears as complete words, whatever
+     * the punctuation and whitespace between them.
+     * <p>
+     * Time Complexity: O(N + Z), where:
+     * - N = length of the page content
+     * - Z = number of keyword occurrences found in the content
+     *
+     * @param pageContent The content of the web page (text extracted from the URL).
+     * @param categories  The set of predefined categories, each containing multiple keywords.
+     * @return A set of category names that match any of the keywords or phrases in the page content.
+     */
+    public Set<String> findMatchingCategoriesWithTokens(String pageContent, Set<Category> categories) {
+        return categoryModelRegistry.getModel(categories).findMatchingCategoriesWithTokens(pageContent);
+    }
 
-        // For each category, check if the page content matches any of the category's keywords/phrases
-        for (Map.Entry<String, Pattern> entry : categoryPatterns.entrySet()) {
-            Matcher matcher = entry.getValue().matcher(pageContent);
-            if (matcher.find()) {
-                matchingCategories.add(entry.getKey()); // Add category to matching categories
-            }
+    /**
+     * Checks whether a URL matches any of the categories.
+     * The page is streamed into the keyword automaton and both reading and matching stop at the first keyword hit,
+     * so the cost depends on the position of the first match rather than on the page size.
+     * A page which cannot be fetched is reported as not having categories.
+     *
+     * @param url
+     * @param categories
+     * @return
+     */
+    public boolean hasCategories(String url, Set<Category> categories) {
+        try {
+            return checkCategories(url, categories);
+        } catch (UncheckedIOException e) {
+            return false;
         }
-
-        return matchingCategories;
     }
 
     /**
-     * Builds a mapping of category names to their corresponding compiled regex patterns.
-     * Combines the category keywords into one regex pattern per category.
+     * Checks whether a URL matches any of the categories, like {@link #hasCategories(String, Set)}, but fails if the
+     * page cannot be fetched.
      *
-     * @param categories The set of predefined categories.
-     * @return A map where the key is the category name and the value is the compiled regex pattern.
+     * @throws UncheckedIOException if the page cannot be fetched; see {@link UrlContentService#failureStatus(Throwable)}
+     *                              for the kind of failure.
      */
-    private Map<String, Pattern> buildCategoryPatterns(Set<Category> categories) {
-        Map<String, Pattern> categoryPatterns = new HashMap<>();
-
-        categories.forEach(category -> {
-            StringBuilder regex = new StringBuilder();
+    private boolean checkCategories(String url, Set<Category> categories) {
+        AhoCorasickAutomaton.Session session = categoryModelRegistry.getModel(categories).newExistenceSession();
+        try {
+            urlContentService.streamTextFromUrl(url, session::feed);
+        } catch (IOException e) {
+            log.warn("Failed to stream content from URL {}: {}", url, e.getMessage());
+            throw new UncheckedIOException(e);
+        } finally {
+            recordStreamingMatches(session);
+        }
+        return session.hasMatch();
+    }
 
-            // Add each keyword/phrase to the regex pattern
-            for (CategoryKeyword keyword : category.getKeywords()) {
-                regex.append("(?i)").append(Pattern.quote(keyword.getKeyword())).append("|");
-            }
+    private void recordStreamingMatches(AhoCorasickAutomaton.Session session) {
+        categorizationMetrics.recordMatches(MatchingStrategy.AHO_CORASICK.name(), session.getMatchedCount(), session.getHitCount());
+    }
 
-            // Remove the last "|" from the regex pattern
-            if (regex.length() > 0) regex.setLength(regex.length() - 1);
+    /**
+     * Checks a batch of URLs for matching categories in parallel.
+     * URLs which failed or did not finish before the batch deadline are reported as not having categories;
+     * use {@link #hasCategoriesWithStatus(List, Set)} to tell them apart.
+     *
+     * @param urls
+     * @param categories
+     * @return
+     */
+    public Map<String, Boolean> hasCategories(List<String> urls, Set<Category> categories) {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        hasCategoriesWithStatus(urls, categories)
+                .forEach(result -> results.put(result.getUrl(), Boolean.TRUE.equals(result.getHasCategories())));
+        return results;
+    }
 
-            // Compile the pattern for the category
-            categoryPatterns.put(category.getName(), Pattern.compile(regex.toString()));
-        });
+    /**
+     * Checks a batch of URLs for matching categories in parallel, with bounded concurrency per host and overall,
+     * and reports the status of every URL. Results of the URLs that completed before the batch deadline are
+     * returned even if other URLs failed or timed out.
+     *
+     * @param urls
+     * @param categories
+     * @return
+     */
+    public List<UrlBatchResultDTO> hasCategoriesWithStatus(List<String> urls, Set<Category> categories) {
+        return urlBatchExecutor.execute(urls, url -> checkCategories(url, categories)).stream()
+                .map(outcome -> UrlBatchResultDTO.builder()
+                        .url(outcome.getUrl())
+                        .status(outcome.getStatus())
+                        .hasCategories(outcome.getStatus() == BatchItemStatus.COMPLETED ? outcome.getValue() : null)
+                        .fetchStatus(outcome.getFailure() == null ? null : UrlContentService.failureStatus(outcome.getFailure()))
+                        .error(outcome.getError())
+                        .build())
+                .collect(Collectors.toList());
+    }
 
-        return categoryPatterns;
+    /**
+     * Finds matching categories based on keywords or phrases using regular expressions.
+     * <p>
+     * This method uses one case-insensitive alternation pattern per category, combining all of the category's
+     * keywords or phrases, and checks if any of these patterns match the content of the URL page.
+     * The patterns are compiled once per version of the category model (see {@link CategoryModelRegistry}),
+     * on the first regex match, and reused by every later request.
+     * <p>
+     * Time Complexity:
+     * - Matching the content against the regex patterns: O(N * P), where:
+     * - N = length of the page content (in terms of the number of characters)
+     * - P = number of regex patterns (one per category)
+     *
+     * @param pageContent The content of the web page (text extracted from the URL).
+     * @param categories  The set of predefined categories, each containing multiple keywords.
+     * @return A set of category names that match any of the keywords or phrases in the page content.
+     */
+    public Set<String> findMatchingCategoriesWithRegex(String pageContent, Set<Category> categories) {
+        return categoryModelRegistry.getModel(categories).findMatchingCategoriesWithRegex(pageContent);
     }
 
     /**
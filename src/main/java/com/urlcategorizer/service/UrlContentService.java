@@ -1,28 +1,136 @@
 package com.urlcategorizer.service;
 
+import com.urlcategorizer.config.ContentLimitsConfiguration;
+import com.urlcategorizer.content.CachedContent;
+import com.urlcategorizer.content.ContentCache;
+import com.urlcategorizer.content.ContentLimits;
+import com.urlcategorizer.content.CountingInputStream;
+import com.urlcategorizer.content.FetchFailedException;
+import com.urlcategorizer.content.FetchedPage;
+import com.urlcategorizer.content.LimitedInputStream;
+import com.urlcategorizer.content.NegativeCache;
+import com.urlcategorizer.content.PageFetcher;
+import com.urlcategorizer.content.PageFutures;
+import com.urlcategorizer.content.SingleFlight;
+import com.urlcategorizer.content.StreamingHtmlTextExtractor;
+import com.urlcategorizer.content.UrlNormalizer;
+import com.urlcategorizer.dto.ContentCacheStatsDTO;
+import com.urlcategorizer.dto.FetchStatsDTO;
+import com.urlcategorizer.dto.FetchStatus;
 import com.urlcategorizer.dto.UrlContentResultDTO;
+import com.urlcategorizer.metrics.CategorizationMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This service is responsible for retrieving and processing the content of a URL.
  * It should handle fetching the HTML content of the page and cleaning it (e.g., removing HTML tags, extracting text).
+ * <p>
+ * Fetched pages are parsed on a dedicated processing pool sized by url-content.processing.threads (the number of
+ * processors by default), not on the thread which completed the fetch, which belongs to the fetcher and also
+ * delivers the bodies of the other fetches in flight. The futures returned here complete on that pool, so the work
+ * their callers chain on them, e.g. keyword matching, runs there as well.
  */
 @Service
 @Slf4j
 public class UrlContentService {
 
-    private static final String USER_AGENT =
-            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/58.0.3029.110 Safari/537.36";
-    private static final int TIMEOUT = 10000;
-    private final Map<String, UrlContentResultDTO> urlCache = new ConcurrentHashMap<>();
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final String HTML_CACHE_KEY_PREFIX = "html:";
+    private static final String TEXT_CACHE_KEY_PREFIX = "text:";
+    private static final String HEAD_ONLY_CACHE_KEY_PREFIX = "head:";
+    private static final String HEAD_META_SELECTOR = "meta[name=description], meta[name=keywords], "
+            + "meta[property=og:title], meta[property=og:description]";
+    private static final Pattern MAX_AGE_PATTERN = Pattern.compile("max-age=(\\d+)");
+
+    private final PageFetcher pageFetcher;
+    private final ContentCache contentCache;
+    private final NegativeCache negativeCache;
+    private final Duration cacheTtl;
+    private final SingleFlight<String, CachedContent> inFlightFetches = new SingleFlight<>();
+    private final Duration coalescedWaitTimeout;
+    private final long streamingMaxChars;
+    private final Duration streamingHeaderTimeout;
+    private final Duration streamingReadTimeout;
+    private final CategorizationMetrics categorizationMetrics;
+    private final ContentLimits htmlLimits;
+    private final ContentLimits textLimits;
+    private final ContentLimits headOnlyLimits;
+    private final ExecutorService processingPool;
+
+    public UrlContentService(PageFetcher pageFetcher,
+                             @Value("${url-content.cache.max-bytes:67108864}") long cacheMaxBytes,
+                             @Value("${url-content.cache.ttl:10m}") Duration cacheTtl,
+                             @Value("${url-content.coalescing.wait-timeout:15s}") Duration coalescedWaitTimeout,
+                             @Value("${url-content.streaming.max-chars:5000000}") long streamingMaxChars,
+                             @Value("${url-content.streaming.header-timeout:40s}") Duration streamingHeaderTimeout,
+                             @Value("${url-content.streaming.read-timeout:30s}") Duration streamingReadTimeout,
+                             @Value("${url-content.negative-cache.ttl:30s}") Duration negativeCacheTtl,
+                             @Value("${url-content.negative-cache.max-entries:100000}") int negativeCacheMaxEntries,
+                             @Value("${url-content.processing.threads:0}") int processingThreads,
+                             CategorizationMetrics categorizationMetrics,
+                             @Qualifier(ContentLimitsConfiguration.HTML) ContentLimits htmlLimits,
+                             @Qualifier(ContentLimitsConfiguration.TEXT) ContentLimits textLimits,
+                             @Qualifier(ContentLimitsConfiguration.HEAD_ONLY) ContentLimits headOnlyLimits) {
+        this.pageFetcher = pageFetcher;
+        this.contentCache = new ContentCache(cacheMaxBytes);
+        this.negativeCache = new NegativeCache(negativeCacheTtl.toMillis(), negativeCacheMaxEntries);
+        this.cacheTtl = cacheTtl;
+        this.coalescedWaitTimeout = coalescedWaitTimeout;
+        this.streamingMaxChars = streamingMaxChars;
+        this.streamingHeaderTimeout = streamingHeaderTimeout;
+        this.streamingReadTimeout = streamingReadTimeout;
+        this.categorizationMetrics = categorizationMetrics;
+        this.htmlLimits = htmlLimits;
+        this.textLimits = textLimits;
+        this.headOnlyLimits = headOnlyLimits;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.processingPool = Executors.newFixedThreadPool(
+                processingThreads > 0 ? processingThreads : Runtime.getRuntime().availableProcessors(), runnable -> {
+                    Thread thread = new Thread(runnable, "content-processing-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        categorizationMetrics.bindContentCache(contentCache);
+        categorizationMetrics.bindSingleFlight(inFlightFetches);
+        categorizationMetrics.bindNegativeCache(negativeCache);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        processingPool.shutdownNow();
+    }
 
     /**
      * Retrieves an HTML content from a given URL.
@@ -31,19 +139,27 @@ public class UrlContentService {
      * @return A DTO containing the URL and an HTML content.
      */
     public UrlContentResultDTO retrieveHtmlFromUrl(String url) {
-        try {
-            Document doc = retrieveDocument(url);
-            return UrlContentResultDTO.builder()
-                    .url(url)
-                    .text(doc.html())
-                    .build();
-        } catch (IOException e) {
-            log.error("Failed to retrieve HTML from URL: {}", url, e);
-            return UrlContentResultDTO.builder()
-                    .url(url)
-                    .text(String.format("Error retrieving html content: %s", e.getMessage()))
-                    .build();
-        }
+        return retrieveHtmlFromUrlAsync(url).join();
+    }
+
+    /**
+     * Retrieves an HTML content from a given URL without blocking the caller.
+     *
+     * @param url The URL to process.
+     * @return A future DTO containing the URL and an HTML content; it never completes exceptionally.
+     */
+    public CompletableFuture<UrlContentResultDTO> retrieveHtmlFromUrlAsync(String url) {
+        return retrieveContent(HTML_CACHE_KEY_PREFIX, url, htmlLimits, Document::html)
+                .handle((html, error) -> {
+                    if (error != null) {
+                        return failedResult(url, error);
+                    }
+                    return UrlContentResultDTO.builder()
+                            .url(url)
+                            .text(html.getBody())
+                            .truncated(html.isTruncated())
+                            .build();
+                });
     }
 
     /**
@@ -54,44 +170,404 @@ public class UrlContentService {
      * @return A DTO containing the URL and an HTML content.
      */
     public UrlContentResultDTO retrieveTextFromUrl(String url) {
+        return retrieveTextFromUrlAsync(url).join();
+    }
 
-        String content;
-        try {
-            Document doc = retrieveDocument(url);
-            String bodyText = doc.body().text();
-            if (bodyText.isEmpty()) {
-                // If the body text is empty, it's likely because JavaScript is responsible for rendering the content.
-                return UrlContentResultDTO.builder()
-                        .url(url)
-                        .text("No content found, this page may require JavaScript rendering")
-                        .build();
-            }
-            content = bodyText;
-        } catch (IOException e) {
-            log.error("Failed to retrieve content from URL: {}", url, e);
-            content = String.format("Error retrieving content: %s", e.getMessage());
+    /**
+     * Retrieves only the text from html without blocking the caller.
+     *
+     * @param url The URL to process.
+     * @return A future DTO containing the URL and the text content; it never completes exceptionally.
+     */
+    public CompletableFuture<UrlContentResultDTO> retrieveTextFromUrlAsync(String url) {
+        return retrieveContent(TEXT_CACHE_KEY_PREFIX, url, textLimits, doc -> doc.body().text())
+                .handle((bodyText, error) -> textResult(url, bodyText, error));
+    }
+
+    /**
+     * Retrieves the text of the beginning of a page without blocking the caller: the title, the description and
+     * keywords meta tags, and the body text found in the first bytes of the page, see the head-only content limits.
+     *
+     * @param url The URL to process.
+     * @return A future DTO containing the URL and the text content; it never completes exceptionally.
+     */
+    public CompletableFuture<UrlContentResultDTO> retrieveHeadOnlyTextFromUrlAsync(String url) {
+        return retrieveContent(HEAD_ONLY_CACHE_KEY_PREFIX, url, headOnlyLimits, UrlContentService::headOnlyText)
+                .handle((headText, error) -> textResult(url, headText, error));
+    }
+
+    private UrlContentResultDTO textResult(String url, CachedContent text, Throwable error) {
+        if (error != null) {
+            return failedResult(url, error);
         }
+        if (text.getBody().isEmpty()) {
+            // If the body text is empty, it's likely because JavaScript is responsible for rendering the content.
+            return UrlContentResultDTO.builder()
+                    .url(url)
+                    .status(FetchStatus.NO_CONTENT)
+                    .error("No content found, this page may require JavaScript rendering")
+                    .build();
+        }
+        return UrlContentResultDTO.builder()
+                .url(url)
+                .text(text.getBody())
+                .truncated(text.isTruncated())
+                .build();
+    }
 
+    private static UrlContentResultDTO failedResult(String url, Throwable error) {
+        Throwable cause = unwrap(error);
+        FetchStatus status = failureStatus(cause);
+        if (status == FetchStatus.ERROR) {
+            log.error("Failed to retrieve content from URL: {}", url, cause);
+        } else {
+            // Failures of the remote site are expected, and only their kind matters
+            log.warn("Failed to retrieve content from URL {}: {} {}", url, status, cause.getMessage());
+        }
         return UrlContentResultDTO.builder()
                 .url(url)
-                .text(content)
+                .status(status)
+                .error(String.valueOf(cause.getMessage()))
                 .build();
     }
 
+    /**
+     * Classifies the failure of a fetch.
+     *
+     * @param error The failure, possibly wrapped by a future.
+     * @return The kind of failure; never {@link FetchStatus#OK}.
+     */
+    public static FetchStatus failureStatus(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof FetchFailedException) {
+            return ((FetchFailedException) cause).getStatus();
+        }
+        if (cause instanceof HttpTimeoutException || cause instanceof SocketTimeoutException
+                || cause.getCause() instanceof TimeoutException) {
+            return FetchStatus.TIMEOUT;
+        }
+        return cause instanceof IOException ? FetchStatus.UNREACHABLE : FetchStatus.ERROR;
+    }
+
+    private static String headOnlyText(Document doc) {
+        StringBuilder text = new StringBuilder(doc.title());
+        for (Element meta : doc.select(HEAD_META_SELECTOR)) {
+            text.append(' ').append(meta.attr("content"));
+        }
+        return text.append(' ').append(doc.body().text()).toString().trim();
+    }
 
     /**
-     * Retrieves a content from a given url.
+     * Streams the text of a page to the sink without building a DOM or materializing the whole text.
+     * Scripts and styles are skipped. Reading stops, and the connection is released, as soon as the sink asks to stop
+     * or the configured maximum content size is reached. A fresh cached text of the page is streamed instead of
+     * fetching the page again, and a recently failed page fails again at once.
+     * The fetch fails with {@link FetchStatus#TIMEOUT} if the response headers do not arrive within the header timeout,
+     * which includes the wait for a slot of the host; the body is cut, and the result marked as truncated, at the
+     * read timeout.
      *
-     * @param url The URL to retrieve.
-     * @return A parsed Jsoup Document.
+     * @param url  The URL to process.
+     * @param sink The receiver of the text chunks.
+     * @return The outcome of the extraction.
      * @throws IOException if an error occurs during fetching.
      */
-    private Document retrieveDocument(String url) throws IOException {
-        return Jsoup.connect(url)
-                .userAgent(USER_AGENT)
-                .timeout(TIMEOUT)
-                .followRedirects(true)
-                .ignoreHttpErrors(true)
-                .get();
+    public StreamingHtmlTextExtractor.Result streamTextFromUrl(String url, StreamingHtmlTextExtractor.TextSink sink) throws IOException {
+        StreamingHtmlTextExtractor extractor = new StreamingHtmlTextExtractor(streamingMaxChars);
+        CachedContent cached = contentCache.get(TEXT_CACHE_KEY_PREFIX + UrlNormalizer.normalize(url));
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            contentCache.recordHit();
+            return extractor.extract(new StringReader(cached.getBody()), sink);
+        }
+
+        String negativeKey = UrlNormalizer.normalize(url);
+        NegativeCache.Failure failure = negativeCache.get(negativeKey);
+        if (failure != null) {
+            throw new FetchFailedException(failure.getStatus(), failure.getMessage());
+        }
+        FetchedPage page;
+        try {
+            page = await(fetchStream(url), streamingHeaderTimeout);
+            if (page.getStatusCode() >= HTTP_BAD_REQUEST) {
+                page.openBody().close();
+                throw new FetchFailedException(FetchStatus.HTTP_ERROR, "HTTP " + page.getStatusCode());
+            }
+        } catch (IOException e) {
+            rememberFailure(negativeKey, e);
+            throw e;
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try (CountingInputStream body = new CountingInputStream(page.openBody());
+             LimitedInputStream limited = new LimitedInputStream(body, Long.MAX_VALUE, start + streamingReadTimeout.toNanos());
+             Reader reader = new InputStreamReader(limited, page.charsetOrDefault())) {
+            StreamingHtmlTextExtractor.Result result = extractor.extract(reader, sink);
+            categorizationMetrics.recordPageSize(body.getCount());
+            success = true;
+            return limited.isTruncated() ? result.asTruncated() : result;
+        } finally {
+            categorizationMetrics.recordStage(CategorizationMetrics.STAGE_EXTRACT, "streaming",
+                    System.nanoTime() - start, success ? "success" : "error");
+        }
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the content cache.
+     *
+     * @return The content cache statistics.
+     */
+    public ContentCacheStatsDTO getCacheStats() {
+        return contentCache.stats();
+    }
+
+    /**
+     * Returns how many fetches were run, and how many were saved by joining a concurrent fetch of the same URL.
+     *
+     * @return The fetch statistics.
+     */
+    public FetchStatsDTO getFetchStats() {
+        return FetchStatsDTO.builder()
+                .fetches(inFlightFetches.getExecutions())
+                .coalescedFetches(inFlightFetches.getCoalesced())
+                .build();
+    }
+
+    /**
+     * Retrieves content extracted from a given url. Concurrent callers asking for the same content of the same
+     * normalized URL share one fetch and parse; each of them waits for it with its own timeout.
+     * A URL whose retrieval failed recently fails again at once with the same status, without being fetched, until
+     * its entry in the negative cache expires.
+     *
+     * @param keyPrefix The kind of the extracted content.
+     * @param url       The URL to retrieve.
+     * @param limits    The limits of the kind of content.
+     * @param extractor Extracts the content from the parsed document.
+     * @return The future extracted content.
+     */
+    private CompletableFuture<CachedContent> retrieveContent(String keyPrefix, String url, ContentLimits limits,
+                                                             Function<Document, String> extractor) {
+        String normalizedUrl = UrlNormalizer.normalize(url);
+        String cacheKey = keyPrefix + normalizedUrl;
+        CachedContent cached = contentCache.get(cacheKey);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            contentCache.recordHit();
+            return CompletableFuture.completedFuture(cached);
+        }
+        NegativeCache.Failure failure = negativeCache.get(normalizedUrl);
+        if (failure != null) {
+            return CompletableFuture.failedFuture(new FetchFailedException(failure.getStatus(), failure.getMessage()));
+        }
+        return inFlightFetches.execute(cacheKey, () -> retrieveCachedContent(cacheKey, url, limits, extractor)
+                .whenComplete((content, error) -> {
+                    if (error != null) {
+                        rememberFailure(normalizedUrl, error);
+                    }
+                }), coalescedWaitTimeout);
+    }
+
+    /**
+     * Remembers a failed URL in the negative cache. Requests rejected by an open circuit are not remembered, since
+     * the circuit already rejects them, and closes as soon as the host recovers; nor are requests which timed out in
+     * the queue of their host, since they say nothing about the URL.
+     */
+    private void rememberFailure(String normalizedUrl, Throwable error) {
+        FetchStatus status = failureStatus(error);
+        if (status != FetchStatus.CIRCUIT_OPEN && status != FetchStatus.QUEUE_TIMEOUT) {
+            negativeCache.put(normalizedUrl, status, String.valueOf(unwrap(error).getMessage()));
+        }
+    }
+
+    /**
+     * Retrieves content extracted from a given url, served from the content cache when possible.
+     * An expired entry with validators is revalidated with a conditional request, and reused if the page
+     * was not modified. Only successfully fetched, non-empty content is cached here; an HTTP error status fails the
+     * future with {@link FetchStatus#HTTP_ERROR} rather than being extracted as content.
+     *
+     * The body is read up to the maximum body size of the limits, parsed on the processing pool until the parse
+     * timeout, and the extracted content is cut at the maximum text length; the content is then marked as truncated.
+     *
+     * @param cacheKey  The key of the extracted content in the cache.
+     * @param url       The URL to retrieve.
+     * @param limits    The limits of the kind of content.
+     * @param extractor Extracts the content from the parsed document.
+     * @return The future extracted content.
+     */
+    private CompletableFuture<CachedContent> retrieveCachedContent(String cacheKey, String url, ContentLimits limits,
+                                                                   Function<Document, String> extractor) {
+        CachedContent cached = contentCache.get(cacheKey);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            contentCache.recordHit();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        Map<String, String> headers = conditionalHeaders(cached);
+        if (limits.isRangeRequest()) {
+            headers.put("Range", "bytes=0-" + (limits.getMaxBodyBytes() - 1));
+        }
+        // The page is extracted on the processing pool, so the request's endpoint is read here
+        String endpoint = CategorizationMetrics.currentEndpoint();
+        return fetch(url, headers, limits.getMaxBodyBytes()).thenApplyAsync(page -> {
+            if (cached != null && page.getStatusCode() == HTTP_NOT_MODIFIED) {
+                contentCache.recordRevalidation();
+                CachedContent revalidated = cached.toBuilder()
+                        .expiresAtMillis(expiresAt(page))
+                        .build();
+                contentCache.put(cacheKey, revalidated);
+                return revalidated;
+            }
+            if (page.getStatusCode() >= HTTP_BAD_REQUEST) {
+                throw new CompletionException(new FetchFailedException(FetchStatus.HTTP_ERROR, "HTTP " + page.getStatusCode()));
+            }
+
+            contentCache.recordMiss();
+            categorizationMetrics.recordPageSize(endpoint, page.getBody().length);
+            long extractStart = System.nanoTime();
+            LimitedInputStream body = new LimitedInputStream(page.openBody(), Long.MAX_VALUE,
+                    extractStart + limits.getParseTimeout().toNanos());
+            String content = extractor.apply(parse(page, body));
+            boolean truncated = page.isTruncated() || body.isTruncated() || isPartialContent(page);
+            if (content.length() > limits.getMaxTextChars()) {
+                content = content.substring(0, limits.getMaxTextChars());
+                truncated = true;
+            }
+            categorizationMetrics.recordStage(endpoint, CategorizationMetrics.STAGE_EXTRACT, "dom",
+                    System.nanoTime() - extractStart, "success");
+            CachedContent extracted = CachedContent.builder()
+                    .body(content)
+                    .truncated(truncated)
+                    .etag(page.header("ETag"))
+                    .lastModified(page.header("Last-Modified"))
+                    .expiresAtMillis(expiresAt(page))
+                    .build();
+            if (isCacheable(page, content)) {
+                contentCache.put(cacheKey, extracted);
+            }
+            return extracted;
+        }, processingPool);
+    }
+
+    /**
+     * Tells whether the response to a Range request holds only a part of the body.
+     */
+    private static boolean isPartialContent(FetchedPage page) {
+        if (page.getStatusCode() != HTTP_PARTIAL_CONTENT) {
+            return false;
+        }
+        // Content-Range: bytes 0-32767/123456, where the total length may be unknown ("*")
+        String contentRange = page.header("Content-Range");
+        int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+        if (slash < 0) {
+            return true;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim()) > page.getBody().length;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private boolean isCacheable(FetchedPage page, String content) {
+        String cacheControl = page.header("Cache-Control");
+        return page.getStatusCode() >= 200 && page.getStatusCode() < 300
+                && !content.isEmpty()
+                && (cacheControl == null || !cacheControl.contains("no-store"));
+    }
+
+    /**
+     * Computes the expiry of a response: the configured TTL, shortened by the response's Cache-Control max-age.
+     */
+    private long expiresAt(FetchedPage page) {
+        long ttlMillis = cacheTtl.toMillis();
+        String cacheControl = page.header("Cache-Control");
+        if (cacheControl != null) {
+            Matcher maxAge = MAX_AGE_PATTERN.matcher(cacheControl);
+            if (maxAge.find()) {
+                ttlMillis = Math.min(ttlMillis, Long.parseLong(maxAge.group(1)) * 1000);
+            }
+        }
+        return System.currentTimeMillis() + ttlMillis;
+    }
+
+    /**
+     * Returns the headers of a request conditional on the validators of a previously cached content.
+     *
+     * @param cached The expired cached content to revalidate, or {@code null}.
+     * @return The conditional request headers.
+     */
+    private static Map<String, String> conditionalHeaders(CachedContent cached) {
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null && cached.getEtag() != null) {
+            headers.put("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            headers.put("If-Modified-Since", cached.getLastModified());
+        }
+        return headers;
+    }
+
+    /**
+     * Fetches a page, tracking it as an in-flight fetch and timing it.
+     */
+    private CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers, long maxBodyBytes) {
+        return timed(pageFetcher.fetch(url, headers, maxBodyBytes));
+    }
+
+    /**
+     * Fetches a page with an unread body, tracking it as an in-flight fetch and timing it.
+     */
+    private CompletableFuture<FetchedPage> fetchStream(String url) {
+        return timed(pageFetcher.fetchStream(url, Map.of()));
+    }
+
+    /**
+     * Times a fetch; it completes on a thread of the page fetcher, so it is tagged with the endpoint of the caller.
+     */
+    private CompletableFuture<FetchedPage> timed(CompletableFuture<FetchedPage> page) {
+        String endpoint = CategorizationMetrics.currentEndpoint();
+        long start = categorizationMetrics.fetchStarted();
+        return PageFutures.propagateCancellation(page.whenComplete(
+                (fetched, error) -> categorizationMetrics.fetchFinished(endpoint, start, error == null)), page);
+    }
+
+    /**
+     * Parses the page from the body stream, which Jsoup reads incrementally, so that a limited stream bounds the
+     * parse as well.
+     */
+    private static Document parse(FetchedPage page, InputStream bodyStream) {
+        try (InputStream body = bodyStream) {
+            return Jsoup.parse(body, page.declaredCharset(), page.getUrl());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FetchedPage await(CompletableFuture<FetchedPage> page, Duration timeout) throws IOException {
+        try {
+            return page.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            PageFutures.cancel(page);
+            throw new IOException("Interrupted while fetching", e);
+        } catch (TimeoutException e) {
+            PageFutures.cancel(page);
+            throw new FetchFailedException(FetchStatus.TIMEOUT, "No response headers within " + timeout.toMillis() + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the underlying failure of a future, e.g. the {@link IOException} of a failed fetch.
+     */
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException || cause instanceof UncheckedIOException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof TimeoutException) {
+            return new IOException("Timed out fetching the page", cause);
+        }
+        return cause;
     }
 }
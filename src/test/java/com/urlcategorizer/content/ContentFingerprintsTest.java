@@ -0,0 +1,63 @@
+package com.urlcategorizer.content;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentFingerprintsTest {
+
+    @Test
+    public void testHashesWholeText() {
+        String text = "Breaking news: the match ended 2-1.";
+        ContentFingerprint fingerprint = ContentFingerprints.fingerprint(text);
+
+        assertEquals(ContentFingerprints.exactHash(text), fingerprint.getExactHash());
+        assertNotEquals(fingerprint.getExactHash(), ContentFingerprints.exactHash(text + " "));
+        assertEquals(7, fingerprint.getTokens());
+    }
+
+    @Test
+    public void testIgnoresCaseAndPunctuationInSimHash() {
+        ContentFingerprint fingerprint = ContentFingerprints.fingerprint(text(1, 200));
+        ContentFingerprint variant = ContentFingerprints.fingerprint(text(1, 200).toUpperCase().replace(" ", ", "));
+
+        assertNotEquals(fingerprint.getExactHash(), variant.getExactHash());
+        assertEquals(fingerprint.getSimHash(), variant.getSimHash());
+    }
+
+    @Test
+    public void testGivesNearDuplicatesCloseSimHashes() {
+        String text = text(1, 500);
+        ContentFingerprint fingerprint = ContentFingerprints.fingerprint(text);
+        ContentFingerprint edited = ContentFingerprints.fingerprint(text.replaceFirst(" ", " updated "));
+        ContentFingerprint unrelated = ContentFingerprints.fingerprint(text(2, 500));
+
+        assertTrue(fingerprint.distance(edited) <= 3, "Distance " + fingerprint.distance(edited));
+        assertTrue(fingerprint.distance(unrelated) > 16, "Distance " + fingerprint.distance(unrelated));
+    }
+
+    @Test
+    public void testFingerprintsShortTexts() {
+        assertEquals(0, ContentFingerprints.fingerprint(" -- ").getTokens());
+        assertEquals(ContentFingerprints.fingerprint("Hello world").getSimHash(),
+                ContentFingerprints.fingerprint("hello, World!").getSimHash());
+        assertNotEquals(ContentFingerprints.fingerprint("Hello world").getSimHash(),
+                ContentFingerprints.fingerprint("Hello there").getSimHash());
+    }
+
+    /**
+     * A text of random words drawn from a small vocabulary, the same for the same seed.
+     */
+    private static String text(long seed, int words) {
+        Random random = new Random(seed);
+        return IntStream.range(0, words)
+                .mapToObj(i -> "word" + random.nextInt(300))
+                .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,276 @@
+package com.urlcategorizer.content;
+
+import com.urlcategorizer.dto.FetchStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HostScheduledPageFetcherTest {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testParsesRetryAfterSeconds() {
+        assertEquals(TimeUnit.SECONDS.toNanos(120), HostScheduledPageFetcher.retryAfterNanos("120"));
+        assertEquals(TimeUnit.SECONDS.toNanos(3), HostScheduledPageFetcher.retryAfterNanos(" 3 "));
+        assertEquals(0, HostScheduledPageFetcher.retryAfterNanos("-5"));
+    }
+
+    @Test
+    public void testParsesRetryAfterDate() {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String inThirtySeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(now.plusSeconds(30));
+        long delay = HostScheduledPageFetcher.retryAfterNanos(inThirtySeconds);
+        assertTrue(delay > TimeUnit.SECONDS.toNanos(28) && delay <= TimeUnit.SECONDS.toNanos(30), "delay " + delay);
+
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(now.minusHours(1));
+        assertEquals(0, HostScheduledPageFetcher.retryAfterNanos(past));
+    }
+
+    @Test
+    public void testFallsBackToDefaultBackoff() {
+        assertEquals(ONE_SECOND, HostScheduledPageFetcher.retryAfterNanos(null));
+        assertEquals(ONE_SECOND, HostScheduledPageFetcher.retryAfterNanos(" "));
+        assertEquals(ONE_SECOND, HostScheduledPageFetcher.retryAfterNanos("soon"));
+    }
+
+    @Test
+    public void testLimitsRequestRatePerHost() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(true);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 10, 100, Duration.ofSeconds(30))) {
+            long start = System.nanoTime();
+            // One token is available at once, the other five come at 10 per second
+            List<CompletableFuture<FetchedPage>> pages = IntStream.range(0, 6)
+                    .mapToObj(i -> fetcher.fetch("http://a.example/" + i, Map.of(), 1024))
+                    .collect(Collectors.toList());
+            FetchedPage other = fetcher.fetch("http://b.example/", Map.of(), 1024).get(5, TimeUnit.SECONDS);
+            long otherMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            CompletableFuture.allOf(pages.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            long allMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(200, other.getStatusCode());
+            assertTrue(otherMillis < 300, "Other host waited " + otherMillis + " ms");
+            assertTrue(allMillis >= 450, "Six requests took only " + allMillis + " ms");
+        }
+    }
+
+    @Test
+    public void testLimitsRateOfSequentialFetches() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(true);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 10, 100, Duration.ofSeconds(30))) {
+            long start = System.nanoTime();
+            // Each fetch is sent once the previous one completed, when the host has nothing queued or in flight
+            for (int i = 0; i < 4; i++) {
+                fetcher.fetch("http://a.example/" + i, Map.of(), 1024).get(5, TimeUnit.SECONDS);
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsedMillis >= 290, "Four fetches took only " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test
+    public void testLimitsRequestsInFlightPerHost() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(false);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 1000, 2, Duration.ofSeconds(30))) {
+            CompletableFuture<FetchedPage> first = fetcher.fetch("http://a.example/1", Map.of(), 1024);
+            fetcher.fetch("http://a.example/2", Map.of(), 1024);
+            fetcher.fetch("http://a.example/3", Map.of(), 1024);
+
+            Call call = delegate.next();
+            assertNotNull(delegate.next());
+            assertNull(delegate.calls.poll(200, TimeUnit.MILLISECONDS));
+
+            call.respond(200, null);
+            assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatusCode());
+            assertEquals("http://a.example/3", delegate.next().url);
+        }
+    }
+
+    @Test
+    public void testHoldsSlotUntilStreamedBodyIsClosed() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(false);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 1000, 1, Duration.ofSeconds(30))) {
+            CompletableFuture<FetchedPage> streamed = fetcher.fetchStream("http://a.example/1", Map.of());
+            fetcher.fetch("http://a.example/2", Map.of(), 1024);
+
+            delegate.next().respond(200, new ByteArrayInputStream(new byte[10]));
+            InputStream body = streamed.get(5, TimeUnit.SECONDS).getBodyStream();
+            assertNull(delegate.calls.poll(200, TimeUnit.MILLISECONDS));
+
+            body.close();
+            assertEquals("http://a.example/2", delegate.next().url);
+        }
+    }
+
+    @Test
+    public void testReleasesSlotOfCancelledFetch() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(false);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 1000, 1, Duration.ofSeconds(30))) {
+            CompletableFuture<FetchedPage> inFlight = fetcher.fetchStream("http://a.example/1", Map.of());
+            CompletableFuture<FetchedPage> queued = fetcher.fetch("http://a.example/2", Map.of(), 1024);
+            fetcher.fetch("http://a.example/3", Map.of(), 1024);
+            Call call = delegate.next();
+
+            // A queued fetch is dropped, and cancelling a fetch in flight cancels the request of the delegate
+            queued.cancel(true);
+            inFlight.cancel(true);
+            assertThrows(CancellationException.class, () -> call.response.get(5, TimeUnit.SECONDS));
+            assertEquals("http://a.example/3", delegate.next().url);
+            assertNull(delegate.calls.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testRetriesThrottledRequest() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(false);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 1000, 1, Duration.ofSeconds(30))) {
+            CompletableFuture<FetchedPage> page = fetcher.fetch("http://a.example/", Map.of(), 1024);
+
+            delegate.next().respond(429, "0", null);
+            delegate.next().respond(200, null);
+
+            assertEquals(200, page.get(5, TimeUnit.SECONDS).getStatusCode());
+            assertEquals(1, fetcher.getThrottledResponses());
+        }
+    }
+
+    @Test
+    public void testReturnsThrottlingResponseWhenRetryAfterIsTooLong() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(false);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 1000, 1, Duration.ofSeconds(30))) {
+            CompletableFuture<FetchedPage> page = fetcher.fetch("http://a.example/", Map.of(), 1024);
+
+            delegate.next().respond(503, "60", null);
+
+            assertEquals(503, page.get(5, TimeUnit.SECONDS).getStatusCode());
+            assertNull(delegate.calls.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testForgetsThrottledHostOnceItsRateRecovered() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(false);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 1000, 1, Duration.ofSeconds(30))) {
+            CompletableFuture<FetchedPage> page = fetcher.fetch("http://a.example/", Map.of(), 1024);
+            delegate.next().respond(503, "60", null);
+            assertEquals(503, page.get(5, TimeUnit.SECONDS).getStatusCode());
+            // Paused for the Retry-After delay, and at half the rate after that
+            assertEquals(1, fetcher.getHosts());
+
+            page = fetcher.fetch("http://b.example/", Map.of(), 1024);
+            delegate.next().respond(429, "0", null);
+            delegate.next().respond(404, null);
+            assertEquals(404, page.get(5, TimeUnit.SECONDS).getStatusCode());
+            assertEquals(2, fetcher.getHosts());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fetcher.getHosts() > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, fetcher.getHosts());
+        }
+    }
+
+    @Test
+    public void testFailsRequestWaitingTooLong() throws Exception {
+        FakeFetcher delegate = new FakeFetcher(false);
+        try (HostScheduledPageFetcher fetcher = scheduler(delegate, 1000, 1, Duration.ofMillis(200))) {
+            fetcher.fetch("http://a.example/1", Map.of(), 1024);
+            CompletableFuture<FetchedPage> queued = fetcher.fetch("http://a.example/2", Map.of(), 1024);
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+            assertEquals(FetchStatus.QUEUE_TIMEOUT, ((FetchFailedException) failure.getCause()).getStatus());
+            assertEquals(0, fetcher.getQueuedRequests());
+        }
+    }
+
+    private static HostScheduledPageFetcher scheduler(PageFetcher delegate, double rate, int maxPerHost,
+                                                      Duration queueTimeout) {
+        return new HostScheduledPageFetcher(delegate, rate, rate, maxPerHost, 2, Duration.ofSeconds(10), queueTimeout);
+    }
+
+    private static final class Call {
+        private final String url;
+        private final CompletableFuture<FetchedPage> response = new CompletableFuture<>();
+
+        private Call(String url) {
+            this.url = url;
+        }
+
+        private void respond(int status, InputStream body) {
+            respond(status, null, body);
+        }
+
+        private void respond(int status, String retryAfter, InputStream body) {
+            response.complete(FetchedPage.builder()
+                    .url(url)
+                    .statusCode(status)
+                    .headers(retryAfter == null ? Map.of() : Map.of("Retry-After", retryAfter))
+                    .body(body == null ? new byte[0] : null)
+                    .bodyStream(body)
+                    .build());
+        }
+    }
+
+    /**
+     * Records the requests it is sent; they are answered by the test, or at once with an empty 200 response.
+     */
+    private static final class FakeFetcher implements PageFetcher {
+        private final BlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+        private final boolean respondAtOnce;
+
+        private FakeFetcher(boolean respondAtOnce) {
+            this.respondAtOnce = respondAtOnce;
+        }
+
+        @Override
+        public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers, long maxBodyBytes) {
+            return send(url);
+        }
+
+        @Override
+        public CompletableFuture<FetchedPage> fetchStream(String url, Map<String, String> headers) {
+            return send(url);
+        }
+
+        private CompletableFuture<FetchedPage> send(String url) {
+            Call call = new Call(url);
+            if (respondAtOnce) {
+                call.respond(200, null);
+            }
+            calls.add(call);
+            return call.response;
+        }
+
+        private Call next() throws InterruptedException, IOException {
+            Call call = calls.poll(5, TimeUnit.SECONDS);
+            if (call == null) {
+                throw new IOException("No request was sent");
+            }
+            return call;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.urlcategorizer.content;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingHtmlTextExtractorTest {
+
+    @Test
+    public void testExtractsVisibleText() throws IOException {
+        assertEquals("Hello World", extract("<html><body><p>Hello</p><p>World</p></body></html>"));
+        assertEquals("basketball", extract("<b>basket</b><i>ball</i>"));
+        assertEquals("link", extract("<a href=\"/x\" title='a > b'>link</a>"));
+        assertEquals("a < b", extract("a < b"));
+    }
+
+    @Test
+    public void testCollapsesWhitespace() throws IOException {
+        assertEquals("star wars", extract("  \n\tstar \r\n  wars \t "));
+        assertEquals("one two", extract("<div>one</div>\n\n<br/><div>two</div>"));
+    }
+
+    @Test
+    public void testSkipsScriptStyleAndTitle() throws IOException {
+        assertEquals("text", extract("<script>var nba = '</p>nba' < 1;</script>text"));
+        assertEquals("text", extract("<SCRIPT type=\"module\">nba</ScRiPt >text"));
+        assertEquals("text", extract("<script>if (a </scr) {}</script>text"));
+        assertEquals("text", extract("<style>p { color: red }</style><title>nba</title>text"));
+        assertEquals("text", extract("<noscript>nba</noscript><template><p>nba</p></template>text"));
+    }
+
+    @Test
+    public void testSkipsCommentsAndDeclarations() throws IOException {
+        assertEquals("visible", extract("<!-- nba -- > still a comment -->visible"));
+        assertEquals("visible", extract("<!DOCTYPE html><?xml version=\"1.0\"?>visible"));
+        assertEquals("visible", extract("<!---->visible"));
+    }
+
+    @Test
+    public void testDecodesEntities() throws IOException {
+        assertEquals("&<>\"'", extract("&amp;&lt;&gt;&quot;&apos;"));
+        assertEquals("AB\u00e9", extract("&#65;&#x42;&#233;"));
+        assertEquals("a b", extract("a&#32;b"));
+        assertEquals("&AMP;", extract("&amp;AMP;"));
+    }
+
+    @Test
+    public void testKeepsTextWhichIsNotAnEntity() throws IOException {
+        assertEquals("&unknown;", extract("&unknown;"));
+        assertEquals("AT&T rocks", extract("AT&T rocks"));
+        assertEquals("fish & chips", extract("fish & chips"));
+        assertEquals("&#xZZ;", extract("&#xZZ;"));
+        assertEquals("&amp", extract("&amp"));
+    }
+
+    @Test
+    public void testSameTextForAnyChunking() throws IOException {
+        String html = "<html><head><title>t</title><style>s</style></head><body>"
+                + "<p>Star&nbsp;Wars &amp; the <b>NBA</b></p><!-- c --><script>x</script>"
+                + "<div title=\"q>\">caf&#233;</div> AT&T &#x1F600; end</body></html>";
+        String expected = extract(html);
+        assertEquals("Star\u00a0Wars & the NBA caf\u00e9 AT&T \ud83d\ude00 end", expected);
+        for (int bufferSize = 1; bufferSize <= 8; bufferSize++) {
+            for (int readSize = 1; readSize <= 8; readSize++) {
+                StringBuilder text = new StringBuilder();
+                new StreamingHtmlTextExtractor(Long.MAX_VALUE, bufferSize)
+                        .extract(new ChunkedReader(html, readSize), collect(text));
+                assertEquals(expected, text.toString(), "buffer " + bufferSize + ", reads of " + readSize);
+            }
+        }
+    }
+
+    @Test
+    public void testStopsAtMaximumLength() throws IOException {
+        StringBuilder text = new StringBuilder();
+        StreamingHtmlTextExtractor.Result result = new StreamingHtmlTextExtractor(5)
+                .extract(new StringReader("<p>abcdefgh</p>"), collect(text));
+
+        assertEquals("abcde", text.toString());
+        assertEquals(5, result.getExtractedChars());
+        assertTrue(result.isTruncated());
+        assertFalse(result.isStoppedBySink());
+    }
+
+    @Test
+    public void testStopsWhenSinkAsks() throws IOException {
+        StringBuilder text = new StringBuilder();
+        StreamingHtmlTextExtractor.Result result = new StreamingHtmlTextExtractor(Long.MAX_VALUE, 4)
+                .extract(new StringReader("<p>abcdefgh</p>"), (buffer, offset, length) -> {
+                    text.append(buffer, offset, length);
+                    return true;
+                });
+
+        assertEquals("abcd", text.toString());
+        assertTrue(result.isStoppedBySink());
+        assertFalse(result.isTruncated());
+    }
+
+    private static String extract(String html) throws IOException {
+        StringBuilder text = new StringBuilder();
+        new StreamingHtmlTextExtractor(Long.MAX_VALUE).extract(new StringReader(html), collect(text));
+        return text.toString();
+    }
+
+    private static StreamingHtmlTextExtractor.TextSink collect(StringBuilder text) {
+        return (buffer, offset, length) -> {
+            text.append(buffer, offset, length);
+            return false;
+        };
+    }
+
+    /**
+     * Returns at most a few characters per read, as a slow network stream would.
+     */
+    private static final class ChunkedReader extends Reader {
+        private final String text;
+        private final int readSize;
+        private int position;
+
+        private ChunkedReader(String text, int readSize) {
+            this.text = text;
+            this.readSize = readSize;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == text.length()) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, readSize), text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.urlcategorizer.controller;
+
+import com.urlcategorizer.UrlCategorizationRunner;
+import com.urlcategorizer.dto.BulkJobDTO;
+import com.urlcategorizer.dto.BulkJobState;
+import com.urlcategorizer.matcher.MatchingStrategy;
+import com.urlcategorizer.service.BulkJobService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+public class BulkJobControllerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private BulkJobService bulkJobService;
+
+    @MockBean
+    private UrlCategorizationRunner urlCategorizationRunner;
+
+    @Test
+    public void testSubmitJob() throws Exception {
+        BulkJobDTO job = BulkJobDTO.builder()
+                .id("job-1")
+                .state(BulkJobState.RUNNING)
+                .strategy(MatchingStrategy.AHO_CORASICK)
+                .totalUrls(2)
+                .createdAt(Instant.now())
+                .build();
+
+        when(urlCategorizationRunner.getPredefinedCategories()).thenReturn(Set.of());
+        when(bulkJobService.submit(eq(List.of("http://example.com", "http://example.org")), eq(MatchingStrategy.AHO_CORASICK), anySet()))
+                .thenReturn(job);
+
+        mockMvc.perform(post("/api/bulk-jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"urls\": [\"http://example.com\", \"http://example.org\"]}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/bulk-jobs/job-1"))
+                .andExpect(jsonPath("$.state").value("RUNNING"))
+                .andExpect(jsonPath("$.totalUrls").value(2));
+    }
+
+    @Test
+    public void testGetMissingJob() throws Exception {
+        when(bulkJobService.getJob("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/bulk-jobs/missing"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,69 @@
+package com.urlcategorizer.controller;
+
+import com.urlcategorizer.UrlCategorizationRunner;
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+import com.urlcategorizer.service.CategoryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+public class CategoryControllerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CategoryService categoryService;
+
+    @MockBean
+    private UrlCategorizationRunner urlCategorizationRunner;
+
+    @Test
+    public void testGetCategories() throws Exception {
+        Category category = new Category("Basketball", Set.of(new CategoryKeyword("nba"), new CategoryKeyword("ncaa")));
+        when(categoryService.getCategories()).thenReturn(List.of(category));
+
+        mockMvc.perform(get("/api/categories"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Basketball"))
+                .andExpect(jsonPath("$[0].keywords", contains("nba", "ncaa")));
+    }
+
+    @Test
+    public void testGetMissingCategory() throws Exception {
+        when(categoryService.getCategory("Chess")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/categories/Chess"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testSaveCategory() throws Exception {
+        Category category = new Category("Chess", Set.of(new CategoryKeyword("checkmate")));
+        when(categoryService.saveCategory("Chess", Set.of("Checkmate"))).thenReturn(category);
+
+        mockMvc.perform(put("/api/categories/Chess")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"keywords\": [\"Checkmate\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Chess"))
+                .andExpect(jsonPath("$.keywords", contains("checkmate")));
+    }
+}
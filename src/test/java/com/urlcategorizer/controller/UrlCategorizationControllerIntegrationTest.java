@@ -1,9 +1,20 @@
 package com.urlcategorizer.controller;
 
 import com.urlcategorizer.UrlCategorizationRunner;
+import com.urlcategorizer.dto.BatchItemStatus;
+import com.urlcategorizer.dto.CategorizationMode;
+import com.urlcategorizer.dto.CategorizationTier;
+import com.urlcategorizer.dto.CategoryScoreDTO;
+import com.urlcategorizer.dto.FetchStatus;
+import com.urlcategorizer.dto.ScoreThresholds;
+import com.urlcategorizer.dto.StrategyEvaluationDTO;
+import com.urlcategorizer.dto.StrategyResultDTO;
+import com.urlcategorizer.dto.UrlBatchResultDTO;
 import com.urlcategorizer.dto.UrlCategorizationResultDTO;
+import com.urlcategorizer.dto.UrlCategorizationScoredResultDTO;
 import com.urlcategorizer.entity.Category;
 import com.urlcategorizer.entity.CategoryKeyword;
+import com.urlcategorizer.matcher.MatchingStrategy;
 import com.urlcategorizer.service.UrlCategorizationService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +23,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -19,8 +31,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -63,6 +79,219 @@ public class UrlCategorizationControllerIntegrationTest {
                 .andExpect(jsonPath("$.categories", containsInAnyOrder("Star Wars", "Basketball")));  // Expect categories as a set
     }
 
+    @Test
+    public void testCategorizeUrlWithStrategy() throws Exception {
+        String url = "http://example.com";
+        Category category = new Category("Basketball", Set.of(new CategoryKeyword("nba")));
+
+        UrlCategorizationResultDTO resultDTO = UrlCategorizationResultDTO.builder()
+                .url(url)
+                .categories(Set.of("Basketball"))
+                .build();
+
+        when(urlCategorizationService.categorizeUrl(url, Set.of(category), MatchingStrategy.AHO_CORASICK))
+                .thenReturn(resultDTO);
+        when(urlCategorizationRunner.getPredefinedCategories())
+                .thenReturn(Set.of(category));
+
+        mockMvc.perform(get("/api/url-categorization/categorize")
+                        .param("url", url)
+                        .param("strategy", "AHO_CORASICK"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.url").value(url))
+                .andExpect(jsonPath("$.categories", containsInAnyOrder("Basketball")));
+    }
+
+    @Test
+    public void testCategorizeUrlHeadOnly() throws Exception {
+        String url = "http://example.com";
+        Category category = new Category("Basketball", Set.of(new CategoryKeyword("nba")));
+
+        UrlCategorizationResultDTO resultDTO = UrlCategorizationResultDTO.builder()
+                .url(url)
+                .categories(Set.of("Basketball"))
+                .truncated(true)
+                .build();
+
+        when(urlCategorizationService.categorizeUrl(url, Set.of(category), MatchingStrategy.SIMPLE, CategorizationMode.HEAD_ONLY))
+                .thenReturn(resultDTO);
+        when(urlCategorizationRunner.getPredefinedCategories())
+                .thenReturn(Set.of(category));
+
+        mockMvc.perform(get("/api/url-categorization/categorize")
+                        .param("url", url)
+                        .param("headOnly", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories", containsInAnyOrder("Basketball")))
+                .andExpect(jsonPath("$.truncated").value(true));
+    }
+
+    @Test
+    public void testCategorizeUrlFetchFailure() throws Exception {
+        String url = "http://unreachable.example.com";
+        Category category = new Category("Basketball", Set.of(new CategoryKeyword("nba")));
+
+        UrlCategorizationResultDTO resultDTO = UrlCategorizationResultDTO.builder()
+                .url(url)
+                .categories(Set.of())
+                .status(FetchStatus.CIRCUIT_OPEN)
+                .error("Circuit open for unreachable.example.com")
+                .build();
+
+        when(urlCategorizationService.categorizeUrl(url, Set.of(category)))
+                .thenReturn(resultDTO);
+        when(urlCategorizationRunner.getPredefinedCategories())
+                .thenReturn(Set.of(category));
+
+        mockMvc.perform(get("/api/url-categorization/categorize")
+                        .param("url", url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories").isEmpty())
+                .andExpect(jsonPath("$.status").value("CIRCUIT_OPEN"));
+    }
+
+    @Test
+    public void testEvaluateUrl() throws Exception {
+        String url = "http://example.com";
+        Category category = new Category("Basketball", Set.of(new CategoryKeyword("nba")));
+        List<MatchingStrategy> strategies = List.of(MatchingStrategy.SIMPLE, MatchingStrategy.TOKENIZED);
+
+        StrategyEvaluationDTO evaluationDTO = StrategyEvaluationDTO.builder()
+                .url(url)
+                .baseline(MatchingStrategy.SIMPLE)
+                .agreement(false)
+                .strategies(List.of(
+                        StrategyResultDTO.builder()
+                                .strategy(MatchingStrategy.SIMPLE)
+                                .categories(Set.of("Basketball"))
+                                .missing(Set.of())
+                                .extra(Set.of())
+                                .build(),
+                        StrategyResultDTO.builder()
+                                .strategy(MatchingStrategy.TOKENIZED)
+                                .categories(Set.of())
+                                .missing(Set.of("Basketball"))
+                                .extra(Set.of())
+                                .build()))
+                .build();
+
+        when(urlCategorizationService.evaluateUrl(url, Set.of(category), strategies))
+                .thenReturn(evaluationDTO);
+        when(urlCategorizationRunner.getPredefinedCategories())
+                .thenReturn(Set.of(category));
+
+        mockMvc.perform(get("/api/url-categorization/evaluate")
+                        .param("url", url)
+                        .param("strategies", "SIMPLE,TOKENIZED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.agreement").value(false))
+                .andExpect(jsonPath("$.strategies[1].strategy").value("TOKENIZED"))
+                .andExpect(jsonPath("$.strategies[1].missing", containsInAnyOrder("Basketball")));
+    }
+
+    @Test
+    public void testCategorizeUrlTiered() throws Exception {
+        String url = "http://example.com";
+        Category category = new Category("Basketball", Set.of(new CategoryKeyword("nba")));
+
+        UrlCategorizationResultDTO resultDTO = UrlCategorizationResultDTO.builder()
+                .url(url)
+                .categories(Set.of("Basketball"))
+                .decidedBy(CategorizationTier.HEAD)
+                .build();
+
+        when(urlCategorizationService.categorizeUrl(url, Set.of(category), MatchingStrategy.AHO_CORASICK, CategorizationMode.TIERED))
+                .thenReturn(resultDTO);
+        when(urlCategorizationRunner.getPredefinedCategories())
+                .thenReturn(Set.of(category));
+
+        mockMvc.perform(get("/api/url-categorization/categorize")
+                        .param("url", url)
+                        .param("strategy", "AHO_CORASICK")
+                        .param("tiered", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories", containsInAnyOrder("Basketball")))
+                .andExpect(jsonPath("$.decidedBy").value("HEAD"));
+    }
+
+    @Test
+    public void testCategorizeUrlStreaming() throws Exception {
+        String url = "http://example.com";
+        Category category = new Category("Star Wars", Set.of(new CategoryKeyword("r2d2")));
+
+        UrlCategorizationResultDTO resultDTO = UrlCategorizationResultDTO.builder()
+                .url(url)
+                .categories(Set.of("Star Wars"))
+                .build();
+
+        when(urlCategorizationService.categorizeUrlStreaming(url, Set.of(category)))
+                .thenReturn(resultDTO);
+        when(urlCategorizationRunner.getPredefinedCategories())
+                .thenReturn(Set.of(category));
+
+        mockMvc.perform(get("/api/url-categorization/categorize")
+                        .param("url", url)
+                        .param("streaming", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories", containsInAnyOrder("Star Wars")));
+    }
+
+    @Test
+    public void testCategorizeUrlScored() throws Exception {
+        String url = "http://example.com";
+        Category category = new Category("Basketball", Set.of(new CategoryKeyword("nba")));
+
+        UrlCategorizationScoredResultDTO resultDTO = UrlCategorizationScoredResultDTO.builder()
+                .url(url)
+                .tokenCount(200)
+                .categories(List.of(CategoryScoreDTO.builder()
+                        .category("Basketball")
+                        .hits(4)
+                        .distinctKeywords(1)
+                        .density(0.02)
+                        .build()))
+                .build();
+
+        when(urlCategorizationService.categorizeUrlScored(eq(url), eq(Set.of(category)), any(ScoreThresholds.class)))
+                .thenReturn(resultDTO);
+        when(urlCategorizationRunner.getPredefinedCategories())
+                .thenReturn(Set.of(category));
+
+        mockMvc.perform(get("/api/url-categorization/categorize-scored")
+                        .param("url", url)
+                        .param("minHits", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tokenCount").value(200))
+                .andExpect(jsonPath("$.categories[0].category").value("Basketball"))
+                .andExpect(jsonPath("$.categories[0].hits").value(4));
+    }
+
+    @Test
+    public void testCategorizeUrlAsync() throws Exception {
+        String url = "http://example.com";
+        Category category = new Category("Basketball", Set.of(new CategoryKeyword("nba")));
+
+        UrlCategorizationResultDTO resultDTO = UrlCategorizationResultDTO.builder()
+                .url(url)
+                .categories(Set.of("Basketball"))
+                .build();
+
+        when(urlCategorizationService.categorizeUrlAsync(url, Set.of(category), MatchingStrategy.SIMPLE))
+                .thenReturn(CompletableFuture.completedFuture(resultDTO));
+        when(urlCategorizationRunner.getPredefinedCategories())
+                .thenReturn(Set.of(category));
+
+        MvcResult result = mockMvc.perform(get("/api/url-categorization/categorize-async")
+                        .param("url", url))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.url").value(url))
+                .andExpect(jsonPath("$.categories", containsInAnyOrder("Basketball")));
+    }
+
     @Test
     public void testCheckIfCategoryDoesNotExist() throws Exception {
         String url = "http://example.com";
@@ -109,4 +338,28 @@ public class UrlCategorizationControllerIntegrationTest {
                 .andExpect(jsonPath("$.['http://example1.com']").value(true))
                 .andExpect(jsonPath("$.['http://example2.com']").value(false));
     }
+
+    @Test
+    public void testCheckIfCategoriesExistForUrlsWithStatus() throws Exception {
+        List<String> urls = List.of("http://example1.com", "http://example2.com", "http://example3.com");
+
+        List<UrlBatchResultDTO> expectedResults = List.of(
+                UrlBatchResultDTO.builder().url("http://example1.com").status(BatchItemStatus.COMPLETED).hasCategories(true).build(),
+                UrlBatchResultDTO.builder().url("http://example2.com").status(BatchItemStatus.TIMED_OUT).error("Batch deadline exceeded").build(),
+                UrlBatchResultDTO.builder().url("http://example3.com").status(BatchItemStatus.FAILED)
+                        .fetchStatus(FetchStatus.UNREACHABLE).error("Connection refused").build()
+        );
+
+        when(urlCategorizationService.hasCategoriesWithStatus(urls, Set.of())).thenReturn(expectedResults);
+
+        mockMvc.perform(post("/api/url-categorization/has-categories/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"http://example1.com\", \"http://example2.com\", \"http://example3.com\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("COMPLETED"))
+                .andExpect(jsonPath("$[0].hasCategories").value(true))
+                .andExpect(jsonPath("$[1].status").value("TIMED_OUT"))
+                .andExpect(jsonPath("$[2].status").value("FAILED"))
+                .andExpect(jsonPath("$[2].fetchStatus").value("UNREACHABLE"));
+    }
 }
@@ -1,5 +1,6 @@
 package com.urlcategorizer.controller;
 
+import com.urlcategorizer.dto.ContentCacheStatsDTO;
 import com.urlcategorizer.dto.UrlContentResultDTO;
 import com.urlcategorizer.service.UrlContentService;
 import org.junit.jupiter.api.Test;
@@ -8,10 +9,15 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @AutoConfigureMockMvc
@@ -63,4 +69,49 @@ public class UrlContentControllerIntegrationTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.text == 'Content from example1.com')]").exists())
                 .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.text == 'Content from example2.com')]").exists());
     }
+
+    @Test
+    public void testRetrieveTextStream() throws Exception {
+        String url1 = "http://example1.com";
+        String url2 = "http://example2.com";
+
+        when(urlContentService.retrieveTextFromUrlAsync(url1))
+                .thenReturn(CompletableFuture.completedFuture(new UrlContentResultDTO(url1, "Content from example1.com")));
+        when(urlContentService.retrieveTextFromUrlAsync(url2))
+                .thenReturn(CompletableFuture.completedFuture(new UrlContentResultDTO(url2, "Content from example2.com")));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/url-content/retrieve-text-stream")
+                        .param("urls", url1, url2))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        // One JSON line per URL, without assuming order
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.content().string(containsString(
+                        "\"url\":\"" + url1 + "\",\"text\":\"Content from example1.com\"")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString(
+                        "\"url\":\"" + url2 + "\",\"text\":\"Content from example2.com\"")));
+    }
+
+    @Test
+    public void testCacheStats() throws Exception {
+        ContentCacheStatsDTO stats = ContentCacheStatsDTO.builder()
+                .hits(3)
+                .misses(2)
+                .evictions(1)
+                .entries(1)
+                .sizeBytes(1024)
+                .maxBytes(4096)
+                .build();
+
+        when(urlContentService.getCacheStats()).thenReturn(stats);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/url-content/cache-stats"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.hits").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.misses").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.evictions").value(1));
+    }
 }
@@ -0,0 +1,236 @@
+package com.urlcategorizer.matcher;
+
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AhoCorasickAutomatonTest {
+
+    @Test
+    public void testFindsOverlappingKeywords() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(
+                category("He", "he"), category("She", "she"), category("Hers", "hers"), category("His", "his")));
+
+        AhoCorasickAutomaton.Session session = automaton.newSession();
+        session.feed("ushers");
+
+        assertEquals(Set.of("He", "She", "Hers"), session.matchedCategoryNames());
+        assertEquals(3, session.getHitCount());
+    }
+
+    @Test
+    public void testFollowsFailureLinks() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(
+                category("Long", "abcd"), category("Suffix", "bcx")));
+
+        // After "abc" the automaton must fall back to "bc" to find "bcx"
+        assertEquals(Set.of("Suffix"), automaton.findMatchingCategories("abcx"));
+        assertEquals(Set.of("Long"), automaton.findMatchingCategories("xabcd"));
+    }
+
+    @Test
+    public void testFollowsDictionaryLinks() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(
+                category("Long", "abcde"), category("Inner", "bcd"), category("Letter", "c")));
+
+        // None of these keywords ends in the state reached for "abcd", only in the states of its failure chain
+        assertEquals(Set.of("Inner", "Letter"), automaton.findMatchingCategories("abcdz"));
+        assertEquals(Set.of("Long", "Inner", "Letter"), automaton.findMatchingCategories("abcde"));
+    }
+
+    @Test
+    public void testCountsHitsOncePerCategory() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(
+                category("Basketball", "nba", "NBA"), category("Sports", "nba"), category("Football", "nfl")));
+
+        // Football keeps the session going after both other categories matched
+        AhoCorasickAutomaton.Session session = automaton.newSession();
+        session.feed("nba nba");
+
+        assertEquals(Set.of("Basketball", "Sports"), session.matchedCategoryNames());
+        assertEquals(4, session.getHitCount());
+    }
+
+    @Test
+    public void testIgnoresCase() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(
+                category("Basketball", "NBA"), category("Star Wars", "star war")));
+
+        assertEquals(Set.of("Basketball"), automaton.findMatchingCategories("the Nba finals"));
+        assertEquals(Set.of("Star Wars"), automaton.findMatchingCategories("STAR WARS"));
+    }
+
+    @Test
+    public void testMatchesNonAsciiText() {
+        // "caf\u00e9", "Japan" in kanji and "Athens" in Greek, found in upper case and among other scripts
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(category("Coffee", "caf\u00e9"),
+                category("Japan", "\u65e5\u672c"), category("Greek", "\u03b1\u03b8\u03ae\u03bd\u03b1")));
+
+        assertEquals(Set.of("Coffee"), automaton.findMatchingCategories("un CAF\u00c9 cr\u00e8me"));
+        assertEquals(Set.of("Japan"), automaton.findMatchingCategories("\u6771\u4eac\u306f\u65e5\u672c\u306e\u9996\u90fd"));
+        assertEquals(Set.of("Greek"), automaton.findMatchingCategories("\u0391\u0398\u0389\u039d\u0391"));
+        assertEquals(Set.of(), automaton.findMatchingCategories("cafe \u65e5 \u672c"));
+    }
+
+    @Test
+    public void testMatchesKeywordSplitAcrossChunks() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(category("Basketball", "basketball")));
+
+        AhoCorasickAutomaton.Session session = automaton.newSession();
+        session.feed("the bask");
+        char[] rest = "xxetball season".toCharArray();
+        session.feed(rest, 2, rest.length - 2);
+
+        assertEquals(Set.of("Basketball"), session.matchedCategoryNames());
+    }
+
+    @Test
+    public void testRestrictsMatchesToScope() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(
+                category("Basketball", "nba"), category("Football", "nfl")));
+        BitSet footballOnly = new BitSet();
+        footballOnly.set(1);
+
+        assertEquals(Set.of("Football"), automaton.findMatchingCategories("nba and nfl", footballOnly));
+        assertEquals(Set.of(), automaton.findMatchingCategories("nba only", footballOnly));
+    }
+
+    @Test
+    public void testCompletesOnceEveryCategoryMatched() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(
+                category("Basketball", "nba"), category("Football", "nfl")));
+
+        AhoCorasickAutomaton.Session session = automaton.newSession();
+        assertFalse(session.feed("nba "));
+        assertTrue(session.feed("nfl"));
+        assertTrue(session.isComplete());
+
+        AhoCorasickAutomaton.Session existence = automaton.newExistenceSession(null);
+        assertTrue(existence.feed("nba "));
+        assertEquals(1, existence.getMatchedCount());
+    }
+
+    @Test
+    public void testIgnoresEmptyKeywords() {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(List.of(
+                category("Empty", ""), category("Basketball", "nba")));
+
+        assertEquals(Set.of(), automaton.findMatchingCategories("any text"));
+        assertEquals(Set.of("Basketball"), automaton.findMatchingCategories("nba"));
+    }
+
+    @Test
+    public void testMatchesLikeNaiveSearch() {
+        // A small alphabet, with a non-ASCII letter and upper case, makes shared prefixes and overlaps frequent
+        String alphabet = "abcAB\u00e9\u00c9";
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<Category> categories = new ArrayList<>();
+            int categoryCount = 1 + random.nextInt(8);
+            for (int c = 0; c < categoryCount; c++) {
+                String[] keywords = new String[1 + random.nextInt(5)];
+                for (int k = 0; k < keywords.length; k++) {
+                    keywords[k] = randomText(random, alphabet, 1 + random.nextInt(4));
+                }
+                categories.add(category("c" + c, keywords));
+            }
+            // Never matched, so that sessions do not complete early and every hit is counted
+            categories.add(category("never", "zzz"));
+            AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(categories);
+            String text = randomText(random, alphabet, random.nextInt(200));
+
+            AhoCorasickAutomaton.Session session = automaton.newSession();
+            int offset = 0;
+            while (offset < text.length()) {
+                int chunk = Math.min(text.length() - offset, 1 + random.nextInt(16));
+                session.feed(text.substring(offset, offset + chunk));
+                offset += chunk;
+            }
+
+            String context = "round " + round + ", text " + text;
+            assertEquals(naiveMatches(categories, text), session.matchedCategoryNames(), context);
+            assertEquals(naiveHitCount(categories, text), session.getHitCount(), context);
+            assertEquals(naiveStateCount(categories), automaton.stateCount(), context);
+        }
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    private static String lower(String text) {
+        StringBuilder lower = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            lower.append(Character.toLowerCase(text.charAt(i)));
+        }
+        return lower.toString();
+    }
+
+    private static Set<String> naiveMatches(List<Category> categories, String text) {
+        String lowerText = lower(text);
+        Set<String> matches = new HashSet<>();
+        for (Category category : categories) {
+            for (CategoryKeyword keyword : category.getKeywords()) {
+                if (lowerText.contains(lower(keyword.getKeyword()))) {
+                    matches.add(category.getName());
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Counts every occurrence, overlapping ones included, of every distinct keyword of every category.
+     */
+    private static long naiveHitCount(List<Category> categories, String text) {
+        String lowerText = lower(text);
+        long hits = 0;
+        for (Category category : categories) {
+            Set<String> keywords = new HashSet<>();
+            category.getKeywords().forEach(keyword -> keywords.add(lower(keyword.getKeyword())));
+            for (String keyword : keywords) {
+                for (int i = lowerText.indexOf(keyword); i >= 0; i = lowerText.indexOf(keyword, i + 1)) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * The root plus one state per distinct keyword prefix.
+     */
+    private static int naiveStateCount(List<Category> categories) {
+        Set<String> prefixes = new HashSet<>();
+        for (Category category : categories) {
+            for (CategoryKeyword keyword : category.getKeywords()) {
+                String lowered = lower(keyword.getKeyword());
+                for (int length = 1; length <= lowered.length(); length++) {
+                    prefixes.add(lowered.substring(0, length));
+                }
+            }
+        }
+        return prefixes.size() + 1;
+    }
+
+    private static Category category(String name, String... keywords) {
+        return new Category(name, Arrays.stream(keywords).map(CategoryKeyword::new).collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,136 @@
+package com.urlcategorizer.matcher;
+
+import com.urlcategorizer.entity.Category;
+import com.urlcategorizer.entity.CategoryKeyword;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenMatcherTest {
+
+    @Test
+    public void testTokenizesLikePageText() {
+        assertEquals(List.of("may", "the", "force", "be", "with_you", "r2d2"),
+                TokenMatcher.tokenize("  May the Force, be-with_you!R2D2 "));
+        assertEquals(List.of(), TokenMatcher.tokenize(" -- "));
+        assertEquals(List.of(), TokenMatcher.tokenize(null));
+    }
+
+    @Test
+    public void testMatchesWholeWordsOnly() {
+        TokenMatcher matcher = TokenMatcher.compile(List.of(category("Basketball", "NBA")));
+
+        assertEquals(Set.of("Basketball"), find(matcher, "The nba finals"));
+        assertEquals(Set.of("Basketball"), find(matcher, "(NBA)"));
+        assertEquals(Set.of(), find(matcher, "unbalanced"));
+        assertEquals(Set.of(), find(matcher, "nbaa nba_finals"));
+    }
+
+    @Test
+    public void testMatchesPhrasesRegardlessOfPunctuation() {
+        TokenMatcher matcher = TokenMatcher.compile(List.of(category("Star Wars", "may the force be with you")));
+
+        assertEquals(Set.of("Star Wars"), find(matcher, "...May the Force -- be with,\nyou!"));
+        assertEquals(Set.of(), find(matcher, "may the force be with them"));
+        assertEquals(Set.of(), find(matcher, "may the forces be with you"));
+    }
+
+    @Test
+    public void testMatchesOverlappingPhrases() {
+        TokenMatcher matcher = TokenMatcher.compile(List.of(
+                category("City", "new york"), category("Borough", "york city"), category("Hall", "new york city hall")));
+
+        assertEquals(Set.of("City", "Borough"), find(matcher, "new york city"));
+        assertEquals(Set.of("City", "Borough", "Hall"), find(matcher, "new york city hall"));
+    }
+
+    @Test
+    public void testFollowsFailureLinks() {
+        TokenMatcher matcher = TokenMatcher.compile(List.of(category("Long", "a b c"), category("Suffix", "b d")));
+
+        // After "a b", the word "d" continues the phrase "b" rather than starting from scratch
+        assertEquals(Set.of("Suffix"), find(matcher, "a b d"));
+        assertEquals(Set.of("Long"), find(matcher, "x a b c"));
+    }
+
+    @Test
+    public void testWordOutsideVocabularyBreaksPhrase() {
+        TokenMatcher matcher = TokenMatcher.compile(List.of(category("Star Wars", "star wars", "wars")));
+
+        // "trek" is not a keyword token, so the phrase restarts after it; "wars" alone still matches
+        TokenMatcher.Session session = matcher.newScoringSession(null);
+        session.feed("star trek wars");
+        session.finish();
+        assertEquals(1, session.getHitCount());
+
+        TokenMatcher.Session longToken = matcher.newScoringSession(null);
+        longToken.feed("star starstarstarstar wars");
+        longToken.finish();
+        assertEquals(1, longToken.getHitCount());
+    }
+
+    @Test
+    public void testMatchesTokensSplitAcrossChunks() {
+        TokenMatcher matcher = TokenMatcher.compile(List.of(
+                category("Basketball", "basketball"), category("Star Wars", "star wars")));
+
+        TokenMatcher.Session session = matcher.newSession(null);
+        session.feed("the bask");
+        char[] rest = "xxetball season, st".toCharArray();
+        session.feed(rest, 2, rest.length - 2);
+        session.feed("ar ");
+        session.feed("wars");
+        // The last token only ends with the text
+        assertEquals(Set.of("Basketball"), matcher.categoryNames(session.matchedCategoryIds()));
+
+        assertTrue(session.finish());
+        assertEquals(Set.of("Basketball", "Star Wars"), matcher.categoryNames(session.matchedCategoryIds()));
+    }
+
+    @Test
+    public void testRestrictsMatchesToScope() {
+        TokenMatcher matcher = TokenMatcher.compile(List.of(category("Basketball", "nba"), category("Football", "nfl")));
+        BitSet footballOnly = new BitSet();
+        footballOnly.set(1);
+
+        assertEquals(Set.of("Football"), matcher.findMatchingCategories("nba and nfl", footballOnly));
+    }
+
+    @Test
+    public void testScoresCategories() {
+        TokenMatcher matcher = TokenMatcher.compile(List.of(
+                category("Basketball", "nba", "basketball"), category("Star Wars", "star wars"),
+                category("Football", "nfl")));
+
+        TokenMatcher.Session session = matcher.newScoringSession(null);
+        session.feed("NBA nba basketball star wars and more");
+        session.finish();
+
+        assertEquals(7, session.getTokenCount());
+        List<CategoryScore> scores = session.scores();
+        assertEquals(2, scores.size());
+        assertEquals("Basketball", scores.get(0).getCategoryName());
+        assertEquals(3, scores.get(0).getHits());
+        assertEquals(2, scores.get(0).getDistinctKeywords());
+        assertEquals(3.0 / 7, scores.get(0).getDensity(), 1e-9);
+        // A phrase counts for all of its tokens
+        assertEquals("Star Wars", scores.get(1).getCategoryName());
+        assertEquals(1, scores.get(1).getHits());
+        assertEquals(2.0 / 7, scores.get(1).getDensity(), 1e-9);
+    }
+
+    private static Set<String> find(TokenMatcher matcher, String text) {
+        return matcher.findMatchingCategories(text, null);
+    }
+
+    private static Category category(String name, String... keywords) {
+        return new Category(name, Arrays.stream(keywords).map(CategoryKeyword::new).collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,182 @@
+package com.urlcategorizer.offline;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class WarcReaderTest {
+
+    private static final long MAX_RECORD_BYTES = 1024 * 1024;
+
+    @Test
+    public void testReadsHtmlResponse() throws IOException {
+        byte[] archive = record("response", "http://example.com/",
+                http("Content-Type: text/html; charset=ISO-8859-1", latin1("<p>caf\u00e9</p>")));
+
+        try (WarcReader warc = new WarcReader(new ByteArrayInputStream(archive), MAX_RECORD_BYTES)) {
+            WarcReader.Page page = warc.next();
+            assertNotNull(page);
+            assertEquals("http://example.com/", page.getTargetUri());
+            assertEquals(StandardCharsets.ISO_8859_1, page.getCharset());
+            assertEquals("<p>caf\u00e9</p>", new String(page.getBody(), page.getCharset()));
+            assertNull(warc.next());
+        }
+    }
+
+    @Test
+    public void testSkipsRecordsWhichAreNotHtmlResponses() throws IOException {
+        byte[] archive = concat(
+                record("warcinfo", null, utf8("software: test\r\n")),
+                record("request", "http://example.com/a", utf8("GET /a HTTP/1.1\r\nHost: example.com\r\n\r\n")),
+                record("response", "http://example.com/logo.png", http("Content-Type: image/png", new byte[]{1, 2, 3})),
+                record("response", "http://example.com/b", http("Content-Type: text/html", utf8("<p>b</p>"))));
+
+        try (WarcReader warc = new WarcReader(new ByteArrayInputStream(archive), MAX_RECORD_BYTES)) {
+            assertEquals("http://example.com/b", warc.next().getTargetUri());
+            assertNull(warc.next());
+            assertEquals(0, warc.getSkippedRecords());
+        }
+    }
+
+    @Test
+    public void testSkipsAndCountsOversizedResponses() throws IOException {
+        byte[] large = new byte[4096];
+        Arrays.fill(large, (byte) 'x');
+        byte[] archive = concat(
+                record("response", "http://example.com/large", http("Content-Type: text/html", large)),
+                record("response", "http://example.com/small", http("Content-Type: text/html", utf8("<p>small</p>"))));
+
+        try (WarcReader warc = new WarcReader(new ByteArrayInputStream(archive), 1024)) {
+            assertEquals("http://example.com/small", warc.next().getTargetUri());
+            assertNull(warc.next());
+            assertEquals(1, warc.getSkippedRecords());
+        }
+    }
+
+    @Test
+    public void testDecodesChunkedAndGzipEncodedBodies() throws IOException {
+        byte[] html = utf8("<html><body>chunked and compressed</body></html>");
+        byte[] gzipped = gzip(html);
+        ByteArrayOutputStream chunked = new ByteArrayOutputStream();
+        int split = gzipped.length / 2;
+        chunked.writeBytes(utf8(Integer.toHexString(split) + ";ext=1\r\n"));
+        chunked.write(gzipped, 0, split);
+        chunked.writeBytes(utf8("\r\n" + Integer.toHexString(gzipped.length - split) + "\r\n"));
+        chunked.write(gzipped, split, gzipped.length - split);
+        chunked.writeBytes(utf8("\r\n0\r\n\r\n"));
+        byte[] archive = record("response", "http://example.com/",
+                http("Content-Type: text/html\r\nTransfer-Encoding: chunked\r\nContent-Encoding: gzip",
+                        chunked.toByteArray()));
+
+        try (WarcReader warc = new WarcReader(new ByteArrayInputStream(archive), MAX_RECORD_BYTES)) {
+            assertArrayEquals(html, warc.next().getBody());
+        }
+    }
+
+    @Test
+    public void testReadsGzippedArchiveWithOneMemberPerRecord() throws IOException {
+        byte[] archive = concat(
+                gzip(record("response", "http://example.com/a", http("Content-Type: text/html", utf8("<p>a</p>")))),
+                gzip(record("response", "http://example.com/b", http("Content-Type: text/html", utf8("<p>b</p>")))));
+
+        try (WarcReader warc = new WarcReader(new ByteArrayInputStream(archive), MAX_RECORD_BYTES)) {
+            assertEquals("http://example.com/a", warc.next().getTargetUri());
+            assertEquals("http://example.com/b", warc.next().getTargetUri());
+            assertNull(warc.next());
+        }
+    }
+
+    @Test
+    public void testFailsOnTruncatedRecord() throws IOException {
+        byte[] archive = record("response", "http://example.com/", http("Content-Type: text/html", utf8("<p>page</p>")));
+        byte[] truncated = Arrays.copyOf(archive, archive.length - 10);
+
+        try (WarcReader warc = new WarcReader(new ByteArrayInputStream(truncated), MAX_RECORD_BYTES)) {
+            assertThrows(EOFException.class, warc::next);
+        }
+    }
+
+    @Test
+    public void testFailsOnTruncatedSkippedRecord() throws IOException {
+        byte[] archive = record("request", "http://example.com/", utf8("GET / HTTP/1.1\r\nHost: example.com\r\n\r\n"));
+        byte[] truncated = Arrays.copyOf(archive, archive.length - 10);
+
+        try (WarcReader warc = new WarcReader(new ByteArrayInputStream(truncated), MAX_RECORD_BYTES)) {
+            assertThrows(EOFException.class, warc::next);
+        }
+    }
+
+    @Test
+    public void testFailsOnMalformedContentLength() throws IOException {
+        for (String length : new String[] {"12x", "-5", "99999999999999999999"}) {
+            String archive = new String(record("response", "http://example.com/",
+                    http("Content-Type: text/html", utf8("<p>page</p>"))), StandardCharsets.ISO_8859_1);
+            byte[] malformed = latin1(archive.replaceFirst("Content-Length: \\d+", "Content-Length: " + length));
+
+            try (WarcReader warc = new WarcReader(new ByteArrayInputStream(malformed), MAX_RECORD_BYTES)) {
+                assertThrows(IOException.class, warc::next, length);
+            }
+        }
+    }
+
+    @Test
+    public void testFailsOnInputWhichIsNotWarc() throws IOException {
+        try (WarcReader warc = new WarcReader(new ByteArrayInputStream(utf8("<html></html>\r\n")), MAX_RECORD_BYTES)) {
+            assertThrows(IOException.class, warc::next);
+        }
+    }
+
+    private static byte[] record(String type, String targetUri, byte[] block) {
+        StringBuilder headers = new StringBuilder("WARC/1.0\r\n")
+                .append("WARC-Type: ").append(type).append("\r\n")
+                .append("WARC-Record-ID: <urn:uuid:").append(type).append(">\r\n");
+        if (targetUri != null) {
+            headers.append("WARC-Target-URI: ").append(targetUri).append("\r\n");
+        }
+        headers.append("Content-Type: ")
+                .append("warcinfo".equals(type) ? "application/warc-fields" : "application/http; msgtype=" + type)
+                .append("\r\n")
+                .append("Content-Length: ").append(block.length).append("\r\n\r\n");
+        return concat(utf8(headers.toString()), block, utf8("\r\n\r\n"));
+    }
+
+    private static byte[] http(String headers, byte[] body) {
+        return concat(utf8("HTTP/1.1 200 OK\r\n" + headers + "\r\n\r\n"), body);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] latin1(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
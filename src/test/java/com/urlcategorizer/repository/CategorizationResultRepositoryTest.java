@@ -0,0 +1,219 @@
+package com.urlcategorizer.repository;
+
+import com.urlcategorizer.dto.CategorizationTier;
+import com.urlcategorizer.entity.CategorizationRecord;
+import com.urlcategorizer.metrics.CategorizationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CategorizationResultRepositoryTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testFindsLatestResultsAfterReopen() throws IOException {
+        CategorizationResultRepository repository = open(100);
+        repository.save("a", record(1));
+        repository.save("b", record(2));
+        repository.save("a", record(3));
+        repository.close();
+
+        CategorizationResultRepository reopened = open(100);
+        assertEquals(3, hash(reopened, "a"));
+        assertEquals(2, hash(reopened, "b"));
+        assertEquals(2, reopened.getEntries());
+        reopened.close();
+    }
+
+    @Test
+    public void testCutsOffTornRecordOnReopen() throws IOException {
+        CategorizationResultRepository repository = open(100);
+        repository.save("a", record(1));
+        long intactSize = repository.getSizeBytes();
+        repository.save("b", record(2));
+        repository.close();
+        truncate(logFile(), Files.size(logFile()) - 5);
+
+        CategorizationResultRepository reopened = open(100);
+        assertEquals(1, hash(reopened, "a"));
+        assertFalse(reopened.find("b").isPresent());
+        assertEquals(intactSize, Files.size(logFile()));
+        // Appends continue after the last intact record
+        reopened.save("c", record(3));
+        reopened.close();
+
+        CategorizationResultRepository again = open(100);
+        assertEquals(1, hash(again, "a"));
+        assertEquals(3, hash(again, "c"));
+        again.close();
+    }
+
+    @Test
+    public void testCutsOffCorruptedRecordAndTheRest() throws IOException {
+        CategorizationResultRepository repository = open(100);
+        repository.save("a", record(1));
+        long corrupted = repository.getSizeBytes() + 12;
+        repository.save("b", record(2));
+        repository.save("c", record(3));
+        repository.close();
+        try (FileChannel log = FileChannel.open(logFile(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            log.read(one, corrupted);
+            one.put(0, (byte) ~one.get(0)).rewind();
+            log.write(one, corrupted);
+        }
+
+        CategorizationResultRepository reopened = open(100);
+        assertEquals(1, hash(reopened, "a"));
+        assertFalse(reopened.find("b").isPresent());
+        assertFalse(reopened.find("c").isPresent());
+        assertEquals(1, reopened.getEntries());
+        reopened.close();
+    }
+
+    @Test
+    public void testExpiresResults() throws IOException {
+        long now = System.currentTimeMillis();
+        CategorizationResultRepository repository = open(100);
+        repository.save("fresh", record(1, now, 0));
+        repository.save("expired", record(2, now - 2 * TTL.toMillis(), 0));
+
+        assertEquals(1, hash(repository, "fresh"));
+        assertFalse(repository.find("expired").isPresent());
+        repository.close();
+
+        CategorizationResultRepository reopened = open(100);
+        assertEquals(1, reopened.getEntries());
+        reopened.close();
+    }
+
+    @Test
+    public void testEvictsOldestResultsWhenFull() throws IOException {
+        CategorizationResultRepository repository = open(3);
+        repository.save("a", record(1));
+        repository.save("b", record(2));
+        repository.save("c", record(3));
+        // Replacing a result needs no room
+        repository.save("a", record(4));
+        assertEquals(3, repository.getEntries());
+
+        repository.save("d", record(5));
+        assertEquals(3, repository.getEntries());
+        assertFalse(repository.find("b").isPresent());
+        assertEquals(4, hash(repository, "a"));
+        assertEquals(3, hash(repository, "c"));
+        assertEquals(5, hash(repository, "d"));
+        repository.close();
+    }
+
+    @Test
+    public void testCompactsWhileAppending() throws Exception {
+        CategorizationResultRepository repository = open(1000);
+        int threads = 4;
+        int keysPerThread = 5;
+        int savesPerThread = 200;
+        int padding = 32 * 1024;
+        Map<String, Long> latest = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < savesPerThread; i++) {
+                    String key = "w" + writer + "-" + (i % keysPerThread);
+                    long hash = (long) writer * savesPerThread + i;
+                    repository.save(key, record(hash, System.currentTimeMillis(), padding));
+                    latest.put(key, hash);
+                    // Every result is readable while the log is compacted
+                    assertEquals(hash, hash(repository, key));
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertEquals(threads * keysPerThread, repository.getEntries());
+        latest.forEach((key, hash) -> assertEquals(hash, hash(repository, key), key));
+        repository.close();
+
+        long written = (long) threads * savesPerThread * padding;
+        assertTrue(Files.size(logFile()) < written / 2, "Log of " + Files.size(logFile()) + " bytes");
+        CategorizationResultRepository reopened = open(1000);
+        assertEquals(threads * keysPerThread, reopened.getEntries());
+        latest.forEach((key, hash) -> assertEquals(hash, hash(reopened, key), key));
+        reopened.close();
+    }
+
+    private CategorizationResultRepository open(int maxEntries) throws IOException {
+        CategorizationResultRepository repository = new CategorizationResultRepository(true, directory, TTL,
+                maxEntries, new CategorizationMetrics(new SimpleMeterRegistry()));
+        repository.open();
+        return repository;
+    }
+
+    private Path logFile() {
+        return directory.resolve("results.log");
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static long hash(CategorizationResultRepository repository, String key) {
+        Optional<CategorizationRecord> record = repository.find(key);
+        assertTrue(record.isPresent(), "No result for " + key);
+        return record.get().getContentHash();
+    }
+
+    private static CategorizationRecord record(long contentHash) {
+        return record(contentHash, System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * A result whose category names take about the given number of bytes, so that a few records fill the log.
+     */
+    private static CategorizationRecord record(long contentHash, long storedAt, int padding) {
+        String filler = "x".repeat(padding / 8);
+        Set<String> categories = IntStream.range(0, padding == 0 ? 1 : 8)
+                .mapToObj(i -> "category" + i + filler)
+                .collect(Collectors.toSet());
+        return CategorizationRecord.builder()
+                .categories(categories)
+                .contentHash(contentHash)
+                .storedAt(storedAt)
+                .decidedBy(CategorizationTier.BODY)
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.urlcategorizer.repository;
+
+import com.urlcategorizer.content.ContentFingerprint;
+import com.urlcategorizer.metrics.CategorizationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class ContentFingerprintRepositoryTest {
+
+    private static final String SCOPE = "TOKEN abc";
+    private static final long SIM_HASH = 0x0123456789abcdefL;
+    private static final int MIN_TOKENS = 50;
+
+    @Test
+    public void testFindsSameText() {
+        ContentFingerprintRepository repository = repository(100);
+        repository.save(SCOPE, fingerprint(1, SIM_HASH, 100), Set.of("News"));
+
+        assertEquals(Optional.of(Set.of("News")), repository.find(SCOPE, fingerprint(1, SIM_HASH, 100)));
+        assertFalse(repository.find("AHO_CORASICK abc", fingerprint(1, SIM_HASH, 100)).isPresent());
+        assertEquals(1, repository.getExactHits());
+    }
+
+    @Test
+    public void testFindsSimHashWithinMaxDistance() {
+        ContentFingerprintRepository repository = repository(100);
+        repository.save(SCOPE, fingerprint(1, SIM_HASH, 100), Set.of("News"));
+
+        // One bit off in each of three bands: only the fourth band is shared
+        ContentFingerprint nearDuplicate = fingerprint(2, flip(SIM_HASH, 0, 16, 32), 100);
+        assertEquals(Optional.of(Set.of("News")), repository.find(SCOPE, nearDuplicate));
+        assertEquals(1, repository.getNearHits());
+    }
+
+    @Test
+    public void testMissesSimHashBeyondMaxDistance() {
+        ContentFingerprintRepository repository = repository(100);
+        repository.save(SCOPE, fingerprint(1, SIM_HASH, 100), Set.of("News"));
+
+        // Sharing no band
+        assertFalse(repository.find(SCOPE, fingerprint(2, flip(SIM_HASH, 0, 16, 32, 48), 100)).isPresent());
+        // Sharing three bands, but four bits off
+        assertFalse(repository.find(SCOPE, fingerprint(3, flip(SIM_HASH, 0, 1, 2, 3), 100)).isPresent());
+        assertEquals(0, repository.getNearHits());
+        assertEquals(2, repository.getMisses());
+    }
+
+    @Test
+    public void testMatchesShortTextsOnlyExactly() {
+        ContentFingerprintRepository repository = repository(100);
+        repository.save(SCOPE, fingerprint(1, SIM_HASH, MIN_TOKENS - 1), Set.of("News"));
+
+        assertEquals(Optional.of(Set.of("News")), repository.find(SCOPE, fingerprint(1, SIM_HASH, MIN_TOKENS - 1)));
+        assertFalse(repository.find(SCOPE, fingerprint(2, flip(SIM_HASH, 0), 100)).isPresent());
+        assertFalse(repository.find(SCOPE, fingerprint(3, SIM_HASH, MIN_TOKENS - 1)).isPresent());
+
+        repository.save(SCOPE, fingerprint(4, ~SIM_HASH, 100), Set.of("Sports"));
+        assertFalse(repository.find(SCOPE, fingerprint(5, flip(~SIM_HASH, 0), MIN_TOKENS - 1)).isPresent());
+    }
+
+    @Test
+    public void testRemovesEvictedEntryFromBandIndex() {
+        ContentFingerprintRepository repository = repository(1);
+        repository.save(SCOPE, fingerprint(1, SIM_HASH, 100), Set.of("News"));
+        repository.save(SCOPE, fingerprint(2, ~SIM_HASH, 100), Set.of("Sports"));
+
+        assertEquals(1, repository.getEntries());
+        assertFalse(repository.find(SCOPE, fingerprint(1, SIM_HASH, 100)).isPresent());
+        assertFalse(repository.find(SCOPE, fingerprint(3, flip(SIM_HASH, 0), 100)).isPresent());
+        assertEquals(Optional.of(Set.of("Sports")), repository.find(SCOPE, fingerprint(4, flip(~SIM_HASH, 0), 100)));
+    }
+
+    private static ContentFingerprintRepository repository(int maxEntries) {
+        return new ContentFingerprintRepository(true, maxEntries, 3, MIN_TOKENS,
+                new CategorizationMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static ContentFingerprint fingerprint(long exactHash, long simHash, int tokens) {
+        return new ContentFingerprint(exactHash, simHash, tokens);
+    }
+
+    private static long flip(long simHash, int... bits) {
+        for (int bit : bits) {
+            simHash ^= 1L << bit;
+        }
+        return simHash;
+    }
+}